@@ -0,0 +1,42 @@
+package com.ruchekers.benchmarks;
+
+import com.ruchekers.GameBoard;
+import com.ruchekers.Main;
+
+/**
+ * Fixed positions used by the benchmarks, in the {@link Main} text format.
+ */
+final class Fixtures {
+  static final String INITIAL_WHITE = Main.INITIAL_WHITE;
+  static final String INITIAL_BLACK = Main.INITIAL_BLACK;
+
+  /**
+   * Many kings with long free diagonals and towers to beat along them.
+   */
+  static final String KINGS_WHITE = "a1_W c3_Wb e1_W g3_Wbw b6_W h6_Ww d2_w";
+  static final String KINGS_BLACK = "f6_Bw d4_B b4_bw f2_B h8_Bbb c7_B e7_b";
+
+  /**
+   * White has a capture on the king side, so any other white move is rejected.
+   */
+  static final String PENDING_WHITE = "a1_w c1_w b2_w a3_w g3_w e1_w";
+  static final String PENDING_BLACK = "f4_b b8_b d8_b";
+
+  /**
+   * A simple tower that beats four times in a row and becomes a king on the way.
+   */
+  static final String CHAIN_WHITE = "b4_w h2_w";
+  static final String CHAIN_BLACK = "c5_b e7_b g7_b e3_b";
+  static final String CHAIN_MOVE = "b4_w:d6_wb:f8_Wbb:h6_Wbbb:d2_Wbbbb";
+
+  private Fixtures() {
+
+  }
+
+  static GameBoard board(String whiteCoords, String blackCoords) {
+    GameBoard board = new GameBoard();
+    Main.fillBoard(board, whiteCoords);
+    Main.fillBoard(board, blackCoords);
+    return board;
+  }
+}
@@ -0,0 +1,264 @@
+package com.ruchekers.benchmarks;
+
+import com.ruchekers.Color;
+import com.ruchekers.GameBoard;
+import com.ruchekers.Main;
+import com.ruchekers.MoveVerdict;
+import com.ruchekers.exceptions.AnyErrorException;
+import com.ruchekers.exceptions.BusyCellException;
+import com.ruchekers.exceptions.InvalidMoveException;
+import com.ruchekers.exceptions.WhiteCellException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the hot paths of the rules core. Run them with
+ * {@code mvn -P jmh package && java -jar target/benchmarks.jar}; the allocation rate is reported
+ * next to the throughput because the runner always adds the GC profiler.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RulesBenchmarks {
+  /**
+   * A king-heavy position.
+   */
+  @State(Scope.Thread)
+  public static class KingPosition {
+    private GameBoard board;
+
+    /**
+     * Builds the position.
+     */
+    @Setup
+    public void setUp() {
+      board = Fixtures.board(Fixtures.KINGS_WHITE, Fixtures.KINGS_BLACK);
+    }
+  }
+
+  /**
+   * The initial position, where moves pass the mandatory-capture check.
+   */
+  @State(Scope.Thread)
+  public static class QuietPosition {
+    private GameBoard board;
+
+    /**
+     * Builds the position.
+     */
+    @Setup
+    public void setUp() {
+      board = Fixtures.board(Fixtures.INITIAL_WHITE, Fixtures.INITIAL_BLACK);
+    }
+  }
+
+  /**
+   * A position where white has to beat, so simple moves are rejected.
+   */
+  @State(Scope.Thread)
+  public static class PendingCapturePosition {
+    private GameBoard board;
+
+    /**
+     * Builds the position.
+     */
+    @Setup
+    public void setUp() {
+      board = Fixtures.board(Fixtures.PENDING_WHITE, Fixtures.PENDING_BLACK);
+    }
+  }
+
+  /**
+   * A position with a four-step capture chain, restored before every call.
+   */
+  @State(Scope.Thread)
+  public static class ChainPosition {
+    private GameBoard template;
+    private GameBoard board;
+
+    /**
+     * Builds the position.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+      template = Fixtures.board(Fixtures.CHAIN_WHITE, Fixtures.CHAIN_BLACK);
+    }
+
+    /**
+     * Restores the position played by the previous call.
+     */
+    @Setup(Level.Invocation)
+    public void reset() {
+      board = template.copy();
+    }
+  }
+
+  /**
+   * Sends {@link System#out} to nowhere while the output benchmark runs.
+   */
+  @State(Scope.Thread)
+  public static class DiscardedOutput {
+    private PrintStream original;
+    private GameBoard board;
+
+    /**
+     * Redirects the output.
+     */
+    @Setup
+    public void setUp() {
+      original = System.out;
+      System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+      board = Fixtures.board(Fixtures.INITIAL_WHITE, Fixtures.INITIAL_BLACK);
+    }
+
+    /**
+     * Restores the output.
+     */
+    @TearDown
+    public void tearDown() {
+      System.setOut(original);
+    }
+  }
+
+  /**
+   * Lists the victims of every tower of a king-heavy position.
+   *
+   * @param position the position
+   * @return number of towers with something to beat
+   */
+  @Benchmark
+  public int getPossibleVictimsKings(KingPosition position) {
+    int found = 0;
+    for (int j = 1; j < position.board.getBoardLength(); ++j) {
+      for (int i = 1; i < position.board.getBoardWidth(); ++i) {
+        if (position.board.getTower(i, j) != null && position.board.getPossibleVictims(i, j) != null) {
+          ++found;
+        }
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Moves a tower forth and back, both moves passing the mandatory-capture check.
+   *
+   * @param position the position
+   * @return the board
+   * @throws Exception never, the moves are valid
+   */
+  @Benchmark
+  public GameBoard moveTowerChecked(QuietPosition position) throws Exception {
+    position.board.moveTower(3, 3, 4, 4);
+    position.board.moveTower(4, 4, 3, 3);
+    return position.board;
+  }
+
+  /**
+   * Tries a simple move while a capture is pending.
+   *
+   * @param position the position
+   * @return the exception thrown
+   */
+  @Benchmark
+  public Exception moveTowerRejected(PendingCapturePosition position) {
+    try {
+      position.board.moveTower(1, 3, 2, 4);
+      throw new IllegalStateException("the move should have been rejected");
+    } catch (InvalidMoveException | BusyCellException | WhiteCellException | AnyErrorException e) {
+      return e;
+    }
+  }
+
+  /**
+   * Checks the move of {@link #moveTowerRejected(PendingCapturePosition)}, getting a verdict instead of an exception.
+   *
+   * @param position the position
+   * @return the verdict
+   */
+  @Benchmark
+  public MoveVerdict moveTowerVerdict(PendingCapturePosition position) {
+    return position.board.checkMoveTower(1, 3, 2, 4);
+  }
+
+  /**
+   * Checks a simple move through the text notation while a capture is pending.
+   *
+   * @param position the position
+   * @return the verdict
+   */
+  @Benchmark
+  public MoveVerdict validateRejected(PendingCapturePosition position) {
+    return Main.validate(position.board, "a3_w-b4_w");
+  }
+
+  /**
+   * Plays a four-step capture chain through the text notation.
+   *
+   * @param position the position
+   * @return the board
+   * @throws Exception never, the chain is valid
+   */
+  @Benchmark
+  public GameBoard processMoveChain(ChainPosition position) throws Exception {
+    Main.processMove(position.board, Fixtures.CHAIN_MOVE);
+    return position.board;
+  }
+
+  /**
+   * Parses the initial position.
+   *
+   * @return the board
+   */
+  @Benchmark
+  public GameBoard fillBoard() {
+    return Fixtures.board(Fixtures.INITIAL_WHITE, Fixtures.INITIAL_BLACK);
+  }
+
+  /**
+   * Prints the towers of both sides.
+   *
+   * @param output the position and the discarded output
+   */
+  @Benchmark
+  public void printFigures(DiscardedOutput output) {
+    Main.printFigures(output.board, Color.WHITE);
+    Main.printFigures(output.board, Color.BLACK);
+  }
+
+  /**
+   * Runs the benchmarks of this class with the GC profiler; other JMH options may be given as arguments.
+   *
+   * @param args JMH command line options
+   * @throws RunnerException            if a benchmark fails
+   * @throws CommandLineOptionException if the options are malformed
+   */
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    new Runner(new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .include(RulesBenchmarks.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+  }
+}
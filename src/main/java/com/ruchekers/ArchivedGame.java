@@ -0,0 +1,306 @@
+package com.ruchekers;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A game in the binary form of {@link GameArchive}: the towers of the white and the black position line
+ * and the half-moves, each a list of cells with the tower written there.
+ * Towers are kept as {@link TowerBits}, so a game is converted to and from the text format without loss,
+ * letter case and spacing aside: half-moves are written back two per line, white then black.
+ */
+public final class ArchivedGame {
+  private static final int BYTE_MASK = 0xFF;
+  private static final int CAPTURE_FLAG = 0x80;
+  private static final int MAX_CELLS = 0x7F;
+  private static final int MAX_LINE_TOWERS = 0xFF;
+  private static final int PIECES_PER_BYTE = 4;
+  private static final int BITS_PER_PIECE = 2;
+
+  private final int whiteCount;
+  private final int[] squares;
+  private final long[] towers;
+  private final int[] moveStarts;
+  private final boolean[] captures;
+  private final int[] cellSquares;
+  private final long[] cellTowers;
+
+  private ArchivedGame(int whiteCount, int[] squares, long[] towers, int[] moveStarts, boolean[] captures,
+                       int[] cellSquares, long[] cellTowers) {
+    this.whiteCount = whiteCount;
+    this.squares = squares;
+    this.towers = towers;
+    this.moveStarts = moveStarts;
+    this.captures = captures;
+    this.cellSquares = cellSquares;
+    this.cellTowers = cellTowers;
+  }
+
+  /**
+   * Parses a game in the text format.
+   *
+   * @param lines the white towers, the black towers and the move lines, each holding whitespace separated moves
+   * @return the game
+   * @throws IllegalArgumentException if a line is malformed, with the line and column of the error
+   */
+  public static ArchivedGame fromText(List<String> lines) {
+    MoveNotation notation = new MoveNotation();
+    int[] squares = new int[0];
+    long[] towers = new long[0];
+    int whiteCount = 0;
+    for (int line = 0; line < 2; ++line) {
+      String text = line < lines.size() ? lines.get(line) : "";
+      if (!notation.parseTowers(text, 0, text.length())) {
+        throw syntaxError(notation, line);
+      }
+      if (notation.getLength() > MAX_LINE_TOWERS) {
+        throw new IllegalArgumentException("line " + (line + 1) + ": too many towers");
+      }
+      int count = squares.length;
+      squares = Arrays.copyOf(squares, count + notation.getLength());
+      towers = Arrays.copyOf(towers, count + notation.getLength());
+      for (int k = 0; k < notation.getLength(); ++k) {
+        squares[count + k] = Bitboards.square(notation.getLetter(k), notation.getDigit(k));
+        towers[count + k] = notation.getTower(k);
+      }
+      if (line == 0) {
+        whiteCount = squares.length;
+      }
+    }
+    List<int[]> moveSquares = new ArrayList<>();
+    List<long[]> moveTowers = new ArrayList<>();
+    List<Boolean> moveCaptures = new ArrayList<>();
+    int cells = 0;
+    for (int line = 2; line < lines.size(); ++line) {
+      String text = lines.get(line);
+      int pos = Main.skipWhitespace(text, 0);
+      while (pos < text.length()) {
+        int end = Main.skipToken(text, pos);
+        if (!notation.parse(text, pos, end)) {
+          throw syntaxError(notation, line);
+        }
+        if (notation.getLength() > MAX_CELLS) {
+          throw new IllegalArgumentException("line " + (line + 1) + ", column " + (pos + 1) + ": too many cells");
+        }
+        int[] moveSquare = new int[notation.getLength()];
+        long[] moveTower = new long[notation.getLength()];
+        for (int k = 0; k < notation.getLength(); ++k) {
+          moveSquare[k] = Bitboards.square(notation.getLetter(k), notation.getDigit(k));
+          moveTower[k] = notation.getTower(k);
+        }
+        moveSquares.add(moveSquare);
+        moveTowers.add(moveTower);
+        moveCaptures.add(notation.isCapture());
+        cells += moveSquare.length;
+        pos = Main.skipWhitespace(text, end);
+      }
+    }
+    int[] moveStarts = new int[moveSquares.size() + 1];
+    boolean[] captures = new boolean[moveSquares.size()];
+    int[] cellSquares = new int[cells];
+    long[] cellTowers = new long[cells];
+    for (int move = 0; move < captures.length; ++move) {
+      int start = moveStarts[move];
+      int length = moveSquares.get(move).length;
+      System.arraycopy(moveSquares.get(move), 0, cellSquares, start, length);
+      System.arraycopy(moveTowers.get(move), 0, cellTowers, start, length);
+      captures[move] = moveCaptures.get(move);
+      moveStarts[move + 1] = start + length;
+    }
+    return new ArchivedGame(whiteCount, squares, towers, moveStarts, captures, cellSquares, cellTowers);
+  }
+
+  private static IllegalArgumentException syntaxError(MoveNotation notation, int line) {
+    return new IllegalArgumentException("line " + (line + 1) + ", column " + (notation.getErrorPosition() + 1)
+            + ": " + notation.getError());
+  }
+
+  /**
+   * Writes the game in the text format.
+   *
+   * @return the white towers, the black towers and one line per pair of half-moves
+   */
+  public List<String> toText() {
+    List<String> lines = new ArrayList<>();
+    StringBuilder line = new StringBuilder();
+    for (int k = 0; k < squares.length; ++k) {
+      if (k == whiteCount) {
+        lines.add(line.toString());
+        line.setLength(0);
+      } else if (line.length() > 0) {
+        line.append(' ');
+      }
+      appendTower(line, squares[k], towers[k]);
+    }
+    if (whiteCount == squares.length) {
+      lines.add(line.toString());
+      line.setLength(0);
+    }
+    lines.add(line.toString());
+    for (int move = 0; move < getHalfMoves(); move += 2) {
+      line.setLength(0);
+      appendMove(line, move);
+      if (move + 1 < getHalfMoves()) {
+        appendMove(line.append(' '), move + 1);
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  /**
+   * Returns a half-move in the text notation.
+   */
+  public String getMoveText(int move) {
+    StringBuilder text = new StringBuilder();
+    appendMove(text, move);
+    return text.toString();
+  }
+
+  private void appendMove(StringBuilder text, int move) {
+    for (int cell = moveStarts[move]; cell < moveStarts[move + 1]; ++cell) {
+      if (cell > moveStarts[move]) {
+        text.append(captures[move] ? ':' : '-');
+      }
+      appendTower(text, cellSquares[cell], cellTowers[cell]);
+    }
+  }
+
+  private static void appendTower(StringBuilder text, int square, long tower) {
+    text.append((char) ('a' + Bitboards.letterOf(square) - 1)).append(Bitboards.digitOf(square)).append('_');
+    for (int depth = 0; depth < TowerBits.height(tower); ++depth) {
+      text.append(TowerBits.charOf(TowerBits.pieceAt(tower, depth)));
+    }
+  }
+
+  /**
+   * Puts the starting position of the game on the board, which is cleared first.
+   * This is the same position {@link Main#fillBoard(GameBoard, String)} builds from the text, without parsing.
+   */
+  public void setUp(GameBoard board) {
+    board.clear();
+    for (int k = 0; k < squares.length; ++k) {
+      board.setTower(Bitboards.letterOf(squares[k]), Bitboards.digitOf(squares[k]), new PieceTower(towers[k]));
+    }
+  }
+
+  public int getHalfMoves() {
+    return captures.length;
+  }
+
+  public boolean isCapture(int move) {
+    return captures[move];
+  }
+
+  /**
+   * Returns the number of cells of a half-move, including the start one.
+   */
+  public int getMoveLength(int move) {
+    return moveStarts[move + 1] - moveStarts[move];
+  }
+
+  public int getSquare(int move, int index) {
+    return cellSquares[moveStarts[move] + index];
+  }
+
+  /**
+   * Returns the size of the binary form written by {@link #encode(ByteBuffer)}.
+   */
+  public int encodedSize() {
+    int size = 2 + Integer.BYTES + getHalfMoves();
+    for (long tower : towers) {
+      size += towerSize(tower);
+    }
+    for (long tower : cellTowers) {
+      size += towerSize(tower);
+    }
+    return size;
+  }
+
+  private static int towerSize(long tower) {
+    return 2 + (TowerBits.height(tower) + PIECES_PER_BYTE - 1) / PIECES_PER_BYTE;
+  }
+
+  /**
+   * Writes the game: the numbers of white and black towers as a byte each, the towers, the number of
+   * half-moves as an int, then every half-move as a byte holding the number of cells, with 0x80 set
+   * for a capture, followed by its cells. A tower or cell is its square and height as a byte each, then
+   * its pieces, four to a byte from the top one in the low bits.
+   *
+   * @param out buffer with at least {@link #encodedSize()} bytes remaining
+   */
+  public void encode(ByteBuffer out) {
+    out.put((byte) whiteCount);
+    out.put((byte) (squares.length - whiteCount));
+    for (int k = 0; k < squares.length; ++k) {
+      putTower(out, squares[k], towers[k]);
+    }
+    out.putInt(getHalfMoves());
+    for (int move = 0; move < getHalfMoves(); ++move) {
+      out.put((byte) (getMoveLength(move) | (captures[move] ? CAPTURE_FLAG : 0)));
+      for (int cell = moveStarts[move]; cell < moveStarts[move + 1]; ++cell) {
+        putTower(out, cellSquares[cell], cellTowers[cell]);
+      }
+    }
+  }
+
+  private static void putTower(ByteBuffer out, int square, long tower) {
+    int height = TowerBits.height(tower);
+    out.put((byte) square);
+    out.put((byte) height);
+    for (int piece = 0; piece < height; piece += PIECES_PER_BYTE) {
+      out.put((byte) (tower >>> (piece * BITS_PER_PIECE)));
+    }
+  }
+
+  /**
+   * Reads a game written by {@link #encode(ByteBuffer)}.
+   *
+   * @param in buffer positioned at the start of the game, left after its end
+   * @return the game
+   */
+  public static ArchivedGame decode(ByteBuffer in) {
+    int whiteCount = in.get() & BYTE_MASK;
+    int count = whiteCount + (in.get() & BYTE_MASK);
+    int[] squares = new int[count];
+    long[] towers = new long[count];
+    for (int k = 0; k < count; ++k) {
+      squares[k] = in.get();
+      towers[k] = getTower(in);
+    }
+    int halfMoves = in.getInt();
+    int[] moveStarts = new int[halfMoves + 1];
+    boolean[] captures = new boolean[halfMoves];
+    int[] cellSquares = new int[halfMoves * 2];
+    long[] cellTowers = new long[halfMoves * 2];
+    for (int move = 0; move < halfMoves; ++move) {
+      int header = in.get() & BYTE_MASK;
+      captures[move] = (header & CAPTURE_FLAG) != 0;
+      int start = moveStarts[move];
+      int end = start + (header & MAX_CELLS);
+      if (end > cellSquares.length) {
+        cellSquares = Arrays.copyOf(cellSquares, Math.max(end, cellSquares.length * 2));
+        cellTowers = Arrays.copyOf(cellTowers, cellSquares.length);
+      }
+      for (int cell = start; cell < end; ++cell) {
+        cellSquares[cell] = in.get();
+        cellTowers[cell] = getTower(in);
+      }
+      moveStarts[move + 1] = end;
+    }
+    int cells = moveStarts[halfMoves];
+    return new ArchivedGame(whiteCount, squares, towers, moveStarts, captures,
+            Arrays.copyOf(cellSquares, cells), Arrays.copyOf(cellTowers, cells));
+  }
+
+  private static long getTower(ByteBuffer in) {
+    int height = in.get();
+    long pieces = 0;
+    for (int piece = 0; piece < height; piece += PIECES_PER_BYTE) {
+      pieces |= (long) (in.get() & BYTE_MASK) << (piece * BITS_PER_PIECE);
+    }
+    return TowerBits.pack(pieces, height);
+  }
+}
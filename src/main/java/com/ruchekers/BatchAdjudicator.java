@@ -0,0 +1,224 @@
+package com.ruchekers;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Validates many games at once. A games file holds games in the {@link Main} format separated by blank lines:
+ * the white towers, the black towers, then one line per turn with the white and the black move.
+ * Games are played on a pool of threads, each reusing its own {@link GameBoard}, and one line is printed
+ * per game in input order: {@code source:line ok <white towers> | <black towers>} for a game played to the end,
+ * or {@code source:line <error> at <move>} with the 1-based number of the rejected half-move.
+ * With a {@link Tablebase}, a final position it covers gets its exact result, e.g. {@code | black wins in 5};
+ * otherwise a finished game gets its end, see {@link GameState}, e.g. {@code | draw (threefold repetition)}.
+ * Usage: {@code BatchAdjudicator file-or-directory [--threads count] [--tablebase directory]};
+ * directories are read recursively, files sorted by path.
+ */
+public final class BatchAdjudicator implements AutoCloseable {
+  private static final int PENDING_PER_THREAD = 64;
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final ExecutorService executor;
+  private final ThreadLocal<GameBoard> boards = ThreadLocal.withInitial(GameBoard::new);
+  private final int maxPending;
+  private Tablebase tablebase;
+  private final ArrayDeque<Future<String>> pending = new ArrayDeque<>();
+  private final ArrayDeque<String> names = new ArrayDeque<>();
+  private long games;
+  private long rejected;
+
+  /**
+   * Creates an adjudicator.
+   *
+   * @param threads number of worker threads, at least 1
+   */
+  public BatchAdjudicator(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive");
+    }
+    executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "adjudicator");
+      thread.setDaemon(true);
+      return thread;
+    });
+    maxPending = threads * PENDING_PER_THREAD;
+  }
+
+  /**
+   * Makes the adjudicator add the exact result of final positions covered by the tablebase.
+   *
+   * @param tablebase the tablebase or null
+   */
+  public void setTablebase(Tablebase tablebase) {
+    this.tablebase = tablebase;
+  }
+
+  public long getGames() {
+    return games;
+  }
+
+  public long getRejected() {
+    return rejected;
+  }
+
+  /**
+   * Adjudicates every game of a file, or of every file below a directory, and prints the results in order.
+   * Only a bounded number of games is kept in memory, so the input can be larger than the heap.
+   *
+   * @param path games file or directory
+   * @param out  where to print one line per game
+   * @throws IOException if the input cannot be read
+   */
+  public void run(Path path, PrintStream out) throws IOException {
+    pending.clear();
+    names.clear();
+    games = 0;
+    rejected = 0;
+    for (Path file : sources(path)) {
+      String source = Files.isDirectory(path) ? path.relativize(file).toString() : file.toString();
+      try (BufferedReader reader = Files.newBufferedReader(file)) {
+        GameTextReader gameReader = new GameTextReader(reader);
+        List<String> lines;
+        while ((lines = gameReader.next()) != null) {
+          submit(source + ":" + gameReader.getFirstLine(), lines, out);
+        }
+      }
+    }
+    while (!pending.isEmpty()) {
+      print(out);
+    }
+    out.flush();
+  }
+
+  private static List<Path> sources(Path path) throws IOException {
+    if (!Files.isDirectory(path)) {
+      return List.of(path);
+    }
+    try (Stream<Path> files = Files.walk(path)) {
+      return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+  }
+
+  private void submit(String name, List<String> lines, PrintStream out) {
+    names.add(name);
+    pending.add(executor.submit(() -> adjudicate(boards.get(), lines, tablebase)));
+    while (pending.size() > maxPending) {
+      print(out);
+    }
+  }
+
+  private void print(PrintStream out) {
+    String result;
+    try {
+      result = pending.poll().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting for a game", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("game adjudication failed", e.getCause());
+    }
+    ++games;
+    if (!result.startsWith("ok")) {
+      ++rejected;
+    }
+    out.println(names.poll() + " " + result);
+  }
+
+  /**
+   * Plays one game on the given board, which is cleared first.
+   *
+   * @param board board to play on
+   * @param lines     white towers, black towers and the move lines of the game
+   * @param tablebase tablebase to look the final position up, or null
+   * @return {@code ok} with the final position, or the error and the number of the rejected half-move, 0 for a
+   *     rejected position
+   */
+  static String adjudicate(GameBoard board, List<String> lines, Tablebase tablebase) {
+    GameState game;
+    int halfMove = 0;
+    try {
+      board.clear();
+      if (!Main.fillBoard(board, lines.get(0)) || !Main.fillBoard(board, lines.size() > 1 ? lines.get(1) : "")) {
+        return "error at 0";
+      }
+      game = new GameState(board);
+      for (int k = 2; k < lines.size(); ++k) {
+        String turn = lines.get(k);
+        int pos = Main.skipWhitespace(turn, 0);
+        while (pos < turn.length()) {
+          int end = Main.skipToken(turn, pos);
+          ++halfMove;
+          MoveVerdict verdict = game.play(turn, pos, end);
+          if (!verdict.isLegal()) {
+            return verdict.getMessage() + " at " + halfMove;
+          }
+          pos = Main.skipWhitespace(turn, end);
+        }
+      }
+    } catch (RuntimeException e) {
+      // one broken game is reported on its own line instead of failing the whole batch
+      return "error at " + halfMove;
+    }
+    String result = "ok " + Main.figuresString(board, Color.WHITE).trim() + " | "
+            + Main.figuresString(board, Color.BLACK).trim();
+    int value = tablebase == null ? Tablebase.NOT_FOUND : tablebase.probe(board);
+    if (value == Tablebase.NOT_FOUND) {
+      GameResult end = game.getResult();
+      if (!end.isOver()) {
+        return result;
+      }
+      Color winner = game.getWinner();
+      return result + " | " + (winner == null ? "draw" : winner == Color.WHITE ? "white wins" : "black wins") + " ("
+              + end.getMessage() + ")";
+    }
+    if (value == Tablebase.DRAW) {
+      return result + " | draw";
+    }
+    Color winner = Tablebase.isWin(value) == (board.getSideToMove() == Color.WHITE) ? Color.WHITE : Color.BLACK;
+    return result + " | " + (winner == Color.WHITE ? "white" : "black") + " wins in " + Tablebase.distance(value);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.out.println("usage: BatchAdjudicator file-or-directory [--threads count]");
+      return;
+    }
+    int threads = Runtime.getRuntime().availableProcessors();
+    Path tablebaseDirectory = null;
+    for (int k = 1; k < args.length; ++k) {
+      if ("--threads".equals(args[k]) && k + 1 < args.length) {
+        threads = Integer.parseInt(args[++k]);
+      } else if ("--tablebase".equals(args[k]) && k + 1 < args.length) {
+        tablebaseDirectory = Paths.get(args[++k]);
+      }
+    }
+    PrintStream out = new PrintStream(new BufferedOutputStream(System.out), false);
+    long start = System.nanoTime();
+    try (BatchAdjudicator adjudicator = new BatchAdjudicator(threads);
+         Tablebase tablebase = tablebaseDirectory == null ? null : Tablebase.open(tablebaseDirectory)) {
+      adjudicator.setTablebase(tablebase);
+      adjudicator.run(Paths.get(args[0]), out);
+      double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+      System.err.printf("games %d rejected %d time %.3f s (%.0f games/s)%n", adjudicator.getGames(),
+              adjudicator.getRejected(), seconds, adjudicator.getGames() / seconds);
+    }
+  }
+}
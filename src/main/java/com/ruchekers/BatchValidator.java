@@ -0,0 +1,248 @@
+package com.ruchekers;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Validates many moves at once, each in its own position, by the rules of {@link Main#validate(GameBoard,
+ * CharSequence)}, a tower not of the side to move being rejected as {@link MoveVerdict#INVALID_MOVE}. A position
+ * takes {@link #POSITION_LONGS} longs: the packed tower of every dark square, see {@link TowerBits}, counted row by
+ * row from a1, then the side to move, 0 for white and 1 for black. A move is a long packed as in
+ * {@link OpeningBook}, so it has at most {@link OpeningBook#MAX_MOVE_LENGTH} squares; a move of two squares is
+ * taken as a capture when a tower stands between them. The moves are split into chunks validated
+ * on a pool of threads, each reusing its own board.
+ * Usage: {@code BatchValidator archive [--threads count] [--rounds count] [--moves count]} validates the moves
+ * of an archive, see {@link GameArchiveWriter}, up to 500000 by default, and reports the throughput in moves
+ * per second.
+ */
+public final class BatchValidator implements AutoCloseable {
+  static final int DARK_SQUARES = Bitboards.SQUARES / 2;
+  public static final int POSITION_LONGS = DARK_SQUARES + 1;
+
+  private static final int CHUNK = 4096;
+  private static final int DEFAULT_ROUNDS = 5;
+  private static final int DEFAULT_MOVES = 500_000;
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final ExecutorService executor;
+  private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+  /**
+   * Creates a validator.
+   *
+   * @param threads number of worker threads, at least 1
+   */
+  public BatchValidator(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive");
+    }
+    executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "validator");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Validates moves, leaving the positions untouched.
+   *
+   * @param positions {@link #POSITION_LONGS} longs per move
+   * @param moves     packed moves
+   * @return the verdict of every move
+   */
+  public MoveVerdict[] validate(long[] positions, long[] moves) {
+    if (positions.length != moves.length * POSITION_LONGS) {
+      throw new IllegalArgumentException("expected " + POSITION_LONGS + " longs of position per move");
+    }
+    MoveVerdict[] verdicts = new MoveVerdict[moves.length];
+    if (moves.length <= CHUNK) {
+      validate(positions, moves, verdicts, 0, moves.length);
+      return verdicts;
+    }
+    List<Future<?>> chunks = new ArrayList<>();
+    for (int start = 0; start < moves.length; start += CHUNK) {
+      int from = start;
+      int to = Math.min(start + CHUNK, moves.length);
+      chunks.add(executor.submit(() -> validate(positions, moves, verdicts, from, to)));
+    }
+    try {
+      for (Future<?> chunk : chunks) {
+        chunk.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while validating", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("validation failed", e.getCause());
+    }
+    return verdicts;
+  }
+
+  private void validate(long[] positions, long[] moves, MoveVerdict[] verdicts, int from, int to) {
+    Worker worker = workers.get();
+    for (int k = from; k < to; ++k) {
+      verdicts[k] = worker.validate(positions, k * POSITION_LONGS, moves[k]);
+    }
+  }
+
+  /**
+   * Writes a board in the position format of {@link #validate(long[], long[])}.
+   *
+   * @param board     position to write
+   * @param positions array to write to
+   * @param offset    index of the first long to write
+   */
+  public static void packPosition(GameBoard board, long[] positions, int offset) {
+    for (int dark = 0; dark < DARK_SQUARES; ++dark) {
+      positions[offset + dark] = board.getTowerBits(TablebaseIndex.squareOf(dark));
+    }
+    positions[offset + DARK_SQUARES] = board.getSideToMove().ordinal();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.out.println("usage: BatchValidator archive [--threads count] [--rounds count] [--moves count]");
+      return;
+    }
+    int threads = Runtime.getRuntime().availableProcessors();
+    int rounds = DEFAULT_ROUNDS;
+    int limit = DEFAULT_MOVES;
+    for (int k = 1; k + 1 < args.length; k += 2) {
+      if ("--threads".equals(args[k])) {
+        threads = Integer.parseInt(args[k + 1]);
+      } else if ("--rounds".equals(args[k])) {
+        rounds = Integer.parseInt(args[k + 1]);
+      } else if ("--moves".equals(args[k])) {
+        limit = Integer.parseInt(args[k + 1]);
+      }
+    }
+    long[] positions = new long[limit * POSITION_LONGS];
+    long[] moves = new long[limit];
+    int count = 0;
+    GameBoard board = new GameBoard();
+    int[] squares = new int[OpeningBook.MAX_MOVE_LENGTH];
+    try (GameArchiveReader reader = new GameArchiveReader(Paths.get(args[0]))) {
+      for (long game = 0; game < reader.getGames() && count < limit; ++game) {
+        ArchivedGame archived = reader.read(game);
+        archived.setUp(board);
+        for (int move = 0; move < archived.getHalfMoves() && count < limit; ++move) {
+          int length = archived.getMoveLength(move);
+          if (length <= OpeningBook.MAX_MOVE_LENGTH) {
+            for (int k = 0; k < length; ++k) {
+              squares[k] = archived.getSquare(move, k);
+            }
+            packPosition(board, positions, count * POSITION_LONGS);
+            moves[count++] = OpeningBook.pack(squares, length);
+          }
+          String text = archived.getMoveText(move);
+          if (!Main.tryMove(board, text, 0, text.length()).isLegal()) {
+            break;
+          }
+        }
+      }
+    }
+    long[] packedPositions = Arrays.copyOf(positions, count * POSITION_LONGS);
+    long[] packedMoves = Arrays.copyOf(moves, count);
+    try (BatchValidator validator = new BatchValidator(threads)) {
+      for (int round = 0; round < rounds; ++round) {
+        long start = System.nanoTime();
+        MoveVerdict[] verdicts = validator.validate(packedPositions, packedMoves);
+        double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+        int legal = 0;
+        for (MoveVerdict verdict : verdicts) {
+          if (verdict.isLegal()) {
+            ++legal;
+          }
+        }
+        System.err.printf("moves %d legal %d time %.3f s (%.0f moves/s)%n", verdicts.length, legal, seconds,
+                verdicts.length / seconds);
+      }
+    }
+  }
+
+  /**
+   * Board and scratch objects of one thread. The board never creates towers, it only moves them, so the towers
+   * of a position are taken from a pool of one per dark square and reset for every move.
+   */
+  private static final class Worker {
+    private final GameBoard board = new GameBoard();
+    private final PieceTower[] towers = new PieceTower[DARK_SQUARES];
+    private final MoveNotation notation = new MoveNotation();
+    private final int[] squares = new int[OpeningBook.MAX_MOVE_LENGTH];
+
+    Worker() {
+      for (int dark = 0; dark < DARK_SQUARES; ++dark) {
+        towers[dark] = new PieceTower();
+      }
+    }
+
+    /**
+     * Validates a move, {@link MoveVerdict#ERROR} if the move or its position is malformed and
+     * {@link MoveVerdict#INVALID_MOVE} if the tower moved is not of the side to move.
+     */
+    MoveVerdict validate(long[] positions, int offset, long move) {
+      int length = OpeningBook.moveLength(move);
+      long side = positions[offset + DARK_SQUARES];
+      if (length < 2 || length > OpeningBook.MAX_MOVE_LENGTH || side != 0 && side != 1) {
+        return MoveVerdict.ERROR;
+      }
+      board.clear();
+      for (int dark = 0; dark < DARK_SQUARES; ++dark) {
+        long tower = positions[offset + dark];
+        if (!TowerBits.isValid(tower)) {
+          return MoveVerdict.ERROR;
+        }
+        if (tower != TowerBits.EMPTY) {
+          PieceTower pooled = towers[dark];
+          pooled.setBits(tower);
+          pooled.setLastBeatLetterOrder(0);
+          pooled.setLastBeatDigitOrder(0);
+          int square = TablebaseIndex.squareOf(dark);
+          board.setTower(Bitboards.letterOf(square), Bitboards.digitOf(square), pooled);
+        }
+      }
+      board.setSideToMove(side == 0 ? Color.WHITE : Color.BLACK);
+      for (int k = 0; k < length; ++k) {
+        squares[k] = OpeningBook.moveSquare(move, k);
+      }
+      PieceTower mover = board.getTower(Bitboards.letterOf(squares[0]), Bitboards.digitOf(squares[0]));
+      if (mover != null && mover.getColor() != board.getSideToMove()) {
+        return MoveVerdict.INVALID_MOVE;
+      }
+      notation.setMove(squares, length, length > 2 || jumpsOver(squares[0], squares[1]));
+      return Main.validate(board, notation);
+    }
+
+    /**
+     * Tells if a tower stands on the diagonal strictly between two squares.
+     */
+    private boolean jumpsOver(int from, int to) {
+      int stepI = Integer.signum(Bitboards.letterOf(to) - Bitboards.letterOf(from));
+      int stepJ = Integer.signum(Bitboards.digitOf(to) - Bitboards.digitOf(from));
+      if (Math.abs(Bitboards.letterOf(to) - Bitboards.letterOf(from))
+              != Math.abs(Bitboards.digitOf(to) - Bitboards.digitOf(from))) {
+        return false;
+      }
+      int i = Bitboards.letterOf(from) + stepI;
+      int j = Bitboards.digitOf(from) + stepJ;
+      for (; i != Bitboards.letterOf(to); i += stepI, j += stepJ) {
+        if (board.getTower(i, j) != null) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.ruchekers;
+
+/**
+ * Helpers for 64-bit board masks. Square {@code (i, j)} of the game board maps to bit
+ * {@code (j - 1) * 8 + (i - 1)}, so only the 32 dark squares are ever set.
+ */
+public final class Bitboards {
+  public static final int SIZE = 8;
+  public static final int SQUARES = SIZE * SIZE;
+  public static final int NO_SQUARE = -1;
+
+  static final int NORTH_EAST = 0;
+  static final int NORTH_WEST = 1;
+  static final int SOUTH_EAST = 2;
+  static final int SOUTH_WEST = 3;
+  static final int DIRECTIONS = 4;
+  static final int NO_DIRECTION = -1;
+
+  private static final int NE_SHIFT = 9;
+  private static final int NW_SHIFT = 7;
+  private static final long NOT_FILE_A = 0xFEFEFEFEFEFEFEFEL;
+  private static final long NOT_FILE_H = 0x7F7F7F7F7F7F7F7FL;
+
+  private static final int[] STEPS = new int[DIRECTIONS * SQUARES];
+  private static final long[] DIAGONALS = new long[SQUARES];
+
+  static {
+    for (int square = 0; square < SQUARES; ++square) {
+      for (int direction = 0; direction < DIRECTIONS; ++direction) {
+        long target = shift(bit(square), direction);
+        STEPS[direction * SQUARES + square] = target == 0 ? NO_SQUARE : Long.numberOfTrailingZeros(target);
+      }
+    }
+    for (int square = 0; square < SQUARES; ++square) {
+      DIAGONALS[square] = bit(square);
+      for (int direction = 0; direction < DIRECTIONS; ++direction) {
+        for (int next = step(square, direction); next != NO_SQUARE; next = step(next, direction)) {
+          DIAGONALS[square] |= bit(next);
+        }
+      }
+    }
+  }
+
+  private Bitboards() {
+
+  }
+
+  public static int square(int i, int j) {
+    return (j - 1) * SIZE + (i - 1);
+  }
+
+  public static int letterOf(int square) {
+    return square % SIZE + 1;
+  }
+
+  public static int digitOf(int square) {
+    return square / SIZE + 1;
+  }
+
+  public static long bit(int square) {
+    return 1L << square;
+  }
+
+  /**
+   * Returns the neighbouring square in the given direction or {@link #NO_SQUARE} at the edge of the board.
+   */
+  static int step(int square, int direction) {
+    return STEPS[direction * SQUARES + square];
+  }
+
+  /**
+   * Returns the squares of both diagonals crossing the given square, the square itself included.
+   */
+  static long diagonals(int square) {
+    return DIAGONALS[square];
+  }
+
+  /**
+   * Returns the direction leading from one square to another along a diagonal, or {@link #NO_DIRECTION} if the
+   * squares are the same or share no diagonal.
+   */
+  static int direction(int from, int to) {
+    int letters = letterOf(to) - letterOf(from);
+    int digits = digitOf(to) - digitOf(from);
+    if (letters == 0 || Math.abs(letters) != Math.abs(digits)) {
+      return NO_DIRECTION;
+    }
+    if (digits > 0) {
+      return letters > 0 ? NORTH_EAST : NORTH_WEST;
+    }
+    return letters > 0 ? SOUTH_EAST : SOUTH_WEST;
+  }
+
+  static int opposite(int direction) {
+    return DIRECTIONS - 1 - direction;
+  }
+
+  /**
+   * Shifts every square of the mask one step in the given direction, dropping squares that leave the board.
+   *
+   * @param mask      a set of squares
+   * @param direction one of {@link #NORTH_EAST}, {@link #NORTH_WEST}, {@link #SOUTH_EAST}, {@link #SOUTH_WEST}
+   * @return the shifted set
+   */
+  static long shift(long mask, int direction) {
+    switch (direction) {
+      case NORTH_EAST:
+        return (mask << NE_SHIFT) & NOT_FILE_A;
+      case NORTH_WEST:
+        return (mask << NW_SHIFT) & NOT_FILE_H;
+      case SOUTH_EAST:
+        return (mask >>> NW_SHIFT) & NOT_FILE_A;
+      default:
+        return (mask >>> NE_SHIFT) & NOT_FILE_H;
+    }
+  }
+
+  /**
+   * Finds the towers of one side that have something to beat.
+   * Simple towers beat an adjacent enemy tower, kings beat the first tower met along a diagonal;
+   * in both cases the cell right behind the victim must be free.
+   *
+   * @param men     simple towers of the beating side
+   * @param kings   king towers of the beating side
+   * @param enemies towers of the other side
+   * @param empty   free cells of the board
+   * @return the subset of {@code men | kings} that can beat
+   */
+  static long capturers(long men, long kings, long enemies, long empty) {
+    long result = 0;
+    for (int direction = 0; direction < DIRECTIONS; ++direction) {
+      int back = opposite(direction);
+      long victims = enemies & shift(empty, back);
+      long frontier = shift(victims, back);
+      result |= frontier & (men | kings);
+      frontier &= empty;
+      while (frontier != 0) {
+        frontier = shift(frontier, back);
+        result |= frontier & kings;
+        frontier &= empty;
+      }
+    }
+    return result;
+  }
+}
@@ -1,5 +1,5 @@
 package com.ruchekers;
 
-enum Color {
+public enum Color {
   WHITE, BLACK
 }
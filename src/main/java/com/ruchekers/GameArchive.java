@@ -0,0 +1,64 @@
+package com.ruchekers;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Binary archive of games, written by {@link GameArchiveWriter} and read by {@link GameArchiveReader}.
+ * The file starts with a header of {@link #HEADER_BYTES}: the magic number, the format version as ints,
+ * the number of games and the offset of the index block as longs. The games follow, encoded by
+ * {@link ArchivedGame#encode(java.nio.ByteBuffer)}, and the index block closes the file with the offset of
+ * every game as a long. All numbers are big-endian.
+ * Usage: {@code GameArchive pack games-file archive} converts games in the text format of
+ * {@link BatchAdjudicator}, {@code GameArchive unpack archive [first [count]]} prints them back.
+ */
+public final class GameArchive {
+  public static final int MAGIC = 0x52434B41;
+  public static final int VERSION = 1;
+  public static final int HEADER_BYTES = 2 * Integer.BYTES + 2 * Long.BYTES;
+  public static final int MAX_GAME_BYTES = 1024 * 1024;
+  public static final long SEGMENT_BYTES = 1024L * 1024 * 1024;
+
+  private GameArchive() {
+
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length >= 3 && "pack".equals(args[0])) {
+      try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[1]));
+           GameArchiveWriter writer = new GameArchiveWriter(Paths.get(args[2]))) {
+        GameTextReader games = new GameTextReader(reader);
+        List<String> lines;
+        while ((lines = games.next()) != null) {
+          try {
+            writer.write(ArchivedGame.fromText(lines));
+          } catch (IllegalArgumentException e) {
+            throw new IOException(args[1] + ": game at line " + games.getFirstLine() + ": " + e.getMessage(), e);
+          }
+        }
+      }
+    } else if (args.length >= 2 && "unpack".equals(args[0])) {
+      PrintStream out = new PrintStream(new BufferedOutputStream(System.out), false);
+      try (GameArchiveReader reader = new GameArchiveReader(Paths.get(args[1]))) {
+        long first = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        long end = args.length > 3 ? Math.min(first + Long.parseLong(args[3]), reader.getGames()) : reader.getGames();
+        for (long game = first; game < end; ++game) {
+          if (game > first) {
+            out.println();
+          }
+          for (String line : reader.read(game).toText()) {
+            out.println(line);
+          }
+        }
+      }
+      out.flush();
+    } else {
+      System.out.println("usage: GameArchive pack games-file archive | unpack archive [first [count]]");
+    }
+  }
+}
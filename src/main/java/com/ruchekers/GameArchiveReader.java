@@ -0,0 +1,90 @@
+package com.ruchekers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Reads a {@link GameArchive} file through memory mapping. The games are mapped in segments of
+ * {@link GameArchive#SEGMENT_BYTES}, each overlapping the next by the largest game, so that every game lies
+ * whole in the segment where it starts. Segments are mapped on first use.
+ * Reading is thread-safe: every call works on its own view of the mapping.
+ */
+public final class GameArchiveReader implements AutoCloseable {
+  private final FileChannel channel;
+  private final long games;
+  private final long dataEnd;
+  private final MappedByteBuffer index;
+  private final AtomicReferenceArray<MappedByteBuffer> segments;
+
+  /**
+   * Opens an archive.
+   *
+   * @param path file to read
+   * @throws IOException if the file cannot be read or is not an archive
+   */
+  public GameArchiveReader(Path path) throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, GameArchive.HEADER_BYTES);
+      if (header.getInt() != GameArchive.MAGIC) {
+        throw new IOException(path + " is not a game archive");
+      }
+      if (header.getInt() != GameArchive.VERSION) {
+        throw new IOException(path + " has an unsupported archive version");
+      }
+      games = header.getLong();
+      dataEnd = header.getLong();
+      if (games > Integer.MAX_VALUE / Long.BYTES || dataEnd + games * Long.BYTES > channel.size()) {
+        throw new IOException(path + " is truncated");
+      }
+      index = channel.map(FileChannel.MapMode.READ_ONLY, dataEnd, games * Long.BYTES);
+      segments = new AtomicReferenceArray<>((int) ((dataEnd - 1) / GameArchive.SEGMENT_BYTES) + 1);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public long getGames() {
+    return games;
+  }
+
+  /**
+   * Reads the game with the given number.
+   *
+   * @param game 0-based number of the game in the archive
+   * @return the game
+   * @throws IOException if the game cannot be mapped
+   */
+  public ArchivedGame read(long game) throws IOException {
+    if (game < 0 || game >= games) {
+      throw new IndexOutOfBoundsException("game " + game + " of " + games);
+    }
+    long offset = index.getLong((int) game * Long.BYTES);
+    int segment = (int) (offset / GameArchive.SEGMENT_BYTES);
+    ByteBuffer view = segment(segment).duplicate();
+    view.position((int) (offset - (long) segment * GameArchive.SEGMENT_BYTES));
+    return ArchivedGame.decode(view);
+  }
+
+  private MappedByteBuffer segment(int segment) throws IOException {
+    MappedByteBuffer buffer = segments.get(segment);
+    if (buffer == null) {
+      long start = (long) segment * GameArchive.SEGMENT_BYTES;
+      long size = Math.min(GameArchive.SEGMENT_BYTES + GameArchive.MAX_GAME_BYTES, dataEnd - start);
+      segments.compareAndSet(segment, null, channel.map(FileChannel.MapMode.READ_ONLY, start, size));
+      buffer = segments.get(segment);
+    }
+    return buffer;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
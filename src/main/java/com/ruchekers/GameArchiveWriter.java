@@ -0,0 +1,96 @@
+package com.ruchekers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a {@link GameArchive} file. Games are buffered and appended one after the other,
+ * the index block and the header are written on {@link #close()}.
+ */
+public final class GameArchiveWriter implements AutoCloseable {
+  private static final int BUFFER_SIZE = 4 * GameArchive.MAX_GAME_BYTES;
+  private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private long position = GameArchive.HEADER_BYTES;
+  private long[] offsets = new long[INITIAL_INDEX_CAPACITY];
+  private int games;
+
+  /**
+   * Creates the archive file, replacing an existing one.
+   *
+   * @param path file to write
+   * @throws IOException if the file cannot be created
+   */
+  public GameArchiveWriter(Path path) throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    channel.position(GameArchive.HEADER_BYTES);
+  }
+
+  /**
+   * Appends a game.
+   *
+   * @param game game to write
+   * @throws IOException              if the file cannot be written
+   * @throws IllegalArgumentException if the game takes more than {@link GameArchive#MAX_GAME_BYTES}
+   */
+  public void write(ArchivedGame game) throws IOException {
+    int size = game.encodedSize();
+    if (size > GameArchive.MAX_GAME_BYTES) {
+      throw new IllegalArgumentException("game takes " + size + " bytes");
+    }
+    if (buffer.remaining() < size) {
+      flush();
+    }
+    if (games == offsets.length) {
+      offsets = Arrays.copyOf(offsets, games * 2);
+    }
+    offsets[games++] = position;
+    game.encode(buffer);
+    position += size;
+  }
+
+  public int getGames() {
+    return games;
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Writes the index block and the header, then closes the file.
+   *
+   * @throws IOException if the file cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      for (int game = 0; game < games; ++game) {
+        if (buffer.remaining() < Long.BYTES) {
+          flush();
+        }
+        buffer.putLong(offsets[game]);
+      }
+      flush();
+      buffer.putInt(GameArchive.MAGIC).putInt(GameArchive.VERSION).putLong(games).putLong(position);
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, buffer.position());
+      }
+      buffer.clear();
+    } finally {
+      channel.close();
+    }
+  }
+}
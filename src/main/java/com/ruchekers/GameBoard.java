@@ -6,6 +6,7 @@ import com.ruchekers.exceptions.InvalidMoveException;
 import com.ruchekers.exceptions.WhiteCellException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * A class containing the main logic of the program. It simulates the real game board.
@@ -24,90 +25,361 @@ public final class GameBoard {
 
   private final PieceTower[] board;
 
-  GameBoard() {
+  /**
+   * Bit masks of the position, see {@link Bitboards} for the square numbering.
+   * They are rebuilt lazily after {@link #setTower(int, int, PieceTower)}, because towers
+   * placed that way may still be filled by the caller, and kept up to date by the moves.
+   */
+  private long occupied;
+  private long blackTops;
+  private long kingTops;
+  private long lastBeaters;
+  private boolean masksValid;
+
+  /**
+   * Towers of each side that have something to beat, the last-beat rule aside, see {@link #getCapturers(Color)}.
+   * A change of a square can only change the towers on its diagonals, so every change marks them stale
+   * and only stale towers are checked again on the next query.
+   */
+  private long whiteCapturers;
+  private long blackCapturers;
+  private long whiteStale = -1;
+  private long blackStale = -1;
+
+  /**
+   * Position hash, see {@link Zobrist}. {@code squareKeys} holds the current key of every square.
+   */
+  private final long[] squareKeys = new long[Bitboards.SQUARES];
+  private long hash;
+  private Color sideToMove = Color.WHITE;
+
+  private static final int INITIAL_UNDO_CAPACITY = 64;
+
+  /**
+   * Undo stack of {@link #makeMove(MoveList, int)}, see {@link UndoRecord} for the layout.
+   * Towers emptied by a capture are parked in {@code removedTowers} to be put back on undo.
+   */
+  private long[] undoRecords = new long[INITIAL_UNDO_CAPACITY];
+  private int undoSize;
+  private PieceTower[] removedTowers = new PieceTower[INITIAL_UNDO_CAPACITY];
+  private int removedSize;
+
+  public GameBoard() {
     board = new PieceTower[boardLength * boardWidth + 1];
   }
 
+  /**
+   * Creates an independent board with the same position and side to move, but without move history.
+   *
+   * @return the copy
+   */
+  public GameBoard copy() {
+    GameBoard copy = new GameBoard();
+    for (int index = 0; index < board.length; ++index) {
+      if (board[index] != null) {
+        copy.board[index] = board[index].copy();
+      }
+    }
+    copy.occupied = occupied;
+    copy.blackTops = blackTops;
+    copy.kingTops = kingTops;
+    copy.lastBeaters = lastBeaters;
+    copy.masksValid = masksValid;
+    copy.whiteCapturers = whiteCapturers;
+    copy.blackCapturers = blackCapturers;
+    copy.whiteStale = whiteStale;
+    copy.blackStale = blackStale;
+    System.arraycopy(squareKeys, 0, copy.squareKeys, 0, squareKeys.length);
+    copy.hash = hash;
+    copy.sideToMove = sideToMove;
+    return copy;
+  }
+
+  /**
+   * Removes every tower and the move history, so that the board can be reused for another game.
+   */
+  public void clear() {
+    Arrays.fill(board, null);
+    Arrays.fill(removedTowers, 0, removedSize, null);
+    undoSize = 0;
+    removedSize = 0;
+    sideToMove = Color.WHITE;
+    masksValid = false;
+  }
+
   public PieceTower getTower(int i, int j) {
     return board[j * boardWidth + i];
   }
 
   public void setTower(int i, int j, PieceTower newTower) {
     board[j * boardWidth + i] = newTower;
+    masksValid = false;
+  }
+
+  public Color getSideToMove() {
+    return sideToMove;
+  }
+
+  public void setSideToMove(Color sideToMove) {
+    if (this.sideToMove != sideToMove) {
+      hash ^= Zobrist.SIDE_TO_MOVE;
+    }
+    this.sideToMove = sideToMove;
   }
 
   /**
-   * Checks if the given cell is valid. If it is not, throws an exception.
+   * Returns a 64-bit hash of the position: tower contents, last-beat marks and the side to move.
+   * It is kept up to date by every move, so reading it costs nothing.
    *
-   * @param newI : {@code int} - letter number of the column of the given cell.
-   * @param newJ : {@code int} - number of the row of the given cell.
-   * @throws BusyCellException  - if the new position is busy
-   * @throws WhiteCellException - if the new position is a white cell
-   * @throws AnyErrorException  - if any other errors occur
+   * @return the hash of the position
    */
-  private void validateNewPos(int newI, int newJ) throws BusyCellException,
-          WhiteCellException, AnyErrorException {
-    if (newI >= boardWidth || newJ >= boardLength) {
-      throw new AnyErrorException("error");
-    }
-    if (getTower(newI, newJ) != null) {
-      throw new BusyCellException("busy cell");
+  public long getHash() {
+    ensureMasks();
+    return hash;
+  }
+
+  /**
+   * Returns the packed contents of the tower on the given square, see {@link TowerBits}.
+   *
+   * @param square square number, see {@link Bitboards}
+   * @return the packed tower or {@link TowerBits#EMPTY} for a free square
+   */
+  public long getTowerBits(int square) {
+    PieceTower tower = getTower(square);
+    return tower == null ? TowerBits.EMPTY : tower.getBits();
+  }
+
+  long getOccupied() {
+    return occupied;
+  }
+
+  long getBlackTops() {
+    return blackTops;
+  }
+
+  long getKingTops() {
+    return kingTops;
+  }
+
+  long getLastBeaters() {
+    return lastBeaters;
+  }
+
+  /**
+   * Returns the towers of the given side that have something to beat, not taking the last-beat rule into account.
+   * Only the towers on the diagonals changed since the previous query of the side are checked again.
+   *
+   * @param color side to look at
+   * @return a set of squares, see {@link Bitboards}
+   */
+  long getCapturers(Color color) {
+    ensureMasks();
+    long white = occupied & ~blackTops;
+    if (color == Color.WHITE) {
+      if (whiteStale != 0) {
+        whiteCapturers = whiteCapturers & ~whiteStale | Bitboards.capturers(white & ~kingTops & whiteStale,
+                white & kingTops & whiteStale, blackTops, ~occupied);
+        whiteStale = 0;
+      }
+      return whiteCapturers;
     }
-    if (isWhiteCell(newI, newJ)) {
-      throw new WhiteCellException("white cell");
+    if (blackStale != 0) {
+      blackCapturers = blackCapturers & ~blackStale | Bitboards.capturers(blackTops & ~kingTops & blackStale,
+              blackTops & kingTops & blackStale, white, ~occupied);
+      blackStale = 0;
     }
+    return blackCapturers;
+  }
+
+  PieceTower getTower(int square) {
+    return getTower(Bitboards.letterOf(square), Bitboards.digitOf(square));
   }
 
   /**
-   * Returns all possible towers to be beaten by the towers of the given color.
-   *
-   * @param color color of the towers that can beat
-   * @return a 2d ArrayList of pairs containing the coordinates of towers to be beaten.
+   * Brings the bit masks up to date with towers placed by {@link #setTower(int, int, PieceTower)}.
    */
-  private ArrayList<Pair>[] getAllPossibleVictims(Color color) {
-    ArrayList<Pair>[] allVictims = new ArrayList[boardWidth * boardLength];
+  void ensureMasks() {
+    if (masksValid) {
+      return;
+    }
+    occupied = 0;
+    blackTops = 0;
+    kingTops = 0;
+    lastBeaters = 0;
+    Arrays.fill(squareKeys, 0);
+    hash = sideToMove == Color.BLACK ? Zobrist.SIDE_TO_MOVE : 0;
     for (int i = 1; i < boardWidth; ++i) {
       for (int j = 1; j < boardLength; ++j) {
-        if (getTower(i, j) != null && getColor(i, j).equals(color)) {
-          allVictims[j * boardWidth + i] = getPossibleVictims(i, j);
-        }
+        refreshSquare(i, j);
       }
     }
-    return allVictims;
+    masksValid = true;
   }
 
   /**
-   * Defines if other towers of the same color as the given one have possible towers to beat.
+   * Copies the state of the tower standing on the given cell into the bit masks and the hash.
+   */
+  private void refreshSquare(int i, int j) {
+    int square = Bitboards.square(i, j);
+    long bit = Bitboards.bit(square);
+    occupied &= ~bit;
+    blackTops &= ~bit;
+    kingTops &= ~bit;
+    lastBeaters &= ~bit;
+    hash ^= squareKeys[square];
+    squareKeys[square] = 0;
+    whiteStale |= Bitboards.diagonals(square);
+    blackStale |= Bitboards.diagonals(square);
+    PieceTower tower = getTower(i, j);
+    if (tower == null) {
+      return;
+    }
+    occupied |= bit;
+    squareKeys[square] = Zobrist.tower(square, tower.getBits());
+    if (tower.getLastBeatLetterOrder() != 0 || tower.getLastBeatDigitOrder() != 0) {
+      squareKeys[square] ^= Zobrist.lastBeat(square, tower.getLastBeatLetterOrder(), tower.getLastBeatDigitOrder());
+    }
+    hash ^= squareKeys[square];
+    if (tower.isEmpty()) {
+      return;
+    }
+    if (tower.getColor() == Color.BLACK) {
+      blackTops |= bit;
+    }
+    if (tower.isKing()) {
+      kingTops |= bit;
+    }
+    if (tower.getLastBeatLetterOrder() != 0 || tower.getLastBeatDigitOrder() != 0) {
+      lastBeaters |= bit;
+    }
+  }
+
+  private long colorMask(Color color) {
+    return color == Color.BLACK ? blackTops : occupied & ~blackTops;
+  }
+
+  /**
+   * Defines if any tower of the given color has a tower to beat.
+   * Towers that have just beaten are checked one by one,
+   * as they are not allowed to beat the same tower twice in a row.
    *
-   * @param i:{@code          int} letter number of the position of the given tower
-   * @param j:{@code          int} row number of the position of the given tower
-   * @param allVictims:{@code ArrayList<Pair>[]} all towers that can be beaten
-   *                          by the towers of the same color as the given one has
-   * @return true if other towers of the same color have possible towers to beat
-   * false otherwise
+   * @param color color of the towers that can beat
+   * @return true if the side has to beat
    */
-  private boolean haveOthersVictims(int i, int j, ArrayList<Pair>[] allVictims) {
-    for (int k = 0; k < boardWidth; ++k) {
-      for (int l = 0; l < boardLength; ++l) {
-        if (l != j || k != i) {
-          if (allVictims[l * boardWidth + k] != null) {
-            return true;
-          }
-        }
+  private boolean hasVictims(Color color) {
+    long capturers = getCapturers(color);
+    if ((capturers & ~lastBeaters) != 0) {
+      return true;
+    }
+    for (long rest = capturers & lastBeaters; rest != 0; rest &= rest - 1) {
+      int square = Long.numberOfTrailingZeros(rest);
+      if (getPossibleVictims(Bitboards.letterOf(square), Bitboards.digitOf(square)) != null) {
+        return true;
       }
     }
     return false;
   }
 
+  /**
+   * Checks if the given cell is a free dark cell of the board.
+   *
+   * @param newI : {@code int} - letter number of the column of the given cell.
+   * @param newJ : {@code int} - number of the row of the given cell.
+   * @return {@link MoveVerdict#BUSY_CELL} if the cell is busy, {@link MoveVerdict#WHITE_CELL} if it is a white
+   * cell, {@link MoveVerdict#ERROR} if it is off the board, otherwise {@link MoveVerdict#LEGAL}
+   */
+  private MoveVerdict checkNewPos(int newI, int newJ) {
+    if (newI >= boardWidth || newJ >= boardLength) {
+      return MoveVerdict.ERROR;
+    }
+    if (getTower(newI, newJ) != null) {
+      return MoveVerdict.BUSY_CELL;
+    }
+    if (isWhiteCell(newI, newJ)) {
+      return MoveVerdict.WHITE_CELL;
+    }
+    return MoveVerdict.LEGAL;
+  }
+
   private void annihilateLastBeaten() {
-    for (int i = 1; i < boardWidth; ++i) {
-      for (int j = 1; j < boardLength; ++j) {
-        if (getTower(i, j) != null) {
-          getTower(i, j).setLastBeatLetterOrder(0);
-          getTower(i, j).setLastBeatDigitOrder(0);
-        }
-      }
+    for (long rest = lastBeaters; rest != 0; rest &= rest - 1) {
+      int square = Long.numberOfTrailingZeros(rest);
+      PieceTower tower = getTower(square);
+      tower.setLastBeatLetterOrder(0);
+      tower.setLastBeatDigitOrder(0);
+      refreshSquare(Bitboards.letterOf(square), Bitboards.digitOf(square));
+    }
+  }
+
+  /**
+   * Checks a simple move of the given tower without playing it, by the rules of
+   * {@link #moveTower(int, int, int, int)}.
+   *
+   * @param oldI:{@code int} letter number of the position of the given tower
+   * @param oldJ:{@code int} row number of the position of the given tower
+   * @param newI:{@code int} letter number of the new position
+   * @param newJ:{@code int} letter number of the new position
+   * @return the verdict, {@link MoveVerdict#ERROR} if there is no tower to move or it cannot reach the new position
+   */
+  public MoveVerdict checkMoveTower(int oldI, int oldJ, int newI, int newJ) {
+    MoveVerdict verdict = checkNewPos(newI, newJ);
+    if (verdict != MoveVerdict.LEGAL) {
+      return verdict;
+    }
+    if (getTower(oldI, oldJ) == null) {
+      return MoveVerdict.ERROR;
+    }
+    ensureMasks();
+    if (hasVictims(getColor(oldI, oldJ))) {
+      return MoveVerdict.INVALID_MOVE;
+    }
+    return canReach(oldI, oldJ, newI, newJ) ? MoveVerdict.LEGAL : MoveVerdict.ERROR;
+  }
+
+  /**
+   * Checks the way of a simple move, as {@link MoveGenerator} lists them: a simple tower steps forward to a
+   * neighbouring cell, a king slides any distance along a diagonal over free cells.
+   */
+  private boolean canReach(int oldI, int oldJ, int newI, int newJ) {
+    int from = Bitboards.square(oldI, oldJ);
+    int to = Bitboards.square(newI, newJ);
+    int direction = Bitboards.direction(from, to);
+    if (direction == Bitboards.NO_DIRECTION) {
+      return false;
+    }
+    if (!isKing(oldI, oldJ)) {
+      boolean forward = direction == Bitboards.NORTH_EAST || direction == Bitboards.NORTH_WEST;
+      return Bitboards.step(from, direction) == to && forward == (getColor(oldI, oldJ) == Color.WHITE);
+    }
+    int cell = Bitboards.step(from, direction);
+    while (cell != to && (occupied & Bitboards.bit(cell)) == 0) {
+      cell = Bitboards.step(cell, direction);
+    }
+    return cell == to;
+  }
+
+  /**
+   * Plays a simple move of the given tower if {@link #checkMoveTower(int, int, int, int)} allows it.
+   *
+   * @return the verdict, the board being left untouched unless it is {@link MoveVerdict#LEGAL}
+   */
+  public MoveVerdict tryMoveTower(int oldI, int oldJ, int newI, int newJ) {
+    MoveVerdict verdict = checkMoveTower(oldI, oldJ, newI, newJ);
+    if (verdict != MoveVerdict.LEGAL) {
+      return verdict;
+    }
+    Color currColor = getColor(oldI, oldJ);
+    if (currColor.equals(Color.WHITE) && newJ == boardLength - 1) {
+      board[oldJ * boardWidth + oldI].makeKing();
+    } else if (currColor == Color.BLACK && newJ == 1) {
+      board[oldJ * boardWidth + oldI].makeKing();
     }
+    annihilateLastBeaten();
+    board[newJ * boardWidth + newI] = getTower(oldI, oldJ);
+    board[oldJ * boardWidth + oldI] = null;
+    refreshSquare(oldI, oldJ);
+    refreshSquare(newI, newJ);
+    return MoveVerdict.LEGAL;
   }
 
   /**
@@ -126,21 +398,96 @@ public final class GameBoard {
    */
   public void moveTower(int oldI, int oldJ, int newI, int newJ) throws BusyCellException,
           WhiteCellException, InvalidMoveException, AnyErrorException {
-    validateNewPos(newI, newJ);
-    ArrayList<Pair>[] allVictims = getAllPossibleVictims(getColor(oldI, oldJ));
-    if (allVictims[oldJ * boardWidth + oldI] != null || haveOthersVictims(oldI, oldJ, allVictims)) {
-      throw new InvalidMoveException("invalid move");
-    } else {
-      Color currColor = getColor(oldI, oldJ);
-      if (currColor.equals(Color.WHITE) && newJ == boardLength - 1) {
-        board[oldJ * boardWidth + oldI].makeKing();
-      } else if (currColor == Color.BLACK && newJ == 1) {
-        board[oldJ * boardWidth + oldI].makeKing();
+    tryMoveTower(oldI, oldJ, newI, newJ).raise();
+  }
+
+  /**
+   * Finds the tower beaten by a capture from the given cell to the new one, as {@link MoveGenerator} lists them:
+   * a simple tower jumps over a neighbouring enemy tower to the cell right behind it, a king beats the first tower
+   * met along a diagonal and lands on any free cell behind it. The tower beaten by the previous step of a chain
+   * cannot be beaten again.
+   *
+   * @param king whether to move by the rules of a king
+   * @return the square of the victim, or {@link Bitboards#NO_SQUARE} if there is none
+   */
+  private int captureVictim(int oldI, int oldJ, int newI, int newJ, boolean king) {
+    int from = Bitboards.square(oldI, oldJ);
+    int to = Bitboards.square(newI, newJ);
+    int direction = Bitboards.direction(from, to);
+    if (direction == Bitboards.NO_DIRECTION) {
+      return Bitboards.NO_SQUARE;
+    }
+    ensureMasks();
+    int victim = Bitboards.step(from, direction);
+    while (king && victim != to && (occupied & Bitboards.bit(victim)) == 0) {
+      victim = Bitboards.step(victim, direction);
+    }
+    if (victim == to || (occupied & Bitboards.bit(victim)) == 0) {
+      return Bitboards.NO_SQUARE;
+    }
+    PieceTower tower = getTower(oldI, oldJ);
+    int victimI = Bitboards.letterOf(victim);
+    int victimJ = Bitboards.digitOf(victim);
+    if (getColor(victimI, victimJ) == tower.getColor()
+            || tower.getLastBeatLetterOrder() == victimI && tower.getLastBeatDigitOrder() == victimJ) {
+      return Bitboards.NO_SQUARE;
+    }
+    for (int cell = Bitboards.step(victim, direction); cell != to; cell = Bitboards.step(cell, direction)) {
+      if (!king || (occupied & Bitboards.bit(cell)) != 0) {
+        return Bitboards.NO_SQUARE;
       }
-      setTower(newI, newJ, getTower(oldI, oldJ));
-      board[oldJ * boardWidth + oldI] = null;
-      annihilateLastBeaten();
     }
+    return victim;
+  }
+
+  /**
+   * Checks a capture by a king tower without playing it, by the rules of
+   * {@link #beatWithKing(int, int, int, int)}.
+   *
+   * @return the verdict, {@link MoveVerdict#ERROR} if there is no tower to move or nothing to beat
+   */
+  public MoveVerdict checkBeatWithKing(int oldI, int oldJ, int newI, int newJ) {
+    MoveVerdict verdict = checkNewPos(newI, newJ);
+    if (verdict != MoveVerdict.LEGAL) {
+      return verdict;
+    }
+    if (getTower(oldI, oldJ) == null || captureVictim(oldI, oldJ, newI, newJ, true) == Bitboards.NO_SQUARE) {
+      return MoveVerdict.ERROR;
+    }
+    return MoveVerdict.LEGAL;
+  }
+
+  /**
+   * Plays a capture by a king tower if {@link #checkBeatWithKing(int, int, int, int)} allows it.
+   *
+   * @return the verdict, the board being left untouched unless it is {@link MoveVerdict#LEGAL}
+   */
+  public MoveVerdict tryBeatWithKing(int oldI, int oldJ, int newI, int newJ) {
+    MoveVerdict verdict = checkNewPos(newI, newJ);
+    if (verdict != MoveVerdict.LEGAL) {
+      return verdict;
+    }
+    PieceTower oldTower = getTower(oldI, oldJ);
+    int victimSquare = oldTower == null ? Bitboards.NO_SQUARE : captureVictim(oldI, oldJ, newI, newJ, true);
+    if (victimSquare == Bitboards.NO_SQUARE) {
+      return MoveVerdict.ERROR;
+    }
+    int victimI = Bitboards.letterOf(victimSquare);
+    int victimJ = Bitboards.digitOf(victimSquare);
+    PieceTower victim = getTower(victimI, victimJ);
+    oldTower.pushCode(victim.popCode());
+    annihilateLastBeaten();
+    oldTower.setLastBeatLetterOrder(victimI);
+    oldTower.setLastBeatDigitOrder(victimJ);
+    board[newJ * boardWidth + newI] = oldTower;
+    board[oldJ * boardWidth + oldI] = null;
+    if (victim.isEmpty()) {
+      board[victimJ * boardWidth + victimI] = null;
+    }
+    refreshSquare(oldI, oldJ);
+    refreshSquare(newI, newJ);
+    refreshSquare(victimI, victimJ);
+    return MoveVerdict.LEGAL;
   }
 
   /**
@@ -159,38 +506,60 @@ public final class GameBoard {
    */
   public void beatWithKing(int oldI, int oldJ, int newI, int newJ) throws BusyCellException,
           WhiteCellException, InvalidMoveException, AnyErrorException {
-    validateNewPos(newI, newJ);
-    ArrayList<Pair> victims = getPossibleVictims(oldI, oldJ);
+    tryBeatWithKing(oldI, oldJ, newI, newJ).raise();
+  }
+
+  /**
+   * Checks a capture by a simple tower without playing it, by the rules of
+   * {@link #beatWithTower(int, int, int, int)}.
+   *
+   * @return the verdict, {@link MoveVerdict#ERROR} if there is no tower to move or no enemy tower to beat
+   */
+  public MoveVerdict checkBeatWithTower(int oldI, int oldJ, int newI, int newJ) {
+    MoveVerdict verdict = checkNewPos(newI, newJ);
+    if (verdict != MoveVerdict.LEGAL) {
+      return verdict;
+    }
+    if (getTower(oldI, oldJ) == null || captureVictim(oldI, oldJ, newI, newJ, false) == Bitboards.NO_SQUARE) {
+      return MoveVerdict.ERROR;
+    }
+    return MoveVerdict.LEGAL;
+  }
+
+  /**
+   * Plays a capture by a simple tower if {@link #checkBeatWithTower(int, int, int, int)} allows it.
+   *
+   * @return the verdict, the board being left untouched unless it is {@link MoveVerdict#LEGAL}
+   */
+  public MoveVerdict tryBeatWithTower(int oldI, int oldJ, int newI, int newJ) {
+    MoveVerdict verdict = checkBeatWithTower(oldI, oldJ, newI, newJ);
+    if (verdict != MoveVerdict.LEGAL) {
+      return verdict;
+    }
+    ensureMasks();
     PieceTower oldTower = getTower(oldI, oldJ);
-    if (victims != null) {
-      int maxI = Math.max(oldI, newI);
-      int minI = Math.min(oldI, newI);
-      int maxJ = Math.max(oldJ, newJ);
-      int minJ = Math.min(oldJ, newJ);
-      int k = 0;
-      for (; k < victims.size(); ++k) {
-        if (victims.get(k).getFirst() > minI && victims.get(k).getFirst() < maxI
-                && victims.get(k).getSecond() > minJ && victims.get(k).getSecond() < maxJ) {
-          break;
-        }
-      }
-      if (k < victims.size()) {
-        PieceTower victim = getTower(victims.get(k).getFirst(), victims.get(k).getSecond());
-        oldTower.pushPiece(victim.popPiece());
-        annihilateLastBeaten();
-        oldTower.setLastBeatLetterOrder(victims.get(k).getFirst());
-        oldTower.setLastBeatDigitOrder(victims.get(k).getSecond());
-        setTower(newI, newJ, oldTower);
-        board[oldJ * boardWidth + oldI] = null;
-        if (victim.isEmpty()) {
-          board[victims.get(k).getSecond() * boardWidth + victims.get(k).getFirst()] = null;
-        }
-      } else {
-        throw new AnyErrorException("error");
-      }
-    } else {
-      throw new AnyErrorException("error");
+    int victimI = (oldI + newI) / 2;
+    int victimJ = (oldJ + newJ) / 2;
+    PieceTower victim = getTower(victimI, victimJ);
+    oldTower.pushCode(victim.popCode());
+    annihilateLastBeaten();
+    oldTower.setLastBeatLetterOrder(victimI);
+    oldTower.setLastBeatDigitOrder(victimJ);
+    Color currColor = getColor(oldI, oldJ);
+    if (currColor.equals(Color.WHITE) && newJ == boardLength - 1) {
+      getTower(oldI, oldJ).makeKing();
+    } else if (currColor == Color.BLACK && newJ == 1) {
+      getTower(oldI, oldJ).makeKing();
+    }
+    board[newJ * boardWidth + newI] = oldTower;
+    board[oldJ * boardWidth + oldI] = null;
+    if (victim.isEmpty()) {
+      board[victimJ * boardWidth + victimI] = null;
     }
+    refreshSquare(oldI, oldJ);
+    refreshSquare(newI, newJ);
+    refreshSquare(victimI, victimJ);
+    return MoveVerdict.LEGAL;
   }
 
   /**
@@ -208,27 +577,175 @@ public final class GameBoard {
    */
   public void beatWithTower(int oldI, int oldJ, int newI, int newJ) throws BusyCellException,
           WhiteCellException, InvalidMoveException, AnyErrorException {
-    validateNewPos(newI, newJ);
-    PieceTower oldTower = getTower(oldI, oldJ);
-    PieceTower victim = getTower((oldI + newI) / 2, (oldJ + newJ) / 2);
-    if (victim == null || victim.getColor().equals(getColor(oldI, oldJ))) {
-      throw new AnyErrorException("error");
+    tryBeatWithTower(oldI, oldJ, newI, newJ).raise();
+  }
+
+  /**
+   * Plays a move found by {@link MoveGenerator} for the current position and remembers how to take it back.
+   * The turn passes to the other side.
+   * Unlike {@link #moveTower(int, int, int, int)} and the beating methods it does not check the move.
+   *
+   * @param moves list holding the move
+   * @param move  index of the move in the list
+   */
+  public void makeMove(MoveList moves, int move) {
+    ensureMasks();
+    int lastBeats = 0;
+    for (long rest = lastBeaters; rest != 0; rest &= rest - 1) {
+      int square = Long.numberOfTrailingZeros(rest);
+      PieceTower tower = getTower(square);
+      pushUndo(UndoRecord.lastBeat(square, tower.getLastBeatLetterOrder(), tower.getLastBeatDigitOrder()));
+      ++lastBeats;
     }
-    oldTower.pushPiece(victim.popPiece());
     annihilateLastBeaten();
-    oldTower.setLastBeatLetterOrder((oldI + newI) / 2);
-    oldTower.setLastBeatDigitOrder((oldJ + newJ) / 2);
-    Color currColor = getColor(oldI, oldJ);
-    if (currColor.equals(Color.WHITE) && newJ == boardLength - 1) {
-      getTower(oldI, oldJ).makeKing();
-    } else if (currColor == Color.BLACK && newJ == 1) {
-      getTower(oldI, oldJ).makeKing();
+    int steps = moves.getLength(move) - 1;
+    for (int k = 1; k <= steps; ++k) {
+      pushUndo(makeStep(moves.getSquare(move, k - 1), moves.getSquare(move, k), moves.getVictim(move, k)));
     }
-    setTower(newI, newJ, oldTower);
-    board[oldJ * boardWidth + oldI] = null;
-    if (victim.isEmpty()) {
-      board[(oldI + newI) / 2 + (oldJ + newJ) * boardWidth / 2] = null;
+    pushUndo(UndoRecord.header(steps, lastBeats));
+    setSideToMove(getOppositeColor(sideToMove));
+  }
+
+  /**
+   * Takes back the last move played by {@link #makeMove(MoveList, int)}.
+   */
+  public void unmakeMove() {
+    setSideToMove(getOppositeColor(sideToMove));
+    takeBack();
+  }
+
+  /**
+   * Checks a capture without changing the board, by the rules of the beating methods: its steps are played and
+   * taken back on this board, and the tower must have nothing left to beat at the end.
+   *
+   * @param move parsed capture
+   * @return the verdict of the first rejected step, {@link MoveVerdict#INVALID_MOVE} if the capture stops early
+   */
+  MoveVerdict checkCapture(MoveNotation move) {
+    ensureMasks();
+    int lastBeats = 0;
+    for (long rest = lastBeaters; rest != 0; rest &= rest - 1) {
+      int square = Long.numberOfTrailingZeros(rest);
+      PieceTower tower = getTower(square);
+      pushUndo(UndoRecord.lastBeat(square, tower.getLastBeatLetterOrder(), tower.getLastBeatDigitOrder()));
+      ++lastBeats;
     }
+    MoveVerdict verdict = MoveVerdict.LEGAL;
+    int steps = 0;
+    for (int k = 1; k < move.getLength() && verdict.isLegal(); ++k) {
+      int oldI = move.getLetter(k - 1);
+      int oldJ = move.getDigit(k - 1);
+      int newI = move.getLetter(k);
+      int newJ = move.getDigit(k);
+      PieceTower tower = getTower(oldI, oldJ);
+      boolean king = tower != null && tower.isKing();
+      verdict = king ? checkBeatWithKing(oldI, oldJ, newI, newJ) : checkBeatWithTower(oldI, oldJ, newI, newJ);
+      if (verdict.isLegal()) {
+        int victim = king ? captureVictim(oldI, oldJ, newI, newJ, true)
+                : Bitboards.square((oldI + newI) / 2, (oldJ + newJ) / 2);
+        pushUndo(makeStep(Bitboards.square(oldI, oldJ), Bitboards.square(newI, newJ), victim));
+        ++steps;
+      }
+    }
+    int last = move.getLength() - 1;
+    if (verdict.isLegal() && getPossibleVictims(move.getLetter(last), move.getDigit(last)) != null) {
+      verdict = MoveVerdict.INVALID_MOVE;
+    }
+    pushUndo(UndoRecord.header(steps, lastBeats));
+    takeBack();
+    return verdict;
+  }
+
+  private void takeBack() {
+    long header = undoRecords[--undoSize];
+    for (int k = UndoRecord.steps(header); k > 0; --k) {
+      unmakeStep(undoRecords[--undoSize]);
+    }
+    annihilateLastBeaten();
+    for (int k = UndoRecord.lastBeats(header); k > 0; --k) {
+      long record = undoRecords[--undoSize];
+      int square = UndoRecord.from(record);
+      PieceTower tower = getTower(square);
+      tower.setLastBeatLetterOrder(UndoRecord.lastBeatLetterOrder(record));
+      tower.setLastBeatDigitOrder(UndoRecord.lastBeatDigitOrder(record));
+      refreshSquare(Bitboards.letterOf(square), Bitboards.digitOf(square));
+    }
+  }
+
+  private long makeStep(int from, int to, int victim) {
+    PieceTower tower = getTower(from);
+    boolean promoted = false;
+    int code = 0;
+    boolean removed = false;
+    if (victim != Bitboards.NO_SQUARE) {
+      PieceTower victimTower = getTower(victim);
+      code = victimTower.popCode();
+      tower.pushCode(code);
+      annihilateLastBeaten();
+      tower.setLastBeatLetterOrder(Bitboards.letterOf(victim));
+      tower.setLastBeatDigitOrder(Bitboards.digitOf(victim));
+      if (victimTower.isEmpty()) {
+        pushRemoved(victimTower);
+        placeTower(victim, null);
+        removed = true;
+      }
+    }
+    if (!tower.isKing() && Bitboards.digitOf(to) == (tower.getColor() == Color.WHITE ? boardLength - 1 : 1)) {
+      tower.makeKing();
+      promoted = true;
+    }
+    placeTower(from, null);
+    placeTower(to, tower);
+    if (victim != Bitboards.NO_SQUARE) {
+      refreshSquare(Bitboards.letterOf(victim), Bitboards.digitOf(victim));
+    }
+    return UndoRecord.step(from, to, victim, code, promoted, removed);
+  }
+
+  private void unmakeStep(long record) {
+    int from = UndoRecord.from(record);
+    int to = UndoRecord.to(record);
+    int victim = UndoRecord.victim(record);
+    PieceTower tower = getTower(to);
+    if (UndoRecord.promoted(record)) {
+      tower.setBits(TowerBits.unmakeKing(tower.getBits()));
+    }
+    if (victim != Bitboards.NO_SQUARE) {
+      tower.setBits(TowerBits.popBottom(tower.getBits()));
+      if (UndoRecord.removed(record)) {
+        placeTower(victim, removedTowers[--removedSize]);
+        removedTowers[removedSize] = null;
+      }
+      PieceTower victimTower = getTower(victim);
+      victimTower.setBits(TowerBits.pushTop(victimTower.getBits(), UndoRecord.code(record)));
+      refreshSquare(Bitboards.letterOf(victim), Bitboards.digitOf(victim));
+    }
+    placeTower(to, null);
+    placeTower(from, tower);
+  }
+
+  /**
+   * Puts a tower on a square keeping the bit masks in sync, unlike {@link #setTower(int, int, PieceTower)}.
+   */
+  private void placeTower(int square, PieceTower tower) {
+    int i = Bitboards.letterOf(square);
+    int j = Bitboards.digitOf(square);
+    board[j * boardWidth + i] = tower;
+    refreshSquare(i, j);
+  }
+
+  private void pushUndo(long record) {
+    if (undoSize == undoRecords.length) {
+      undoRecords = Arrays.copyOf(undoRecords, undoSize * 2);
+    }
+    undoRecords[undoSize++] = record;
+  }
+
+  private void pushRemoved(PieceTower tower) {
+    if (removedSize == removedTowers.length) {
+      removedTowers = Arrays.copyOf(removedTowers, removedSize * 2);
+    }
+    removedTowers[removedSize++] = tower;
   }
 
   private boolean isWhiteCell(int i, int j) {
@@ -243,9 +760,15 @@ public final class GameBoard {
    * @return an array-list of pairs: indices of possible towers to be beaten.
    */
   public ArrayList<Pair> getPossibleVictims(int i, int j) {
-    ArrayList<Pair> positions = new ArrayList<>();
+    ensureMasks();
     PieceTower currTower = getTower(i, j);
     Color oppositeColor = getOppositeColor(currTower.getColor());
+    long bit = Bitboards.bit(Bitboards.square(i, j));
+    long men = (kingTops & bit) == 0 ? bit : 0;
+    if (Bitboards.capturers(men, bit & ~men, colorMask(oppositeColor), ~occupied) == 0) {
+      return null;
+    }
+    ArrayList<Pair> positions = new ArrayList<>();
 
     if (isKing(i, j)) {
       for (int k = -1; k < 2; k += 2) {
@@ -0,0 +1,642 @@
+package com.ruchekers;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiPredicate;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the games of {@link GameServer}, from which they are rebuilt after a crash.
+ * The creation, every accepted move and the removal of a game are appended to the journal file of its shard and
+ * forced to disk before the call returns. Appends to a shard are committed in groups: the first caller writes
+ * and forces everything buffered so far with one {@code fsync} while the others wait for it, so one
+ * {@code fsync} covers all the moves that came in during the previous one.
+ * A {@link #checkpoint(GameSessionStore)} starts new journal files, writes every open game to a checkpoint file
+ * and deletes the older files, so that recovery only replays the moves made since the last checkpoint.
+ * Files are numbered by generation: {@code <generation>.checkpoint} holds the games as of the start of the
+ * journal files {@code <generation>-<shard>.journal}.
+ * <p>
+ * A record is its length and CRC-32 as ints, then its kind as a byte, the game number and the number of the
+ * move in the game as longs, then the board of a creation, see {@link GameSessionStore#encode(GameBoard)}, or
+ * the text of a move. Recovery stops reading a file at the first torn record.
+ * Usage: {@code GameJournal directory [--games count] [--threads count] [--plies count] [--shards count]}
+ * plays games of random moves on many threads, by default 2000 games of up to 40 half-moves on 64 threads, first
+ * in memory, then journaling them to the directory, reports the moves per second of both, then recovers the
+ * games of the journal.
+ */
+public final class GameJournal implements AutoCloseable {
+  static final int DEFAULT_SHARDS = 4;
+
+  private static final byte CREATED = 1;
+  private static final byte MOVED = 2;
+  private static final byte REMOVED = 3;
+  private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+  private static final int PAYLOAD_HEADER_BYTES = 1 + 2 * Long.BYTES;
+  private static final int CHECKPOINT_VERSION = 1;
+  private static final String JOURNAL = ".journal";
+  private static final String CHECKPOINT = ".checkpoint";
+  private static final int DEFAULT_GAMES = 2000;
+  private static final int DEFAULT_THREADS = 64;
+  private static final int DEFAULT_PLIES = 40;
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final Path directory;
+  private final Shard[] shards;
+  /** Number of the last move journaled for every open game. */
+  private final ConcurrentHashMap<Long, AtomicLong> plies = new ConcurrentHashMap<>();
+  private final AtomicLong lastId = new AtomicLong();
+  private final LongAdder records = new LongAdder();
+  private final LongAdder commits = new LongAdder();
+  /** Held by checkpoints and recovery, which must not overlap. */
+  private final Object checkpointLock = new Object();
+  /** Generation of the journal files written to, guarded by the checkpoint lock. */
+  private int generation;
+
+  /**
+   * Opens a journal, starting new journal files after the ones already in the directory, see
+   * {@link #recover(GameSessionStore, int, BiPredicate)}.
+   *
+   * @param directory directory of the journal, created if missing
+   * @param shardCount number of journal files written at the same time, each by its own group commit
+   * @throws IOException if the journal files cannot be created
+   */
+  public GameJournal(Path directory, int shardCount) throws IOException {
+    if (shardCount < 1) {
+      throw new IllegalArgumentException("shards must be positive");
+    }
+    this.directory = directory;
+    Files.createDirectories(directory);
+    int last = 0;
+    for (Path file : list()) {
+      last = Math.max(last, generationOf(file));
+    }
+    generation = last + 1;
+    shards = new Shard[shardCount];
+    for (int shard = 0; shard < shardCount; ++shard) {
+      shards[shard] = new Shard(open(generation, shard));
+    }
+  }
+
+  /**
+   * Journals a new game. Returns once the record is on disk.
+   *
+   * @param id    number of the game
+   * @param board position of the game, which must not change meanwhile
+   * @throws IOException if the journal cannot be written
+   */
+  public void created(long id, GameBoard board) throws IOException {
+    plies.put(id, new AtomicLong());
+    append(CREATED, id, 0, GameSessionStore.encode(board));
+  }
+
+  /**
+   * Journals a move played in a game. Moves of the same game must be journaled one at a time, in the order
+   * they were played, and under the lock of the game when checkpoints run meanwhile. Returns once the record
+   * is on disk.
+   *
+   * @param id   number of the game
+   * @param move move in the notation of {@link MoveNotation}
+   * @throws IOException if the journal cannot be written, the move being then for the caller to take back
+   */
+  public void moved(long id, String move) throws IOException {
+    AtomicLong counter = plies.computeIfAbsent(id, key -> new AtomicLong());
+    long ply = counter.incrementAndGet();
+    try {
+      append(MOVED, id, ply, move.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      counter.decrementAndGet();
+      throw e;
+    }
+  }
+
+  /**
+   * Journals the end of a game. Returns once the record is on disk.
+   *
+   * @throws IOException if the journal cannot be written
+   */
+  public void removed(long id) throws IOException {
+    plies.remove(id);
+    append(REMOVED, id, 0, new byte[0]);
+  }
+
+  private void append(byte kind, long id, long ply, byte[] data) throws IOException {
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + PAYLOAD_HEADER_BYTES + data.length);
+    record.putInt(PAYLOAD_HEADER_BYTES + data.length).putInt(0).put(kind).putLong(id).putLong(ply).put(data);
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), RECORD_HEADER_BYTES, record.capacity() - RECORD_HEADER_BYTES);
+    record.putInt(Integer.BYTES, (int) crc.getValue());
+    lastId.accumulateAndGet(id, Math::max);
+    records.increment();
+    shards[Math.floorMod(id, shards.length)].append(record.array(), commits);
+  }
+
+  /**
+   * Writes every game of a store to a new checkpoint and deletes the journal files it makes useless. New journal
+   * files are started first, then every game is written under its lock with the number of its last journaled
+   * move, so that recovery skips the moves of the new files already in the checkpoint. Moves may be played
+   * meanwhile.
+   *
+   * @param store store of the games journaled here
+   * @throws IOException if the checkpoint cannot be written
+   */
+  public void checkpoint(GameSessionStore store) throws IOException {
+    synchronized (checkpointLock) {
+      int next = generation + 1;
+      for (int shard = 0; shard < shards.length; ++shard) {
+        shards[shard].roll(open(next, shard));
+      }
+      generation = next;
+      Path temporary = directory.resolve(next + CHECKPOINT + ".tmp");
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING);
+           DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+        out.writeInt(CHECKPOINT_VERSION);
+        out.writeLong(lastId.get());
+        for (long id : store.getIds()) {
+          byte[] game = store.withEncoded(id, encoded -> {
+            AtomicLong ply = plies.get(id);
+            ByteBuffer entry = ByteBuffer.allocate(2 * Long.BYTES + Integer.BYTES + encoded.length);
+            entry.putLong(id).putLong(ply == null ? 0 : ply.get()).putInt(encoded.length).put(encoded);
+            return entry.array();
+          });
+          if (game != null) {
+            out.write(game);
+          }
+        }
+        // game numbers start at 1, so game 0 ends the list
+        out.writeLong(0);
+        out.flush();
+        channel.force(true);
+      }
+      Files.move(temporary, directory.resolve(next + CHECKPOINT), StandardCopyOption.ATOMIC_MOVE);
+      for (Path file : list()) {
+        if (generationOf(file) < next) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  /**
+   * Rebuilds the games of the journal files written before this journal was opened into an empty store: reads
+   * the last checkpoint, reads the journal files of each shard on their own thread, then replays the moves of
+   * each game on its own thread. Call it before journaling anything.
+   *
+   * @param store   store to add the games to, under their former numbers
+   * @param threads number of threads reading and replaying
+   * @param rules   plays a move on a board, returning false if the move is rejected
+   * @return the number of games rebuilt
+   * @throws IOException if the files cannot be read or a journaled move is rejected
+   */
+  public int recover(GameSessionStore store, int threads, BiPredicate<GameBoard, String> rules) throws IOException {
+    synchronized (checkpointLock) {
+      int checkpoint = 0;
+      TreeMap<Integer, List<Path>> journals = new TreeMap<>();
+      for (Path file : list()) {
+        int fileGeneration = generationOf(file);
+        if (fileGeneration >= generation) {
+          continue;
+        }
+        if (file.getFileName().toString().endsWith(CHECKPOINT)) {
+          checkpoint = Math.max(checkpoint, fileGeneration);
+        } else {
+          journals.computeIfAbsent(fileGeneration, key -> new ArrayList<>()).add(file);
+        }
+      }
+      Map<Long, Replay> games = new HashMap<>();
+      long last = checkpoint == 0 ? 0 : readCheckpoint(directory.resolve(checkpoint + CHECKPOINT), games);
+      ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+        Thread thread = new Thread(runnable, "journal-replay");
+        thread.setDaemon(true);
+        return thread;
+      });
+      try {
+        List<Future<Map<Long, List<Record>>>> reads = new ArrayList<>();
+        for (List<Path> files : journals.tailMap(checkpoint).values()) {
+          for (Path file : files) {
+            reads.add(executor.submit(() -> read(file)));
+          }
+        }
+        // one shard holds all the records of a game in a generation, so this keeps the order of every game
+        for (Map<Long, List<Record>> read : await(reads)) {
+          for (Map.Entry<Long, List<Record>> entry : read.entrySet()) {
+            games.computeIfAbsent(entry.getKey(), Replay::new).records.addAll(entry.getValue());
+            last = Math.max(last, entry.getKey());
+          }
+        }
+        List<Future<Replay>> replays = new ArrayList<>();
+        for (Replay replay : games.values()) {
+          replays.add(executor.submit(() -> replay.run(rules)));
+        }
+        await(replays);
+      } finally {
+        executor.shutdownNow();
+      }
+      int count = 0;
+      for (Replay replay : games.values()) {
+        if (replay.board != null) {
+          store.restore(replay.id, replay.board);
+          plies.put(replay.id, new AtomicLong(replay.ply));
+          ++count;
+        }
+      }
+      store.reserve(last);
+      lastId.accumulateAndGet(last, Math::max);
+      return count;
+    }
+  }
+
+  private static long readCheckpoint(Path file, Map<Long, Replay> games) throws IOException {
+    try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+      if (in.readInt() != CHECKPOINT_VERSION) {
+        throw new IOException("unsupported checkpoint version");
+      }
+      long last = in.readLong();
+      for (long id = in.readLong(); id != 0; id = in.readLong()) {
+        Replay replay = new Replay(id);
+        replay.ply = in.readLong();
+        replay.encoded = in.readNBytes(in.readInt());
+        games.put(id, replay);
+      }
+      return last;
+    }
+  }
+
+  /**
+   * Reads the records of a journal file by game, up to the first torn one.
+   */
+  private static Map<Long, List<Record>> read(Path file) throws IOException {
+    ByteBuffer in;
+    try (InputStream stream = Files.newInputStream(file)) {
+      in = ByteBuffer.wrap(stream.readAllBytes());
+    }
+    Map<Long, List<Record>> games = new LinkedHashMap<>();
+    CRC32 crc = new CRC32();
+    while (in.remaining() >= RECORD_HEADER_BYTES) {
+      int length = in.getInt();
+      int checksum = in.getInt();
+      if (length < PAYLOAD_HEADER_BYTES || length > in.remaining()) {
+        break;
+      }
+      crc.reset();
+      crc.update(in.array(), in.position(), length);
+      if ((int) crc.getValue() != checksum) {
+        break;
+      }
+      byte kind = in.get();
+      long id = in.getLong();
+      long ply = in.getLong();
+      byte[] data = new byte[length - PAYLOAD_HEADER_BYTES];
+      in.get(data);
+      games.computeIfAbsent(id, key -> new ArrayList<>()).add(new Record(kind, ply, data));
+    }
+    return games;
+  }
+
+  private static <T> List<T> await(List<Future<T>> futures) throws IOException {
+    List<T> results = new ArrayList<>();
+    try {
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while waiting", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IllegalStateException("recovery failed", e.getCause());
+    }
+    return results;
+  }
+
+  private FileChannel open(int fileGeneration, int shard) throws IOException {
+    return FileChannel.open(directory.resolve(fileGeneration + "-" + shard + JOURNAL), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  /**
+   * Lists the journal and checkpoint files of the directory.
+   */
+  private List<Path> list() throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*{" + JOURNAL + "," + CHECKPOINT + "}")) {
+      for (Path file : stream) {
+        files.add(file);
+      }
+    }
+    return files;
+  }
+
+  private static int generationOf(Path file) {
+    String name = file.getFileName().toString();
+    int end = 0;
+    while (end < name.length() && Character.isDigit(name.charAt(end))) {
+      ++end;
+    }
+    return end == 0 ? 0 : Integer.parseInt(name.substring(0, end));
+  }
+
+  /**
+   * Returns the number of records journaled since the journal was opened.
+   */
+  public long getRecords() {
+    return records.sum();
+  }
+
+  /**
+   * Returns the number of group commits, each one write and one {@code fsync} of a shard.
+   */
+  public long getCommits() {
+    return commits.sum();
+  }
+
+  /**
+   * Closes the journal files. Appends waiting for a group commit fail.
+   */
+  @Override
+  public void close() throws IOException {
+    for (Shard shard : shards) {
+      shard.close();
+    }
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length == 0) {
+      System.out.println("usage: GameJournal directory [--games count] [--threads count] [--plies count]"
+              + " [--shards count]");
+      return;
+    }
+    int count = DEFAULT_GAMES;
+    int threads = DEFAULT_THREADS;
+    int plies = DEFAULT_PLIES;
+    int shardCount = DEFAULT_SHARDS;
+    for (int k = 1; k + 1 < args.length; k += 2) {
+      if ("--games".equals(args[k])) {
+        count = Integer.parseInt(args[k + 1]);
+      } else if ("--threads".equals(args[k])) {
+        threads = Integer.parseInt(args[k + 1]);
+      } else if ("--plies".equals(args[k])) {
+        plies = Integer.parseInt(args[k + 1]);
+      } else if ("--shards".equals(args[k])) {
+        shardCount = Integer.parseInt(args[k + 1]);
+      }
+    }
+    play(null, count, threads, plies);
+    report("memory", play(null, count, threads, plies));
+    Path directory = Paths.get(args[0]);
+    try (GameJournal journal = new GameJournal(directory, shardCount)) {
+      report("journal", play(journal, count, threads, plies));
+      System.out.printf("records %d commits %d (%.1f records per fsync)%n", journal.getRecords(),
+              journal.getCommits(), (double) journal.getRecords() / journal.getCommits());
+    }
+    try (GameJournal journal = new GameJournal(directory, shardCount)) {
+      long start = System.nanoTime();
+      int games = journal.recover(new GameSessionStore(null, Long.MAX_VALUE), threads, GameServer::replay);
+      System.out.printf("recovered %d games in %.3f s%n", games, (System.nanoTime() - start) / NANOS_PER_SECOND);
+    }
+  }
+
+  /**
+   * Plays games of random legal moves from the initial position on a pool of threads, each game on one thread,
+   * journaling them if a journal is given.
+   *
+   * @return the number of moves played and the time taken in nanoseconds
+   */
+  private static long[] play(GameJournal journal, int count, int threads, int plies) throws IOException,
+          InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<Integer>> games = new ArrayList<>();
+    long start = System.nanoTime();
+    for (int game = 1; game <= count; ++game) {
+      long id = game;
+      games.add(executor.submit(() -> {
+        Random random = new Random(id);
+        GameBoard board = new GameBoard();
+        Main.fillBoard(board, Main.INITIAL_WHITE);
+        Main.fillBoard(board, Main.INITIAL_BLACK);
+        if (journal != null) {
+          journal.created(id, board);
+        }
+        int moves = 0;
+        for (; moves < plies; ++moves) {
+          String[] legal = GameServer.legalMoves(board).split("\n");
+          if (legal[0].isEmpty()) {
+            break;
+          }
+          String move = legal[random.nextInt(legal.length)];
+          GameServer.replay(board, move);
+          if (journal != null) {
+            journal.moved(id, move);
+          }
+        }
+        return moves;
+      }));
+    }
+    long moves = 0;
+    for (Integer played : await(games)) {
+      moves += played;
+    }
+    long nanos = System.nanoTime() - start;
+    executor.shutdown();
+    return new long[] {moves, nanos};
+  }
+
+  private static void report(String name, long[] result) {
+    double seconds = result[1] / NANOS_PER_SECOND;
+    System.out.printf("%s: moves %d time %.3f s (%.0f moves/s)%n", name, result[0], seconds, result[0] / seconds);
+  }
+
+  /**
+   * A journal record of a game, without the game number.
+   */
+  private static final class Record {
+    private final byte kind;
+    private final long ply;
+    private final byte[] data;
+
+    Record(byte kind, long ply, byte[] data) {
+      this.kind = kind;
+      this.ply = ply;
+      this.data = data;
+    }
+  }
+
+  /**
+   * A game being rebuilt: its checkpoint, if any, and its records since, in order.
+   */
+  private static final class Replay {
+    private final long id;
+    private final List<Record> records = new ArrayList<>();
+    private byte[] encoded;
+    private long ply;
+    private GameBoard board;
+
+    Replay(long id) {
+      this.id = id;
+    }
+
+    /**
+     * Plays the records over the checkpoint, skipping the moves it already holds. Records of a game removed or
+     * not yet created are skipped too: its moves may follow a checkpoint written after its removal.
+     */
+    Replay run(BiPredicate<GameBoard, String> rules) throws IOException {
+      board = encoded == null ? null : GameSessionStore.decode(encoded);
+      for (Record record : records) {
+        if (record.kind == CREATED) {
+          if (board == null) {
+            board = GameSessionStore.decode(record.data);
+            ply = 0;
+          }
+        } else if (record.kind == REMOVED) {
+          board = null;
+        } else if (board != null && record.ply > ply) {
+          String move = new String(record.data, StandardCharsets.UTF_8);
+          if (record.ply != ply + 1 || !rules.test(board, move)) {
+            throw new IOException("cannot replay move " + record.ply + " " + move + " of game " + id);
+          }
+          ply = record.ply;
+        }
+      }
+      return this;
+    }
+  }
+
+  /**
+   * Journal file of a shard with its group commit. An append joins the buffer of pending records, then either
+   * waits for the commit in progress or, if there is none, writes and forces the whole buffer itself.
+   */
+  private static final class Shard {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition committed = lock.newCondition();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private FileChannel channel;
+    private long appended;
+    private long durable;
+    private boolean committing;
+    /**
+     * First write error, after which the shard takes no more records: none may be replayed after a lost one.
+     */
+    private IOException failure;
+
+    Shard(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    void append(byte[] record, LongAdder commits) throws IOException {
+      lock.lock();
+      try {
+        pending.write(record, 0, record.length);
+        long ticket = ++appended;
+        while (durable < ticket && failure == null) {
+          if (committing) {
+            committed.awaitUninterruptibly();
+          } else {
+            commit(commits);
+          }
+        }
+        if (failure != null) {
+          throw new IOException("journal write failed", failure);
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Writes and forces the pending records, releasing the lock meanwhile so that more records can join the
+     * next commit. Called and returns with the lock held.
+     */
+    private void commit(LongAdder commits) {
+      committing = true;
+      ByteBuffer batch = ByteBuffer.wrap(pending.toByteArray());
+      pending.reset();
+      long last = appended;
+      FileChannel target = channel;
+      IOException error = null;
+      lock.unlock();
+      try {
+        while (batch.hasRemaining()) {
+          target.write(batch);
+        }
+        target.force(false);
+        commits.increment();
+      } catch (IOException e) {
+        error = e;
+      } finally {
+        lock.lock();
+      }
+      if (error == null) {
+        durable = last;
+      } else {
+        failure = error;
+      }
+      committing = false;
+      committed.signalAll();
+    }
+
+    /**
+     * Switches to a new journal file once the commit in progress is done. Pending records go to the new file.
+     */
+    void roll(FileChannel next) throws IOException {
+      lock.lock();
+      try {
+        while (committing) {
+          committed.awaitUninterruptibly();
+        }
+        FileChannel old = channel;
+        channel = next;
+        old.close();
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void close() throws IOException {
+      lock.lock();
+      try {
+        while (committing) {
+          committed.awaitUninterruptibly();
+        }
+        channel.close();
+        if (failure == null) {
+          failure = new IOException("journal closed");
+        }
+        committed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
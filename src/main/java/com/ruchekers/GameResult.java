@@ -0,0 +1,41 @@
+package com.ruchekers;
+
+/**
+ * How a game stands, see {@link GameState#getResult()}: going on, lost by the side to move, or drawn.
+ */
+public enum GameResult {
+  IN_PROGRESS("in progress"),
+  /** The side to move has no tower left, every piece of its color is held under an enemy piece. */
+  NO_TOWERS("no towers"),
+  /** The side to move has towers but none of them can move. */
+  NO_MOVES("no legal moves"),
+  /** The position is on the board for the third time. */
+  REPETITION("threefold repetition"),
+  /** Too many half-moves were played without a capture, see {@link GameState#DEFAULT_QUIET_LIMIT}. */
+  NO_CAPTURE("no capture limit");
+
+  private final String message;
+
+  GameResult(String message) {
+    this.message = message;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public boolean isOver() {
+    return this != IN_PROGRESS;
+  }
+
+  /**
+   * Returns whether the side to move has lost.
+   */
+  public boolean isLoss() {
+    return this == NO_TOWERS || this == NO_MOVES;
+  }
+
+  public boolean isDraw() {
+    return this == REPETITION || this == NO_CAPTURE;
+  }
+}
@@ -0,0 +1,535 @@
+package com.ruchekers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Embedded HTTP server hosting many games at once, each with its own {@link GameBoard}.
+ * Requests run on virtual threads when the JVM has them (Java 21 and later), otherwise on a cached pool.
+ * Games live in a {@link GameSessionStore} and each one is guarded by its own lock, so requests on different
+ * games never wait for each other. Bodies and responses are plain text:
+ * <ul>
+ *   <li>{@code POST /games} creates a game from an optional body holding the white and the black towers
+ *   on two lines, the initial position by default, and answers 201 with the game number;</li>
+ *   <li>{@code GET /games/<id>} answers the white towers, the black towers and the side to move, one per line;</li>
+ *   <li>{@code POST /games/<id>/moves} plays the move of the body, in the notation of {@link MoveNotation},
+ *   and answers the new position, or 409 with the error if the move is illegal for the side to move;</li>
+ *   <li>{@code GET /games/<id>/moves} lists the legal moves, one per line;</li>
+ *   <li>{@code DELETE /games/<id>} ends a game;</li>
+ *   <li>{@code GET /stats} answers the counters of the store, and of {@link RulesMetrics} when enabled,
+ *   one name and value per line.</li>
+ * </ul>
+ * Usage: {@code GameServer [--port number] [--spill directory] [--memory megabytes] [--journal directory]
+ * [--checkpoint seconds]}: with a spill directory, games over the memory budget, 256 MB by default, are written
+ * there until their next request; with a journal directory, every change is journaled there, see
+ * {@link GameJournal}, the games of the journal are rebuilt on startup and checkpointed every 60 seconds by
+ * default. A change the journal fails to record is not made and is answered with 503.
+ * See {@link GameServerLoad} for a load test client.
+ */
+public final class GameServer implements AutoCloseable {
+  static final int DEFAULT_PORT = 8080;
+
+  private static final String PREFIX = "/games";
+  private static final String MOVES = "/moves";
+  private static final String STATS = "/stats";
+  private static final long DEFAULT_MEMORY_MB = 256;
+  private static final long DEFAULT_CHECKPOINT_SECONDS = 60;
+  private static final long BYTES_PER_MB = 1024 * 1024;
+  private static final int MAX_BODY = 4096;
+  private static final int BACKLOG = 1024;
+  private static final int OK = 200;
+  private static final int CREATED = 201;
+  private static final int NO_CONTENT = 204;
+  private static final int BAD_REQUEST = 400;
+  private static final int NOT_FOUND = 404;
+  private static final int METHOD_NOT_ALLOWED = 405;
+  private static final int CONFLICT = 409;
+  private static final int TOO_LARGE = 413;
+  private static final int UNAVAILABLE = 503;
+  /** Length given for an empty response, 0 meaning a chunked one. */
+  private static final int NO_BODY = -1;
+
+  static {
+    // The JDK server writes the headers and the body of a response separately, so with Nagle's algorithm
+    // the body waits for the acknowledgement of the headers, delayed by the client for up to 40 ms.
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+  }
+
+  private final HttpServer server;
+  private final ExecutorService executor = newRequestExecutor();
+  private final GameSessionStore store;
+  private final GameJournal journal;
+
+  /**
+   * Creates a server keeping every game in memory, see {@link #start()}.
+   *
+   * @param address address to bind, port 0 for any free port
+   * @throws IOException if the address cannot be bound
+   */
+  public GameServer(InetSocketAddress address) throws IOException {
+    this(address, new GameSessionStore(null, Long.MAX_VALUE));
+  }
+
+  /**
+   * Creates a server keeping its games in the given store, which the caller closes after the server.
+   *
+   * @param address address to bind, port 0 for any free port
+   * @param store   store of the games
+   * @throws IOException if the address cannot be bound
+   */
+  public GameServer(InetSocketAddress address, GameSessionStore store) throws IOException {
+    this(address, store, null);
+  }
+
+  /**
+   * Creates a server keeping its games in the given store and journaling every change of them. The caller
+   * recovers the games of the journal into the store first, and closes both after the server.
+   *
+   * @param address address to bind, port 0 for any free port
+   * @param store   store of the games
+   * @param journal journal of the games, or null
+   * @throws IOException if the address cannot be bound
+   */
+  public GameServer(InetSocketAddress address, GameSessionStore store, GameJournal journal) throws IOException {
+    this.store = store;
+    this.journal = journal;
+    server = HttpServer.create(address, BACKLOG);
+    server.createContext(PREFIX, this::handle);
+    server.createContext(STATS, this::handleStats);
+    server.setExecutor(executor);
+  }
+
+  /**
+   * Returns an executor starting a virtual thread per task if the JVM supports it,
+   * otherwise a pool of daemon threads created on demand.
+   */
+  static ExecutorService newRequestExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "game-server");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Returns the number of games in progress.
+   */
+  public int getGames() {
+    return store.size();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      route(exchange, exchange.getRequestURI().getPath(), exchange.getRequestMethod());
+    }
+  }
+
+  private void handleStats(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        respond(exchange, METHOD_NOT_ALLOWED, "method not allowed\n");
+        return;
+      }
+      respond(exchange, OK, "games " + store.size() + "\nresident " + store.getResidentGames()
+              + "\nresidentBytes " + store.getResidentBytes() + "\nhits " + store.getHits()
+              + "\nmisses " + store.getMisses() + "\nevictions " + store.getEvictions() + "\n"
+              + (journal == null ? "" : "journalRecords " + journal.getRecords() + "\njournalCommits "
+              + journal.getCommits() + "\n")
+              + (RulesMetrics.ENABLED ? RulesMetrics.snapshot().toString() : ""));
+    }
+  }
+
+  private void route(HttpExchange exchange, String path, String method) throws IOException {
+    if (PREFIX.equals(path) || (PREFIX + "/").equals(path)) {
+      if ("POST".equals(method)) {
+        create(exchange);
+      } else {
+        respond(exchange, METHOD_NOT_ALLOWED, "method not allowed\n");
+      }
+      return;
+    }
+    String rest = path.substring(PREFIX.length());
+    boolean moves = rest.endsWith(MOVES);
+    long id = parseId(rest.substring(0, rest.length() - (moves ? MOVES.length() : 0)));
+    String move = null;
+    if (!moves && "GET".equals(method)) {
+      PositionSnapshot snapshot = id < 0 ? null : store.snapshot(id);
+      if (snapshot == null) {
+        respond(exchange, NOT_FOUND, "no such game\n");
+      } else {
+        respond(exchange, OK, position(snapshot::getTowerBits, snapshot.getSideToMove()));
+      }
+      return;
+    } else if (!moves && "DELETE".equals(method)) {
+      Boolean removed = id < 0 ? null : store.remove(id, this::journalRemoved);
+      if (removed == null) {
+        respond(exchange, NOT_FOUND, "no such game\n");
+      } else if (removed) {
+        respond(exchange, NO_CONTENT, "");
+      } else {
+        respond(exchange, UNAVAILABLE, "journal unavailable\n");
+      }
+      return;
+    } else if (moves && "POST".equals(method)) {
+      move = readBody(exchange);
+      if (move == null) {
+        return;
+      }
+    } else if (!"GET".equals(method)) {
+      respond(exchange, METHOD_NOT_ALLOWED, "method not allowed\n");
+      return;
+    }
+    String text = move;
+    Answer answer = id < 0 ? null
+            : store.withBoard(id, board -> journal(id, text, board, answer(new Game(board), text)));
+    if (answer == null) {
+      respond(exchange, NOT_FOUND, "no such game\n");
+    } else {
+      respond(exchange, answer.status, answer.text);
+    }
+  }
+
+  /**
+   * Answers a request on the moves of a game: a move to play, or a query of the legal moves if null.
+   */
+  private static Answer answer(Game game, String move) {
+    if (move == null) {
+      return new Answer(OK, game.legalMoves());
+    }
+    String error = game.play(move);
+    if (error == null) {
+      return new Answer(OK, game.position());
+    }
+    return new Answer(error.startsWith("invalid move") ? CONFLICT : BAD_REQUEST, error + "\n");
+  }
+
+  /**
+   * Journals a move once played, under the lock of its game. A move that cannot be journaled is taken back and
+   * answered with 503, so that the game never holds a move recovery would not replay.
+   */
+  private Answer journal(long id, String move, GameBoard board, Answer answer) {
+    if (journal != null && move != null && answer.status == OK) {
+      try {
+        journal.moved(id, move);
+      } catch (IOException e) {
+        board.unmakeMove();
+        return new Answer(UNAVAILABLE, "journal unavailable\n");
+      }
+    }
+    return answer;
+  }
+
+  /**
+   * Journals a new game under its lock, before any move of it can be journaled.
+   *
+   * @return false if the game cannot be journaled and must be dropped
+   */
+  private boolean journalCreated(long id, GameBoard board) {
+    if (journal != null) {
+      try {
+        journal.created(id, board);
+      } catch (IOException e) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Journals the end of a game under its lock, before it is removed.
+   *
+   * @return false if the removal cannot be journaled and the game must be kept
+   */
+  private boolean journalRemoved(long id) {
+    if (journal != null) {
+      try {
+        journal.removed(id);
+      } catch (IOException e) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Plays a journaled move as {@code POST /games/<id>/moves} did, to recover the games of a {@link GameJournal}.
+   *
+   * @return false if the move is illegal
+   */
+  static boolean replay(GameBoard board, String move) {
+    return new Game(board).play(move) == null;
+  }
+
+  /**
+   * Lists the legal moves of a board as {@code GET /games/<id>/moves} does.
+   */
+  static String legalMoves(GameBoard board) {
+    return new Game(board).legalMoves();
+  }
+
+  /**
+   * Returns the game number of a path part such as {@code /12}, or -1 if it is not one.
+   */
+  private static long parseId(String part) {
+    if (part.length() < 2 || part.charAt(0) != '/') {
+      return -1;
+    }
+    try {
+      return Long.parseLong(part.substring(1));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private void create(HttpExchange exchange) throws IOException {
+    String body = readBody(exchange);
+    if (body == null) {
+      return;
+    }
+    String[] lines = body.split("\r?\n", -1);
+    GameBoard board = new GameBoard();
+    if (body.isBlank()) {
+      Main.fillBoard(board, Main.INITIAL_WHITE);
+      Main.fillBoard(board, Main.INITIAL_BLACK);
+    } else if (!Main.fillBoard(board, lines[0]) || !Main.fillBoard(board, lines.length > 1 ? lines[1] : "")) {
+      respond(exchange, BAD_REQUEST, "tower too high\n");
+      return;
+    }
+    long id = store.create(board, created -> journalCreated(created, board));
+    if (id < 0) {
+      respond(exchange, UNAVAILABLE, "journal unavailable\n");
+      return;
+    }
+    exchange.getResponseHeaders().set("Location", PREFIX + "/" + id);
+    respond(exchange, CREATED, id + "\n");
+  }
+
+  /**
+   * Reads the request body, or answers 413 and returns null if it is too large.
+   */
+  private static String readBody(HttpExchange exchange) throws IOException {
+    try (InputStream in = exchange.getRequestBody()) {
+      byte[] body = in.readNBytes(MAX_BODY + 1);
+      if (body.length > MAX_BODY) {
+        respond(exchange, TOO_LARGE, "body too large\n");
+        return null;
+      }
+      return new String(body, StandardCharsets.UTF_8);
+    }
+  }
+
+  private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+    exchange.getRequestBody().close();
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length == 0 ? NO_BODY : bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      if (bytes.length > 0) {
+        out.write(bytes);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+    try {
+      executor.awaitTermination(1, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    int port = DEFAULT_PORT;
+    String spill = null;
+    long memory = DEFAULT_MEMORY_MB;
+    String journalDirectory = null;
+    long checkpoint = DEFAULT_CHECKPOINT_SECONDS;
+    for (int k = 0; k < args.length; k += 2) {
+      if (k + 1 < args.length && "--port".equals(args[k])) {
+        port = Integer.parseInt(args[k + 1]);
+      } else if (k + 1 < args.length && "--spill".equals(args[k])) {
+        spill = args[k + 1];
+      } else if (k + 1 < args.length && "--memory".equals(args[k])) {
+        memory = Long.parseLong(args[k + 1]);
+      } else if (k + 1 < args.length && "--journal".equals(args[k])) {
+        journalDirectory = args[k + 1];
+      } else if (k + 1 < args.length && "--checkpoint".equals(args[k])) {
+        checkpoint = Long.parseLong(args[k + 1]);
+      } else {
+        System.out.println("usage: GameServer [--port number] [--spill directory] [--memory megabytes]"
+                + " [--journal directory] [--checkpoint seconds]");
+        return;
+      }
+    }
+    GameSessionStore store = spill == null ? new GameSessionStore(null, Long.MAX_VALUE)
+            : new GameSessionStore(Paths.get(spill), memory * BYTES_PER_MB);
+    GameJournal journal = null;
+    if (journalDirectory != null) {
+      journal = new GameJournal(Paths.get(journalDirectory), GameJournal.DEFAULT_SHARDS);
+      long start = System.nanoTime();
+      int games = journal.recover(store, Runtime.getRuntime().availableProcessors(), GameServer::replay);
+      System.err.printf("recovered %d games in %d ms%n", games, TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+              - start));
+      journal.checkpoint(store);
+      scheduleCheckpoints(journal, store, checkpoint);
+    }
+    GameServer gameServer = new GameServer(new InetSocketAddress(port), store, journal);
+    gameServer.start();
+    System.err.println("listening on port " + gameServer.getPort());
+  }
+
+  private static void scheduleCheckpoints(GameJournal journal, GameSessionStore store, long seconds) {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "checkpoint");
+      thread.setDaemon(true);
+      return thread;
+    });
+    scheduler.scheduleWithFixedDelay(() -> {
+      try {
+        journal.checkpoint(store);
+      } catch (IOException e) {
+        System.err.println("checkpoint failed: " + e);
+      }
+    }, seconds, seconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Writes a position as answered by {@code GET /games/<id>}: the towers of each color in the input format of
+   * {@link Main}, in the order of {@link Main#figuresString(GameBoard, Color)}, then the side to move.
+   *
+   * @param towers     packed tower of every square, see {@link TowerBits}
+   * @param sideToMove side to move
+   */
+  static String position(IntToLongFunction towers, Color sideToMove) {
+    StringBuilder text = new StringBuilder();
+    for (Color color : Color.values()) {
+      int length = text.length();
+      for (int i = 1; i <= Bitboards.SIZE; ++i) {
+        for (int j = 1; j <= Bitboards.SIZE; ++j) {
+          int square = Bitboards.square(i, j);
+          long tower = towers.applyAsLong(square);
+          if (tower != TowerBits.EMPTY && TowerBits.colorOf(TowerBits.top(tower)) == color) {
+            Main.appendCell(text.length() == length ? text : text.append(' '), tower, square);
+          }
+        }
+      }
+      text.append('\n');
+    }
+    return text.append(sideToMove == Color.WHITE ? "white" : "black").append('\n').toString();
+  }
+
+  /**
+   * Status and body of a response.
+   */
+  private static final class Answer {
+    private final int status;
+    private final String text;
+
+    Answer(int status, String text) {
+      this.status = status;
+      this.text = text;
+    }
+  }
+
+  /**
+   * A request on a game, with the scratch objects it needs, created for the request only so that idle games
+   * hold nothing but their board. A move is matched against the legal moves of the side to move before it is
+   * played, so a rejected move leaves the board untouched.
+   */
+  private static final class Game {
+    private final GameBoard board;
+    private final MoveNotation notation = new MoveNotation();
+    private final MoveGenerator generator = new MoveGenerator();
+    private final MoveList moves = new MoveList();
+
+    Game(GameBoard board) {
+      this.board = board;
+    }
+
+    /**
+     * Plays a move.
+     *
+     * @return null if the move was played, otherwise the error
+     */
+    String play(String text) {
+      if (!notation.parse(text)) {
+        if (RulesMetrics.ENABLED) {
+          RulesMetrics.recordRejection(MoveVerdict.ERROR);
+        }
+        return notation.getError() + " at " + notation.getErrorPosition();
+      }
+      int count = generator.generate(board, board.getSideToMove(), moves);
+      for (int move = 0; move < count; ++move) {
+        if (matches(move)) {
+          boolean wasKing = RulesMetrics.ENABLED && board.getTower(moves.getSquare(move, 0)).isKing();
+          board.makeMove(moves, move);
+          if (RulesMetrics.ENABLED) {
+            RulesMetrics.recordMove(board, moves, move, wasKing);
+          }
+          return null;
+        }
+      }
+      if (RulesMetrics.ENABLED) {
+        RulesMetrics.recordRejection(MoveVerdict.INVALID_MOVE);
+      }
+      return "invalid move";
+    }
+
+    private boolean matches(int move) {
+      if (moves.getLength(move) != notation.getLength() || moves.isCapture(move) != notation.isCapture()) {
+        return false;
+      }
+      for (int k = 0; k < notation.getLength(); ++k) {
+        if (moves.getSquare(move, k) != Bitboards.square(notation.getLetter(k), notation.getDigit(k))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    String position() {
+      return GameServer.position(board::getTowerBits, board.getSideToMove());
+    }
+
+    /**
+     * Lists the legal moves with the tower written at every cell, replaying each one on a copy of the board.
+     */
+    String legalMoves() {
+      StringBuilder text = new StringBuilder();
+      int count = generator.generate(board, board.getSideToMove(), moves);
+      for (int move = 0; move < count; ++move) {
+        Main.appendMove(text, board.copy(), moves, move);
+        text.append('\n');
+      }
+      return text.toString();
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package com.ruchekers;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Load test client of {@link GameServer}: plays many games at once, each one picking random legal moves,
+ * and reports the request rate and latencies.
+ * Usage: {@code GameServerLoad [--url base] [--games count] [--concurrency count] [--plies count]},
+ * by default 1000 games of up to 40 half-moves, 200 at a time, against {@code http://localhost:8080}.
+ */
+public final class GameServerLoad {
+  private static final int DEFAULT_GAMES = 1000;
+  private static final int DEFAULT_CONCURRENCY = 200;
+  private static final int DEFAULT_PLIES = 40;
+  private static final int OK = 200;
+  private static final int CREATED = 201;
+  private static final int NO_CONTENT = 204;
+  private static final double NANOS_PER_MILLI = 1e6;
+  private static final double NANOS_PER_SECOND = 1e9;
+  private static final double MEDIAN = 0.5;
+  private static final double TAIL = 0.99;
+
+  private final HttpClient client;
+  private final URI games;
+  private final int plies;
+
+  private GameServerLoad(HttpClient client, URI base, int plies) {
+    this.client = client;
+    this.games = base.resolve("/games");
+    this.plies = plies;
+  }
+
+  /**
+   * Plays games against a server.
+   *
+   * @param base        address of the server, e.g. {@code http://localhost:8080}
+   * @param count       number of games
+   * @param concurrency number of games played at the same time
+   * @param plies       largest number of half-moves of a game
+   * @return the latency of every request in nanoseconds, sorted
+   * @throws IOException if a request fails or gets an unexpected answer
+   */
+  static long[] run(URI base, int count, int concurrency, int plies) throws IOException, InterruptedException {
+    ExecutorService executor = GameServer.newRequestExecutor();
+    HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor).build();
+    GameServerLoad load = new GameServerLoad(client, base, plies);
+    Semaphore slots = new Semaphore(concurrency);
+    List<Future<long[]>> results = new ArrayList<>();
+    try {
+      for (int game = 0; game < count; ++game) {
+        long seed = game;
+        slots.acquire();
+        results.add(executor.submit(() -> {
+          try {
+            return load.play(new Random(seed));
+          } finally {
+            slots.release();
+          }
+        }));
+      }
+      List<long[]> games = new ArrayList<>();
+      int size = 0;
+      for (Future<long[]> result : results) {
+        games.add(result.get());
+        size += games.get(games.size() - 1).length;
+      }
+      long[] latencies = new long[size];
+      size = 0;
+      for (long[] game : games) {
+        System.arraycopy(game, 0, latencies, size, game.length);
+        size += game.length;
+      }
+      Arrays.sort(latencies);
+      return latencies;
+    } catch (ExecutionException e) {
+      throw new IOException("game failed: " + e.getCause().getMessage(), e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Plays one game from the initial position and ends it.
+   *
+   * @return the latencies of its requests
+   */
+  private long[] play(Random random) throws IOException, InterruptedException {
+    long[] latencies = new long[2 * plies + 2];
+    int requests = 0;
+    long start = System.nanoTime();
+    String id = send(HttpRequest.newBuilder(games).POST(HttpRequest.BodyPublishers.noBody()), CREATED).trim();
+    latencies[requests++] = System.nanoTime() - start;
+    URI game = games.resolve("/games/" + id);
+    URI moves = games.resolve("/games/" + id + "/moves");
+    for (int ply = 0; ply < plies; ++ply) {
+      start = System.nanoTime();
+      String[] legal = send(HttpRequest.newBuilder(moves).GET(), OK).split("\n");
+      latencies[requests++] = System.nanoTime() - start;
+      if (legal[0].isEmpty()) {
+        break;
+      }
+      start = System.nanoTime();
+      String move = legal[random.nextInt(legal.length)];
+      send(HttpRequest.newBuilder(moves).POST(HttpRequest.BodyPublishers.ofString(move)), OK);
+      latencies[requests++] = System.nanoTime() - start;
+    }
+    start = System.nanoTime();
+    send(HttpRequest.newBuilder(game).DELETE(), NO_CONTENT);
+    latencies[requests++] = System.nanoTime() - start;
+    return Arrays.copyOf(latencies, requests);
+  }
+
+  private String send(HttpRequest.Builder request, int status) throws IOException, InterruptedException {
+    HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    if (response.statusCode() != status) {
+      throw new IOException(response.request().method() + " " + response.uri() + ": " + response.statusCode()
+              + " " + response.body().trim());
+    }
+    return response.body();
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    URI base = URI.create("http://localhost:" + GameServer.DEFAULT_PORT);
+    int count = DEFAULT_GAMES;
+    int concurrency = DEFAULT_CONCURRENCY;
+    int plies = DEFAULT_PLIES;
+    for (int k = 0; k + 1 < args.length; k += 2) {
+      if ("--url".equals(args[k])) {
+        base = URI.create(args[k + 1]);
+      } else if ("--games".equals(args[k])) {
+        count = Integer.parseInt(args[k + 1]);
+      } else if ("--concurrency".equals(args[k])) {
+        concurrency = Integer.parseInt(args[k + 1]);
+      } else if ("--plies".equals(args[k])) {
+        plies = Integer.parseInt(args[k + 1]);
+      } else {
+        System.out.println("usage: GameServerLoad [--url base] [--games count] [--concurrency count]"
+                + " [--plies count]");
+        return;
+      }
+    }
+    long start = System.nanoTime();
+    long[] latencies = run(base, count, concurrency, plies);
+    double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+    System.out.printf("games %d requests %d time %.3f s (%.0f requests/s)%n", count, latencies.length, seconds,
+            latencies.length / seconds);
+    System.out.printf("latency p50 %.2f ms p99 %.2f ms max %.2f ms%n",
+            latencies[(int) (latencies.length * MEDIAN)] / NANOS_PER_MILLI,
+            latencies[(int) (latencies.length * TAIL)] / NANOS_PER_MILLI,
+            latencies[latencies.length - 1] / NANOS_PER_MILLI);
+  }
+}
@@ -0,0 +1,475 @@
+package com.ruchekers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+
+/**
+ * Open games of {@link GameServer}, kept in memory up to a byte budget. When the estimated size of the boards
+ * in memory goes over the budget, the least recently used games are written to a snapshot file each and
+ * dropped from the heap, then read back on their next use. A snapshot keeps the position, the last-beat marks
+ * and the side to move, but not the move history of {@link GameBoard#makeMove(MoveList, int)}.
+ * Every game has its own lock, held while it is used or written out; the order of use is kept under a short
+ * lock of its own. Readers of a game may skip its lock through {@link #snapshot(long)}.
+ */
+public final class GameSessionStore implements AutoCloseable {
+  /** Estimated heap size of a {@link GameBoard} without towers, measured on a 64-bit JVM. */
+  static final int BOARD_BYTES = 1800;
+  /** Estimated heap size of a {@link PieceTower}. */
+  static final int TOWER_BYTES = 32;
+
+  private static final int SNAPSHOT_VERSION = 1;
+  private static final int PIECES_PER_BYTE = 4;
+  private static final int BITS_PER_PIECE = 2;
+  private static final int BYTE_MASK = 0xFF;
+  private static final int TOWER_HEADER_BYTES = 4;
+  private static final int HEADER_BYTES = 3;
+
+  private final Path directory;
+  private final long budget;
+  private final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+  /** Games in memory from the least to the most recently used, guarded by itself. */
+  private final LinkedHashMap<Long, Session> resident = new LinkedHashMap<>(16, 0.75f, true);
+  private final AtomicLong nextId = new AtomicLong(1);
+  private final AtomicLong residentBytes = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Creates a store.
+   *
+   * @param directory directory for the snapshots of evicted games, or null to keep every game in memory
+   * @param budget    largest estimated size of the boards kept in memory, in bytes
+   */
+  public GameSessionStore(Path directory, long budget) {
+    this.directory = directory;
+    this.budget = budget;
+  }
+
+  /**
+   * Adds a game.
+   *
+   * @param board position of the game, owned by the store from now on
+   * @return the number of the game
+   * @throws IOException if evicting other games fails
+   */
+  public long create(GameBoard board) throws IOException {
+    return create(board, null);
+  }
+
+  /**
+   * Adds a game after an action run under its lock, before any other use of the game, agrees to it. The action
+   * may record the new game, e.g. in a {@link GameJournal}.
+   *
+   * @param board  position of the game, owned by the store from now on unless the action turns it down
+   * @param action action given the number of the game, returning false to drop the game, or null
+   * @return the number of the game, or -1 if the action dropped it
+   * @throws IOException if evicting other games fails
+   */
+  public long create(GameBoard board, LongPredicate action) throws IOException {
+    long id = nextId.getAndIncrement();
+    return add(id, board, action) ? id : -1;
+  }
+
+  /**
+   * Adds a game rebuilt under its former number, e.g. by {@link GameJournal}, and keeps new numbers above it.
+   */
+  void restore(long id, GameBoard board) throws IOException {
+    reserve(id);
+    add(id, board, null);
+  }
+
+  /**
+   * Keeps new game numbers above the given one.
+   */
+  void reserve(long lastId) {
+    nextId.accumulateAndGet(lastId + 1, Math::max);
+  }
+
+  private boolean add(long id, GameBoard board, LongPredicate action) throws IOException {
+    Session session = new Session(id);
+    session.lock.lock();
+    try {
+      sessions.put(id, session);
+      if (action != null && !action.test(id)) {
+        sessions.remove(id);
+        session.removed = true;
+        return false;
+      }
+      session.board = board;
+      session.bytes = estimateBytes(board);
+      residentBytes.addAndGet(session.bytes);
+    } finally {
+      session.lock.unlock();
+    }
+    touch(session);
+    evict();
+    return true;
+  }
+
+  /**
+   * Runs an action on the board of a game, reading it back first if it was evicted.
+   * The action runs under the lock of the game, so actions on the same game never overlap.
+   *
+   * @param id     number of the game
+   * @param action action to run, which may change the board but must not keep it
+   * @param <T>    type of the result
+   * @return the result of the action, or null if there is no such game
+   * @throws IOException if the game cannot be read back or other games cannot be evicted
+   */
+  public <T> T withBoard(long id, Function<GameBoard, T> action) throws IOException {
+    return use(id, session -> {
+      T result = action.apply(session.board);
+      if (session.view != null) {
+        session.view = session.view.update(session.board);
+      } else if (session.version != 0 && session.hash != session.board.getHash()) {
+        // the snapshot was dropped with the evicted board, its versions go on counting
+        ++session.version;
+        session.hash = session.board.getHash();
+      }
+      return result;
+    });
+  }
+
+  /**
+   * Returns the current position of a game for readers that must not wait for its moves. The first call locks
+   * the game to take a {@link PositionSnapshot}; from then on every {@link #withBoard(long, Function)} publishes
+   * the next version, so further calls only read a volatile field until the game is evicted. The versions of a
+   * game go on growing across evictions.
+   *
+   * @param id number of the game
+   * @return the snapshot, or null if there is no such game
+   * @throws IOException if the game cannot be read back or other games cannot be evicted
+   */
+  public PositionSnapshot snapshot(long id) throws IOException {
+    Session session = sessions.get(id);
+    if (session == null) {
+      return null;
+    }
+    PositionSnapshot view = session.view;
+    if (view != null) {
+      return view;
+    }
+    return use(id, watched -> {
+      if (watched.view == null) {
+        watched.view = PositionSnapshot.of(watched.board, Math.max(1, watched.version));
+      }
+      return watched.view;
+    });
+  }
+
+  private <T> T use(long id, Function<Session, T> action) throws IOException {
+    Session session = sessions.get(id);
+    if (session == null) {
+      return null;
+    }
+    T result;
+    session.lock.lock();
+    try {
+      if (session.removed) {
+        return null;
+      }
+      if (session.board == null) {
+        misses.increment();
+        session.board = decode(Files.readAllBytes(snapshotOf(id)));
+      } else {
+        hits.increment();
+      }
+      result = action.apply(session);
+      int bytes = estimateBytes(session.board) + (session.view == null ? 0 : PositionSnapshot.BYTES);
+      residentBytes.addAndGet(bytes - session.bytes);
+      session.bytes = bytes;
+    } finally {
+      session.lock.unlock();
+    }
+    touch(session);
+    evict();
+    return result;
+  }
+
+  /**
+   * Runs an action on a game written as by {@link #encode(GameBoard)} under its lock, reading the snapshot of an
+   * evicted game instead of its board, so that the games in memory and their order of use stay as they are.
+   *
+   * @return the result of the action, or null if there is no such game
+   * @throws IOException if the snapshot cannot be read
+   */
+  <T> T withEncoded(long id, Function<byte[], T> action) throws IOException {
+    Session session = sessions.get(id);
+    if (session == null) {
+      return null;
+    }
+    session.lock.lock();
+    try {
+      if (session.removed) {
+        return null;
+      }
+      return action.apply(session.board == null ? Files.readAllBytes(snapshotOf(id)) : encode(session.board));
+    } finally {
+      session.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the numbers of the open games.
+   */
+  List<Long> getIds() {
+    return new ArrayList<>(sessions.keySet());
+  }
+
+  /**
+   * Removes a game.
+   *
+   * @return false if there was no such game
+   * @throws IOException if its snapshot cannot be deleted
+   */
+  public boolean remove(long id) throws IOException {
+    return remove(id, null) != null;
+  }
+
+  /**
+   * Removes a game if an action run under its lock agrees to it. The action may record the removal, e.g. in a
+   * {@link GameJournal}.
+   *
+   * @param action action given the number of the game, returning false to keep the game, or null
+   * @return whether the game was removed, or null if there was no such game
+   * @throws IOException if its snapshot cannot be deleted
+   */
+  public Boolean remove(long id, LongPredicate action) throws IOException {
+    Session session = sessions.get(id);
+    if (session == null) {
+      return null;
+    }
+    session.lock.lock();
+    try {
+      if (session.removed) {
+        return null;
+      }
+      if (action != null && !action.test(id)) {
+        return false;
+      }
+      sessions.remove(id);
+      session.removed = true;
+      residentBytes.addAndGet(-session.bytes);
+      session.board = null;
+      session.view = null;
+      session.bytes = 0;
+    } finally {
+      session.lock.unlock();
+    }
+    synchronized (resident) {
+      resident.remove(id);
+    }
+    if (directory != null) {
+      Files.deleteIfExists(snapshotOf(id));
+    }
+    return true;
+  }
+
+  private void touch(Session session) {
+    synchronized (resident) {
+      resident.put(session.id, session);
+    }
+  }
+
+  /**
+   * Writes the least recently used games out until the boards in memory fit the budget.
+   * A game in use is left alone, its user calls this again when done.
+   */
+  private void evict() throws IOException {
+    while (directory != null && residentBytes.get() > budget) {
+      Session session;
+      synchronized (resident) {
+        Iterator<Session> eldest = resident.values().iterator();
+        if (!eldest.hasNext()) {
+          return;
+        }
+        session = eldest.next();
+        eldest.remove();
+      }
+      if (!session.lock.tryLock()) {
+        touch(session);
+        return;
+      }
+      try {
+        if (session.board != null && !session.removed) {
+          Files.write(snapshotOf(session.id), encode(session.board));
+          session.board = null;
+          if (session.view != null) {
+            session.version = session.view.getVersion();
+            session.hash = session.view.getHash();
+            session.view = null;
+          }
+          residentBytes.addAndGet(-session.bytes);
+          session.bytes = 0;
+          evictions.increment();
+        }
+      } finally {
+        session.lock.unlock();
+      }
+    }
+  }
+
+  private Path snapshotOf(long id) {
+    return directory.resolve(id + ".game");
+  }
+
+  /**
+   * Returns the estimated heap size of a board, see {@link #BOARD_BYTES}.
+   */
+  static int estimateBytes(GameBoard board) {
+    int towers = 0;
+    for (int square = 0; square < Bitboards.SQUARES; ++square) {
+      if (board.getTowerBits(square) != TowerBits.EMPTY) {
+        ++towers;
+      }
+    }
+    return BOARD_BYTES + towers * TOWER_BYTES;
+  }
+
+  /**
+   * Writes a board: the format version, the side to move and the number of towers as a byte each, then every
+   * tower as its square, its height and its last-beat letter and digit as a byte each, followed by its
+   * pieces, four to a byte from the top one in the low bits.
+   */
+  static byte[] encode(GameBoard board) {
+    List<Integer> squares = new ArrayList<>();
+    int size = HEADER_BYTES;
+    for (int square = 0; square < Bitboards.SQUARES; ++square) {
+      long tower = board.getTowerBits(square);
+      if (tower != TowerBits.EMPTY) {
+        squares.add(square);
+        size += TOWER_HEADER_BYTES + (TowerBits.height(tower) + PIECES_PER_BYTE - 1) / PIECES_PER_BYTE;
+      }
+    }
+    ByteBuffer out = ByteBuffer.allocate(size);
+    out.put((byte) SNAPSHOT_VERSION);
+    out.put((byte) board.getSideToMove().ordinal());
+    out.put((byte) squares.size());
+    for (int square : squares) {
+      PieceTower tower = board.getTower(Bitboards.letterOf(square), Bitboards.digitOf(square));
+      long bits = tower.getBits();
+      int height = TowerBits.height(bits);
+      out.put((byte) square);
+      out.put((byte) height);
+      out.put((byte) tower.getLastBeatLetterOrder());
+      out.put((byte) tower.getLastBeatDigitOrder());
+      for (int piece = 0; piece < height; piece += PIECES_PER_BYTE) {
+        out.put((byte) (bits >>> (piece * BITS_PER_PIECE)));
+      }
+    }
+    return out.array();
+  }
+
+  /**
+   * Reads a board written by {@link #encode(GameBoard)}.
+   */
+  static GameBoard decode(byte[] snapshot) throws IOException {
+    ByteBuffer in = ByteBuffer.wrap(snapshot);
+    if (in.get() != SNAPSHOT_VERSION) {
+      throw new IOException("unsupported snapshot version");
+    }
+    GameBoard board = new GameBoard();
+    Color sideToMove = Color.values()[in.get()];
+    int towers = in.get() & BYTE_MASK;
+    for (int k = 0; k < towers; ++k) {
+      int square = in.get();
+      int height = in.get();
+      int lastBeatLetter = in.get();
+      int lastBeatDigit = in.get();
+      long pieces = 0;
+      for (int piece = 0; piece < height; piece += PIECES_PER_BYTE) {
+        pieces |= (long) (in.get() & BYTE_MASK) << (piece * BITS_PER_PIECE);
+      }
+      PieceTower tower = new PieceTower(TowerBits.pack(pieces, height));
+      tower.setLastBeatLetterOrder(lastBeatLetter);
+      tower.setLastBeatDigitOrder(lastBeatDigit);
+      board.setTower(Bitboards.letterOf(square), Bitboards.digitOf(square), tower);
+    }
+    board.setSideToMove(sideToMove);
+    return board;
+  }
+
+  /**
+   * Returns the number of open games, in memory or not.
+   */
+  public int size() {
+    return sessions.size();
+  }
+
+  public int getResidentGames() {
+    synchronized (resident) {
+      return resident.size();
+    }
+  }
+
+  /**
+   * Returns the estimated size of the boards in memory, see {@link #estimateBytes(GameBoard)}.
+   */
+  public long getResidentBytes() {
+    return residentBytes.get();
+  }
+
+  /**
+   * Returns the number of uses of a game found in memory.
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of uses of a game read back from its snapshot.
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * Deletes the snapshots of the games left.
+   */
+  @Override
+  public void close() throws IOException {
+    if (directory == null) {
+      return;
+    }
+    for (Map.Entry<Long, Session> entry : sessions.entrySet()) {
+      Files.deleteIfExists(snapshotOf(entry.getKey()));
+    }
+  }
+
+  /**
+   * An open game: its board, or null while it is only on disk, and its published position once someone watches.
+   */
+  private static final class Session {
+    private final long id;
+    private final ReentrantLock lock = new ReentrantLock();
+    private GameBoard board;
+    private volatile PositionSnapshot view;
+    /** Version and hash of the last snapshot once it is dropped with the board, 0 if there was none. */
+    private long version;
+    private long hash;
+    private int bytes;
+    private boolean removed;
+
+    Session(long id) {
+      this.id = id;
+    }
+  }
+}
@@ -0,0 +1,248 @@
+package com.ruchekers;
+
+import java.util.Arrays;
+
+/**
+ * A game played on a {@link GameBoard}: the hashes of the positions reached so far, see {@link GameBoard#getHash()},
+ * and the number of half-moves since the last capture, from which it tells whether and how the game ended, see
+ * {@link GameResult}. Every position is counted in an open-addressing table keyed by its hash, so a move or a
+ * take-back updates the repetition count in constant time; the history takes a long and an int per half-move.
+ * Moves must be played through the game, not on the board directly.
+ */
+public final class GameState {
+  /** Default number of half-moves without a capture drawing the game: 15 moves of each side. */
+  public static final int DEFAULT_QUIET_LIMIT = 30;
+  /** Number of times a position must be reached to draw the game. */
+  public static final int REPETITIONS = 3;
+
+  private static final int INITIAL_CAPACITY = 64;
+  /** Count of a table slot holding no position. */
+  private static final int FREE = -1;
+
+  private final GameBoard board;
+  private final int quietLimit;
+  private final MoveGenerator generator = new MoveGenerator();
+  private final MoveList moves = new MoveList();
+  /** Hash of the position after every half-move, the starting position first. */
+  private long[] hashes = new long[INITIAL_CAPACITY];
+  /** Half-moves since the last capture, or since the start, after every half-move. */
+  private int[] quiet = new int[INITIAL_CAPACITY];
+  private int plies;
+  /** Number of the last half-moves played by {@link #play(MoveList, int)}, which can be taken back. */
+  private int undoable;
+  private long[] keys = new long[INITIAL_CAPACITY];
+  private int[] counts = new int[INITIAL_CAPACITY];
+  private int used;
+  /** Result of the current position, or null until asked for. */
+  private GameResult result;
+
+  /**
+   * Starts a game from the current position of a board, with the default limit of half-moves without a capture.
+   */
+  public GameState(GameBoard board) {
+    this(board, DEFAULT_QUIET_LIMIT);
+  }
+
+  /**
+   * Starts a game from the current position of a board.
+   *
+   * @param board      board of the game, owned by the game from now on
+   * @param quietLimit number of half-moves without a capture drawing the game
+   */
+  public GameState(GameBoard board, int quietLimit) {
+    this.board = board;
+    this.quietLimit = quietLimit;
+    reset();
+  }
+
+  /**
+   * Starts the game over from the current position of the board, e.g. after setting it up again.
+   */
+  public void reset() {
+    Arrays.fill(counts, FREE);
+    used = 0;
+    plies = 0;
+    undoable = 0;
+    hashes[0] = board.getHash();
+    quiet[0] = 0;
+    count(hashes[0], 1);
+    result = null;
+  }
+
+  public GameBoard getBoard() {
+    return board;
+  }
+
+  /**
+   * Plays a move found by {@link MoveGenerator} for the current position, see
+   * {@link GameBoard#makeMove(MoveList, int)}.
+   */
+  public void play(MoveList list, int move) {
+    boolean wasKing = RulesMetrics.ENABLED && board.getTower(list.getSquare(move, 0)).isKing();
+    board.makeMove(list, move);
+    if (RulesMetrics.ENABLED) {
+      RulesMetrics.recordMove(board, list, move, wasKing);
+    }
+    advance(list.isCapture(move));
+    ++undoable;
+  }
+
+  public MoveVerdict play(CharSequence text) {
+    return play(text, 0, text.length());
+  }
+
+  /**
+   * Plays the move written in the given part of the text, see {@link Main#tryMove(GameBoard, CharSequence, int,
+   * int)}. A rejected move is not recorded, and a capture rejected after its first step leaves the board with the
+   * steps played so far. A move played this way cannot be taken back.
+   *
+   * @return the verdict, {@link MoveVerdict#ERROR} for a malformed notation
+   */
+  public MoveVerdict play(CharSequence text, int start, int end) {
+    MoveVerdict verdict = Main.tryMove(board, text, start, end);
+    if (verdict.isLegal()) {
+      boolean capture = false;
+      for (int k = start; k < end && !capture; ++k) {
+        capture = text.charAt(k) == ':';
+      }
+      advance(capture);
+      undoable = 0;
+    }
+    return verdict;
+  }
+
+  private void advance(boolean capture) {
+    if (++plies == hashes.length) {
+      hashes = Arrays.copyOf(hashes, plies * 2);
+      quiet = Arrays.copyOf(quiet, plies * 2);
+    }
+    hashes[plies] = board.getHash();
+    quiet[plies] = capture ? 0 : quiet[plies - 1] + 1;
+    count(hashes[plies], 1);
+    result = null;
+  }
+
+  /**
+   * Takes back the last move played by {@link #play(MoveList, int)}.
+   *
+   * @throws IllegalStateException if the last move was played from text, or there is none
+   */
+  public void undo() {
+    if (undoable == 0) {
+      throw new IllegalStateException("no move to take back");
+    }
+    --undoable;
+    count(hashes[plies--], -1);
+    board.unmakeMove();
+    result = null;
+  }
+
+  /**
+   * Returns the number of half-moves played since the start.
+   */
+  public int getPlies() {
+    return plies;
+  }
+
+  /**
+   * Returns the number of times the current position was reached, counting this one.
+   */
+  public int getRepetitions() {
+    return counts[slot(hashes[plies])];
+  }
+
+  /**
+   * Returns the number of half-moves played since the last capture, or since the start.
+   */
+  public int getQuietPlies() {
+    return quiet[plies];
+  }
+
+  /**
+   * Returns how the game stands. A lost game takes precedence over a drawn one: a side left without a move
+   * loses even if the position is repeated. Finding the legal moves takes a move generation, done once per
+   * position.
+   */
+  public GameResult getResult() {
+    if (result == null) {
+      result = computeResult();
+    }
+    return result;
+  }
+
+  private GameResult computeResult() {
+    Color side = board.getSideToMove();
+    board.ensureMasks();
+    long tops = side == Color.WHITE ? board.getOccupied() & ~board.getBlackTops() : board.getBlackTops();
+    if (tops == 0) {
+      return GameResult.NO_TOWERS;
+    }
+    if (generator.generate(board, side, moves) == 0) {
+      return GameResult.NO_MOVES;
+    }
+    if (getRepetitions() >= REPETITIONS) {
+      return GameResult.REPETITION;
+    }
+    return quiet[plies] >= quietLimit ? GameResult.NO_CAPTURE : GameResult.IN_PROGRESS;
+  }
+
+  /**
+   * Returns the side that won, or null if the game is drawn or goes on.
+   */
+  public Color getWinner() {
+    if (!getResult().isLoss()) {
+      return null;
+    }
+    return board.getSideToMove() == Color.WHITE ? Color.BLACK : Color.WHITE;
+  }
+
+  /**
+   * Adds to the count of a position.
+   *
+   * @return the new count
+   */
+  private int count(long hash, int delta) {
+    int slot = slot(hash);
+    if (counts[slot] == FREE) {
+      if ((used + 1) * 2 > keys.length) {
+        grow();
+        slot = slot(hash);
+      }
+      keys[slot] = hash;
+      counts[slot] = 0;
+      ++used;
+    }
+    counts[slot] += delta;
+    return counts[slot];
+  }
+
+  /**
+   * Returns the slot of a position in the table, or the free slot to put it in. Positions taken back keep their
+   * slot with a count of 0 until the table grows, so that probing never stops short of a later position.
+   */
+  private int slot(long hash) {
+    int mask = keys.length - 1;
+    int slot = (int) (hash ^ hash >>> Integer.SIZE) & mask;
+    while (counts[slot] != FREE && keys[slot] != hash) {
+      slot = slot + 1 & mask;
+    }
+    return slot;
+  }
+
+  private void grow() {
+    long[] oldKeys = keys;
+    int[] oldCounts = counts;
+    keys = new long[oldKeys.length * 2];
+    counts = new int[oldKeys.length * 2];
+    Arrays.fill(counts, FREE);
+    used = 0;
+    for (int k = 0; k < oldKeys.length; ++k) {
+      if (oldCounts[k] > 0) {
+        int slot = slot(oldKeys[k]);
+        keys[slot] = oldKeys[k];
+        counts[slot] = oldCounts[k];
+        ++used;
+      }
+    }
+  }
+}
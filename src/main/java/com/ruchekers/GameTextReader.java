@@ -0,0 +1,52 @@
+package com.ruchekers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a games file into games: the white towers, the black towers and the move lines, up to a blank line.
+ * Blank lines before a game are skipped, the black towers line may be blank.
+ */
+final class GameTextReader {
+  private final BufferedReader reader;
+  private int lineNumber;
+  private int firstLine;
+
+  GameTextReader(BufferedReader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Reads the lines of the next game.
+   *
+   * @return the lines, or null at the end of the input
+   * @throws IOException if the input cannot be read
+   */
+  List<String> next() throws IOException {
+    List<String> lines = new ArrayList<>();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      ++lineNumber;
+      boolean blank = line.trim().isEmpty();
+      if (lines.size() >= 2 && blank) {
+        return lines;
+      }
+      if (!lines.isEmpty() || !blank) {
+        if (lines.isEmpty()) {
+          firstLine = lineNumber;
+        }
+        lines.add(line);
+      }
+    }
+    return lines.isEmpty() ? null : lines;
+  }
+
+  /**
+   * Returns the 1-based number of the first line of the game last returned by {@link #next()}.
+   */
+  int getFirstLine() {
+    return firstLine;
+  }
+}
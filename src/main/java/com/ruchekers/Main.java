@@ -5,7 +5,6 @@ import com.ruchekers.exceptions.BusyCellException;
 import com.ruchekers.exceptions.InvalidMoveException;
 import com.ruchekers.exceptions.WhiteCellException;
 
-import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Scanner;
@@ -13,6 +12,11 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public final class Main {
+  /** White towers of the starting position, as read by {@link #fillBoard(GameBoard, String)}. */
+  public static final String INITIAL_WHITE = "a1_w c1_w e1_w g1_w b2_w d2_w f2_w h2_w a3_w c3_w e3_w g3_w";
+  /** Black towers of the starting position. */
+  public static final String INITIAL_BLACK = "b6_b d6_b f6_b h6_b a7_b c7_b e7_b g7_b b8_b d8_b f8_b h8_b";
+
   private Main() {
 
   }
@@ -22,6 +26,9 @@ public final class Main {
   private static final String DIGITS = "012345678";
   private static final String TOWER_REGEX_STRING = "([a-hA-H][1-8][_][bwBW]+)";
   private static final Pattern TOWER_REGEX = Pattern.compile(TOWER_REGEX_STRING);
+  /** Moves read from a line of the standard input: the move of white, then the move of black. */
+  private static final int MOVES_PER_LINE = 2;
+  private static final ThreadLocal<MoveNotation> NOTATION = ThreadLocal.withInitial(MoveNotation::new);
 
   private static int getLetterOrder(String towerString) {
     int letterCapIdx = POS_LETTERS_CAP.indexOf(towerString.charAt(0));
@@ -33,90 +40,195 @@ public final class Main {
     return DIGITS.indexOf(towerString.charAt(1));
   }
 
-  private static void fillBoard(GameBoard board, String coords) {
+  /**
+   * Puts the towers written in the text on the board, see {@link MoveNotation} for the syntax.
+   *
+   * @return false if a tower is higher than {@link TowerBits#MAX_HEIGHT}, which is left off the board
+   */
+  public static boolean fillBoard(GameBoard board, String coords) {
+    boolean valid = true;
     Matcher regexMatcher = TOWER_REGEX.matcher(coords);
     while (regexMatcher.find()) {
       String coord = regexMatcher.group();
+      if (coord.length() - 3 > TowerBits.MAX_HEIGHT) {
+        valid = false;
+        continue;
+      }
       PieceTower tower = new PieceTower();
       int towerI = getLetterOrder(coord);
       int towerJ = getDigitOrder(coord);
       for (int i = 3; i < coord.length(); ++i) {
-        Piece piece;
-        switch (coord.charAt(i)) {
-          case 'w':
-            piece = new Piece(Color.WHITE, false);
-            break;
-          case 'W':
-            piece = new Piece(Color.WHITE, true);
-            break;
-          case 'b':
-            piece = new Piece(Color.BLACK, false);
-            break;
-          case 'B':
-            piece = new Piece(Color.BLACK, true);
-            break;
-          default:
-            piece = new Piece();
-            break;
-        }
-        tower.pushPiece(piece);
+        int code = TowerBits.codeOf(coord.charAt(i));
+        tower.pushCode(code != -1 ? code : TowerBits.WHITE_MAN);
       }
       board.setTower(towerI, towerJ, tower);
     }
+    return valid;
   }
 
   public static void processMove(GameBoard board, String move) throws BusyCellException, WhiteCellException,
           InvalidMoveException, AnyErrorException {
-    Pattern moveRegex = Pattern.compile(String.format("(%s[-]%s)", TOWER_REGEX_STRING, TOWER_REGEX_STRING));
-    Pattern beatRegex = Pattern.compile(String.format("(%s[:]%s)", TOWER_REGEX_STRING, TOWER_REGEX_STRING));
-
-    Matcher moveMatcher = moveRegex.matcher(move);
-    Matcher beatMatcher = beatRegex.matcher(move);
-
-    if (moveMatcher.find()) {
-      String pureMove = moveMatcher.group();
-      Matcher towerMatcher = TOWER_REGEX.matcher(pureMove);
-      towerMatcher.find();
-      String oldPos = towerMatcher.group();
-      towerMatcher.find();
-      String newPos = towerMatcher.group();
-      int oldI = getLetterOrder(oldPos);
-      int oldJ = getDigitOrder(oldPos);
-      int newI = getLetterOrder(newPos);
-      int newJ = getDigitOrder(newPos);
-      board.moveTower(oldI, oldJ, newI, newJ);
+    processMove(board, move, 0, move.length());
+  }
+
+  /**
+   * Plays the move written in the given part of the text, see {@link MoveNotation} for the syntax.
+   *
+   * @throws AnyErrorException if the notation is malformed, with the index of the offending character
+   */
+  static void processMove(GameBoard board, CharSequence text, int start, int end) throws BusyCellException,
+          WhiteCellException, InvalidMoveException, AnyErrorException {
+    MoveNotation move = NOTATION.get();
+    if (!move.parse(text, start, end)) {
+      if (RulesMetrics.ENABLED) {
+        RulesMetrics.recordRejection(MoveVerdict.ERROR);
+      }
+      throw new AnyErrorException(move.getError() + " at " + move.getErrorPosition());
+    }
+    (RulesMetrics.ENABLED ? playRecorded(board, move) : play(board, move)).raise();
+  }
+
+  /**
+   * Plays the move written in the given part of the text like {@link #processMove(GameBoard, String)},
+   * but returns the verdict instead of throwing it. As there, a capture rejected after its first step leaves
+   * the board with the steps played so far.
+   *
+   * @return the verdict, {@link MoveVerdict#ERROR} for a malformed notation
+   */
+  public static MoveVerdict tryMove(GameBoard board, CharSequence text, int start, int end) {
+    MoveNotation move = NOTATION.get();
+    if (!move.parse(text, start, end)) {
+      if (RulesMetrics.ENABLED) {
+        RulesMetrics.recordRejection(MoveVerdict.ERROR);
+      }
+      return MoveVerdict.ERROR;
+    }
+    return RulesMetrics.ENABLED ? playRecorded(board, move) : play(board, move);
+  }
+
+  public static MoveVerdict validate(GameBoard board, CharSequence move) {
+    return validate(board, move, 0, move.length());
+  }
+
+  /**
+   * Checks the move written in the given part of the text by the rules of {@link #processMove(GameBoard, String)}
+   * without changing the board. A capture is played and taken back on the given board, which is left as it was.
+   *
+   * @return the verdict, {@link MoveVerdict#ERROR} for a malformed notation
+   */
+  public static MoveVerdict validate(GameBoard board, CharSequence text, int start, int end) {
+    MoveNotation move = NOTATION.get();
+    if (!move.parse(text, start, end)) {
+      return MoveVerdict.ERROR;
+    }
+    return validate(board, move);
+  }
+
+  /**
+   * Checks a parsed move like {@link #validate(GameBoard, CharSequence, int, int)}.
+   */
+  static MoveVerdict validate(GameBoard board, MoveNotation move) {
+    if (move.isCapture()) {
+      return board.checkCapture(move);
+    }
+    return board.checkMoveTower(move.getLetter(0), move.getDigit(0), move.getLetter(1), move.getDigit(1));
+  }
+
+  /**
+   * Plays a parsed move like {@link #play(GameBoard, MoveNotation)}, counting it in {@link RulesMetrics}
+   * and emitting a {@link MoveEvent}.
+   */
+  private static MoveVerdict playRecorded(GameBoard board, MoveNotation move) {
+    MoveEvent event = new MoveEvent();
+    event.begin();
+    long start = System.nanoTime();
+    PieceTower tower = board.getTower(move.getLetter(0), move.getDigit(0));
+    boolean wasKing = tower != null && tower.isKing();
+    MoveVerdict verdict = play(board, move);
+    RulesMetrics.recordLatency(System.nanoTime() - start);
+    int last = move.getLength() - 1;
+    int captures = move.isCapture() ? last : 0;
+    if (verdict.isLegal()) {
+      PieceTower moved = board.getTower(move.getLetter(last), move.getDigit(last));
+      RulesMetrics.recordMove(captures, moved.isKing() && !wasKing, moved.size());
     } else {
-      String prev = null;
-      String curr = null;
-      int lastI = 0;
-      int lastJ = 0;
-      Matcher towerMatcher = TOWER_REGEX.matcher(move);
-      while (towerMatcher.find()) {
-        prev = curr;
-        curr = towerMatcher.group();
-        if (prev == null) {
-          continue;
-        }
-        int oldI = getLetterOrder(prev);
-        int oldJ = getDigitOrder(prev);
-        int newI = getLetterOrder(curr);
-        int newJ = getDigitOrder(curr);
-        if (board.getTower(oldI, oldJ).isKing()) {
-          board.beatWithKing(oldI, oldJ, newI, newJ);
-        } else {
-          board.beatWithTower(oldI, oldJ, newI, newJ);
-        }
-        lastI = newI;
-        lastJ = newJ;
+      RulesMetrics.recordRejection(verdict);
+    }
+    event.end();
+    if (event.shouldCommit()) {
+      event.set(Bitboards.square(move.getLetter(0), move.getDigit(0)),
+              Bitboards.square(move.getLetter(last), move.getDigit(last)), captures, verdict);
+      event.commit();
+    }
+    return verdict;
+  }
+
+  /**
+   * Plays a parsed move, the board being changed as by {@link #tryMove(GameBoard, CharSequence, int, int)}.
+   */
+  static MoveVerdict play(GameBoard board, MoveNotation move) {
+    if (!move.isCapture()) {
+      int newI = move.getLetter(1);
+      int newJ = move.getDigit(1);
+      MoveVerdict verdict = board.tryMoveTower(move.getLetter(0), move.getDigit(0), newI, newJ);
+      if (verdict.isLegal()) {
+        passTurn(board, newI, newJ);
       }
-      ArrayList<Pair> possibleVictims = board.getPossibleVictims(lastI, lastJ);
-      if (possibleVictims != null) {
-        throw new InvalidMoveException("invalid move");
+      return verdict;
+    }
+    for (int k = 1; k < move.getLength(); ++k) {
+      int oldI = move.getLetter(k - 1);
+      int oldJ = move.getDigit(k - 1);
+      int newI = move.getLetter(k);
+      int newJ = move.getDigit(k);
+      PieceTower tower = board.getTower(oldI, oldJ);
+      MoveVerdict verdict = tower != null && tower.isKing() ? board.tryBeatWithKing(oldI, oldJ, newI, newJ)
+              : board.tryBeatWithTower(oldI, oldJ, newI, newJ);
+      if (!verdict.isLegal()) {
+        return verdict;
       }
     }
+    int lastI = move.getLetter(move.getLength() - 1);
+    int lastJ = move.getDigit(move.getLength() - 1);
+    if (board.getPossibleVictims(lastI, lastJ) != null) {
+      return MoveVerdict.INVALID_MOVE;
+    }
+    passTurn(board, lastI, lastJ);
+    return MoveVerdict.LEGAL;
+  }
+
+  /**
+   * Returns the index of the first non-whitespace character at or after {@code pos}, or the text length.
+   */
+  static int skipWhitespace(CharSequence text, int pos) {
+    while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+      ++pos;
+    }
+    return pos;
+  }
+
+  /**
+   * Returns the index of the first whitespace character at or after {@code pos}, or the text length.
+   */
+  static int skipToken(CharSequence text, int pos) {
+    while (pos < text.length() && !Character.isWhitespace(text.charAt(pos))) {
+      ++pos;
+    }
+    return pos;
+  }
+
+  private static void passTurn(GameBoard board, int i, int j) {
+    board.setSideToMove(board.getTower(i, j).getColor() == Color.WHITE ? Color.BLACK : Color.WHITE);
   }
 
   public static void printFigures(GameBoard board, Color color) {
+    System.out.print(figuresString(board, color));
+  }
+
+  /**
+   * Lists the towers of one color in the input format, sorted and each followed by a space.
+   */
+  static String figuresString(GameBoard board, Color color) {
     ArrayList<String> output = new ArrayList<>();
     for (int j = board.getBoardLength() - 1; j >= 1; --j) {
       for (int i = 1; i < board.getBoardWidth(); ++i) {
@@ -127,60 +239,86 @@ public final class Main {
       }
     }
     Collections.sort(output);
-    for (String s : output) {
-      System.out.print(s);
+    return String.join("", output);
+  }
+
+  /**
+   * Writes a move found by {@link MoveGenerator} in the move notation, with the tower at every cell, see
+   * {@link MoveNotation}.
+   *
+   * @param scratch copy of the position the move was generated for, on which the move is played
+   */
+  public static void appendMove(StringBuilder text, GameBoard scratch, MoveList moves, int move) {
+    appendCell(text, scratch.getTowerBits(moves.getSquare(move, 0)), moves.getSquare(move, 0));
+    for (int k = 1; k < moves.getLength(move); ++k) {
+      int from = moves.getSquare(move, k - 1);
+      int to = moves.getSquare(move, k);
+      int oldI = Bitboards.letterOf(from);
+      int oldJ = Bitboards.digitOf(from);
+      int newI = Bitboards.letterOf(to);
+      int newJ = Bitboards.digitOf(to);
+      MoveVerdict verdict;
+      if (!moves.isCapture(move)) {
+        verdict = scratch.tryMoveTower(oldI, oldJ, newI, newJ);
+      } else if (scratch.getTower(oldI, oldJ).isKing()) {
+        verdict = scratch.tryBeatWithKing(oldI, oldJ, newI, newJ);
+      } else {
+        verdict = scratch.tryBeatWithTower(oldI, oldJ, newI, newJ);
+      }
+      if (!verdict.isLegal()) {
+        throw new IllegalStateException("generated move rejected: " + verdict.getMessage());
+      }
+      appendCell(text.append(moves.isCapture(move) ? ':' : '-'), scratch.getTowerBits(to), to);
     }
   }
 
+  static void appendCell(StringBuilder text, long tower, int square) {
+    text.append(POS_LETTERS.charAt(Bitboards.letterOf(square))).append(Bitboards.digitOf(square)).append('_');
+    for (int depth = 0; depth < TowerBits.height(tower); ++depth) {
+      text.append(TowerBits.charOf(TowerBits.pieceAt(tower, depth)));
+    }
+  }
+
+  /**
+   * Returns the message printed for a rejected move.
+   */
+  static String errorKind(Exception e) {
+    if (e instanceof BusyCellException) {
+      return "busy cell";
+    }
+    if (e instanceof WhiteCellException) {
+      return "white cell";
+    }
+    if (e instanceof InvalidMoveException) {
+      return "invalid move";
+    }
+    return "error";
+  }
+
   public static void main(String[] args) {
     try (Scanner in = new Scanner(System.in)) {
       GameBoard board = new GameBoard();
       String whiteCoords = in.nextLine();
       String blackCoords = in.nextLine();
-      fillBoard(board, whiteCoords);
-      fillBoard(board, blackCoords);
+      if (!fillBoard(board, whiteCoords) || !fillBoard(board, blackCoords)) {
+        System.out.println("error");
+        return;
+      }
 
       while (in.hasNextLine()) {
         String moves = in.nextLine();
         if (moves.isEmpty()) {
           break;
         }
-        Pattern splitRegex = Pattern.compile("(\\S)+");
-        Matcher regexMatcher = splitRegex.matcher(moves);
-        regexMatcher.find();
-        String whiteMove = regexMatcher.group();
-        regexMatcher.find();
-        String blackMove = regexMatcher.group();
-        try {
-          processMove(board, whiteMove);
-        } catch (BusyCellException e) {
-          System.out.println("busy cell");
-          return;
-        } catch (WhiteCellException e) {
-          System.out.println("white cell");
-          return;
-        } catch (InvalidMoveException e) {
-          System.out.println("invalid move");
-          return;
-        } catch (AnyErrorException e) {
-          System.out.println("error");
-          return;
-        }
-
-        try {
-          processMove(board, blackMove);
-        } catch (BusyCellException e) {
-          System.out.println("busy cell");
-          return;
-        } catch (WhiteCellException e) {
-          System.out.println("white cell");
-          return;
-        } catch (InvalidMoveException e) {
-          System.out.println("invalid move");
-          return;
-        } catch (AnyErrorException e) {
-          System.out.println("error");
-          return;
+        int pos = skipWhitespace(moves, 0);
+        for (int k = 0; k < MOVES_PER_LINE && pos < moves.length(); ++k) {
+          int end = skipToken(moves, pos);
+          MoveVerdict verdict = tryMove(board, moves, pos, end);
+          if (!verdict.isLegal()) {
+            System.out.println(verdict.getMessage());
+            return;
+          }
+          pos = skipWhitespace(moves, end);
         }
       }
       printFigures(board, Color.WHITE);
@@ -0,0 +1,38 @@
+package com.ruchekers;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event of a move played through the text path of {@link Main}, emitted when
+ * {@link RulesMetrics#ENABLED} is set and a recording has the event enabled.
+ */
+@Name("com.ruchekers.Move")
+@Label("Move")
+@Category("Ruchekers")
+@Description("A move checked and played by the rules core")
+final class MoveEvent extends Event {
+  @Label("From")
+  @Description("Square the move starts on, see Bitboards")
+  private int from;
+
+  @Label("To")
+  @Description("Square the move ends on, see Bitboards")
+  private int to;
+
+  @Label("Captures")
+  private int captures;
+
+  @Label("Verdict")
+  private String verdict;
+
+  void set(int start, int end, int beaten, MoveVerdict outcome) {
+    this.from = start;
+    this.to = end;
+    this.captures = beaten;
+    this.verdict = outcome.name();
+  }
+}
@@ -0,0 +1,144 @@
+package com.ruchekers;
+
+/**
+ * Enumerates the legal moves of one side, following the same rules as {@link GameBoard}:
+ * capturing is mandatory, a capture chain goes on while the moving tower has something to beat,
+ * a simple tower reaching the last row becomes a king even in the middle of a chain,
+ * and a tower may not beat the tower it has just beaten.
+ * A generator keeps scratch state between calls, so it must not be shared between threads.
+ */
+public final class MoveGenerator {
+  private static final int MAX_PATH = 64;
+
+  private final long[] towers = new long[Bitboards.SQUARES];
+  private final int[] path = new int[MAX_PATH];
+  private final int[] victims = new int[MAX_PATH];
+  private MoveList moves;
+  private boolean black;
+
+  /**
+   * Fills the given list with every legal move of the given side.
+   * Only captures are listed when at least one is available, each capture chain being complete.
+   *
+   * @param board position to look at
+   * @param color side to move
+   * @param list  buffer to fill, its previous contents are dropped
+   * @return the number of moves found
+   */
+  public int generate(GameBoard board, Color color, MoveList list) {
+    list.clear();
+    board.ensureMasks();
+    moves = list;
+    black = color == Color.BLACK;
+    long occupied = board.getOccupied();
+    long blackTops = board.getBlackTops();
+    long kings = board.getKingTops();
+    long own = black ? blackTops : occupied & ~blackTops;
+    for (long rest = occupied; rest != 0; rest &= rest - 1) {
+      int square = Long.numberOfTrailingZeros(rest);
+      towers[square] = board.getTower(square).getBits();
+    }
+
+    long lastBeaters = own & board.getLastBeaters();
+    for (long rest = board.getCapturers(color); rest != 0; rest &= rest - 1) {
+      int square = Long.numberOfTrailingZeros(rest);
+      int forbidden = Bitboards.NO_SQUARE;
+      if ((lastBeaters & Bitboards.bit(square)) != 0) {
+        PieceTower tower = board.getTower(square);
+        forbidden = Bitboards.square(tower.getLastBeatLetterOrder(), tower.getLastBeatDigitOrder());
+      }
+      path[0] = square;
+      expandCaptures(square, (kings & Bitboards.bit(square)) != 0, forbidden, occupied, blackTops, kings, 0);
+    }
+    if (list.size() == 0) {
+      for (long rest = own; rest != 0; rest &= rest - 1) {
+        int square = Long.numberOfTrailingZeros(rest);
+        addSimpleMoves(square, (kings & Bitboards.bit(square)) != 0, occupied);
+      }
+    }
+    moves = null;
+    return list.size();
+  }
+
+  private void addSimpleMoves(int from, boolean king, long occupied) {
+    path[0] = from;
+    for (int direction = 0; direction < Bitboards.DIRECTIONS; ++direction) {
+      if (!king && isForward(direction) == black) {
+        continue;
+      }
+      for (int to = Bitboards.step(from, direction); to != Bitboards.NO_SQUARE
+              && (occupied & Bitboards.bit(to)) == 0; to = Bitboards.step(to, direction)) {
+        path[1] = to;
+        victims[1] = Bitboards.NO_SQUARE;
+        moves.add(path, victims, 2);
+        if (!king) {
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Lists every capture chain that continues the current path from the given square.
+   *
+   * @param from      square of the moving tower
+   * @param king      whether the moving tower is a king
+   * @param forbidden square of the tower beaten by the previous step
+   * @param occupied  occupied squares
+   * @param blackTops squares with a black piece on top
+   * @param kings     squares with a king on top
+   * @param depth     index of {@code from} in the path
+   * @return true if the moving tower has something to beat
+   */
+  private boolean expandCaptures(int from, boolean king, int forbidden, long occupied, long blackTops,
+                                 long kings, int depth) {
+    long enemies = black ? occupied & ~blackTops : blackTops;
+    boolean found = false;
+    for (int direction = 0; direction < Bitboards.DIRECTIONS; ++direction) {
+      int victim = Bitboards.step(from, direction);
+      while (king && victim != Bitboards.NO_SQUARE && (occupied & Bitboards.bit(victim)) == 0) {
+        victim = Bitboards.step(victim, direction);
+      }
+      if (victim == Bitboards.NO_SQUARE || victim == forbidden || (enemies & Bitboards.bit(victim)) == 0) {
+        continue;
+      }
+      long victimBits = towers[victim];
+      long beaten = TowerBits.popTop(victimBits);
+      long victimBit = Bitboards.bit(victim);
+      long nextOccupied = occupied;
+      long nextBlack = blackTops & ~victimBit;
+      long nextKings = kings & ~victimBit;
+      if (TowerBits.height(beaten) == 0) {
+        nextOccupied &= ~victimBit;
+      } else {
+        int top = TowerBits.top(beaten);
+        nextBlack |= TowerBits.colorOf(top) == Color.BLACK ? victimBit : 0;
+        nextKings |= TowerBits.isKing(top) ? victimBit : 0;
+      }
+      towers[victim] = beaten;
+      long fromBit = Bitboards.bit(from);
+      for (int to = Bitboards.step(victim, direction); to != Bitboards.NO_SQUARE
+              && (occupied & Bitboards.bit(to)) == 0; to = Bitboards.step(to, direction)) {
+        found = true;
+        long toBit = Bitboards.bit(to);
+        boolean nextKing = king || Bitboards.digitOf(to) == (black ? 1 : Bitboards.SIZE);
+        path[depth + 1] = to;
+        victims[depth + 1] = victim;
+        if (!expandCaptures(to, nextKing, victim, nextOccupied & ~fromBit | toBit,
+                black ? nextBlack & ~fromBit | toBit : nextBlack,
+                nextKing ? nextKings & ~fromBit | toBit : nextKings, depth + 1)) {
+          moves.add(path, victims, depth + 2);
+        }
+        if (!king) {
+          break;
+        }
+      }
+      towers[victim] = victimBits;
+    }
+    return found;
+  }
+
+  private static boolean isForward(int direction) {
+    return direction == Bitboards.NORTH_EAST || direction == Bitboards.NORTH_WEST;
+  }
+}
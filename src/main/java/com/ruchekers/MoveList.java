@@ -0,0 +1,83 @@
+package com.ruchekers;
+
+import java.util.Arrays;
+
+/**
+ * A reusable buffer of moves filled by {@link MoveGenerator}.
+ * Every move is a path of squares (see {@link Bitboards} for the numbering): the starting square
+ * followed by one landing square for a simple move or by every landing square of a capture chain.
+ * For captures the square of the beaten tower is stored next to each landing square.
+ * The arrays grow on demand and are kept between uses, so a warmed up list does not allocate.
+ */
+public final class MoveList {
+  private static final int INITIAL_MOVES = 32;
+  private static final int INITIAL_SQUARES = 128;
+
+  private int[] starts = new int[INITIAL_MOVES + 1];
+  private int[] squares = new int[INITIAL_SQUARES];
+  private int[] victims = new int[INITIAL_SQUARES];
+  private int size;
+
+  public void clear() {
+    size = 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Appends a move.
+   *
+   * @param pathSquares squares of the path, starting with the square of the moving tower
+   * @param pathVictims beaten squares, {@code pathVictims[k]} belongs to the step landing on {@code pathSquares[k]}
+   * @param length      number of squares in the path, at least 2
+   */
+  void add(int[] pathSquares, int[] pathVictims, int length) {
+    if (size + 1 == starts.length) {
+      starts = Arrays.copyOf(starts, starts.length * 2);
+    }
+    int start = starts[size];
+    int end = start + length;
+    if (end > squares.length) {
+      int capacity = Math.max(end, squares.length * 2);
+      squares = Arrays.copyOf(squares, capacity);
+      victims = Arrays.copyOf(victims, capacity);
+    }
+    System.arraycopy(pathSquares, 0, squares, start, length);
+    System.arraycopy(pathVictims, 0, victims, start, length);
+    victims[start] = Bitboards.NO_SQUARE;
+    starts[++size] = end;
+  }
+
+  /**
+   * Returns the number of squares in the path of the move, the starting one included.
+   */
+  public int getLength(int move) {
+    return starts[move + 1] - starts[move];
+  }
+
+  public int getSquare(int move, int index) {
+    return squares[starts[move] + index];
+  }
+
+  /**
+   * Returns the square of the tower beaten by the step landing on {@code getSquare(move, index)},
+   * or {@code -1} for a simple move.
+   */
+  public int getVictim(int move, int index) {
+    return victims[starts[move] + index];
+  }
+
+  public int getFrom(int move) {
+    return getSquare(move, 0);
+  }
+
+  public int getTo(int move) {
+    return getSquare(move, getLength(move) - 1);
+  }
+
+  public boolean isCapture(int move) {
+    return getVictim(move, 1) != Bitboards.NO_SQUARE;
+  }
+}
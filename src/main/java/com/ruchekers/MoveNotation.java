@@ -0,0 +1,225 @@
+package com.ruchekers;
+
+import java.util.Arrays;
+
+/**
+ * Single-pass parser of the move notation, reusable between moves so that parsing allocates nothing.
+ * A simple move is two towers joined by '-', e.g. {@code c3_w-d4_w}; a capture is two or more towers
+ * joined by ':', e.g. {@code b4_w:d6_wb:f8_Wbb}. A tower is a letter a-h (either case), a digit 1-8,
+ * '_' and its pieces from top to bottom, one of "wbWB" each. The pieces are kept as {@link TowerBits},
+ * but a move is defined by its cells. Positions, whitespace separated towers, are parsed the same way.
+ */
+public final class MoveNotation {
+  private static final int INITIAL_CAPACITY = 16;
+  private static final char NO_SEPARATOR = 0;
+
+  private int[] letters = new int[INITIAL_CAPACITY];
+  private int[] digits = new int[INITIAL_CAPACITY];
+  private long[] towers = new long[INITIAL_CAPACITY];
+  private int length;
+  private boolean capture;
+  private int errorPosition = -1;
+  private String error;
+
+  /**
+   * Parses the whole text, surrounding whitespace aside.
+   *
+   * @param text move notation
+   * @return true if the text is a valid move, otherwise see {@link #getErrorPosition()}
+   */
+  public boolean parse(CharSequence text) {
+    return parse(text, 0, text.length());
+  }
+
+  /**
+   * Parses a part of the text, surrounding whitespace aside.
+   *
+   * @param text  text holding the move
+   * @param start index of the first character
+   * @param end   index after the last character
+   * @return true if the part is a valid move, otherwise see {@link #getErrorPosition()}
+   */
+  public boolean parse(CharSequence text, int start, int end) {
+    reset();
+    int pos = start;
+    while (pos < end && Character.isWhitespace(text.charAt(pos))) {
+      ++pos;
+    }
+    while (end > pos && Character.isWhitespace(text.charAt(end - 1))) {
+      --end;
+    }
+    char separator = NO_SEPARATOR;
+    while (true) {
+      pos = parseTower(text, pos, end);
+      if (pos < 0) {
+        return false;
+      }
+      if (pos == end) {
+        break;
+      }
+      char next = text.charAt(pos);
+      if (next != '-' && next != ':') {
+        return fail(pos, "expected '-' or ':'");
+      }
+      if (separator != NO_SEPARATOR && (next != separator || separator == '-')) {
+        return fail(pos, next == separator ? "a simple move has two cells" : "mixed '-' and ':'");
+      }
+      separator = next;
+      ++pos;
+    }
+    if (length < 2) {
+      return fail(end, "expected '-' or ':'");
+    }
+    capture = separator == ':';
+    return true;
+  }
+
+  /**
+   * Parses a position line: towers separated by whitespace, possibly none.
+   * The towers are then available as the cells of a simple move.
+   *
+   * @param text  text holding the towers
+   * @param start index of the first character
+   * @param end   index after the last character
+   * @return true if the part is a valid list of towers, otherwise see {@link #getErrorPosition()}
+   */
+  public boolean parseTowers(CharSequence text, int start, int end) {
+    reset();
+    int pos = start;
+    while (true) {
+      while (pos < end && Character.isWhitespace(text.charAt(pos))) {
+        ++pos;
+      }
+      if (pos == end) {
+        return true;
+      }
+      pos = parseTower(text, pos, end);
+      if (pos < 0) {
+        return false;
+      }
+      if (pos < end && !Character.isWhitespace(text.charAt(pos))) {
+        return fail(pos, "expected a space");
+      }
+    }
+  }
+
+  private void reset() {
+    length = 0;
+    capture = false;
+    errorPosition = -1;
+    error = null;
+  }
+
+  private int parseTower(CharSequence text, int pos, int end) {
+    if (pos == end) {
+      fail(pos, "expected a cell");
+      return -1;
+    }
+    int letter = (text.charAt(pos) | ' ') - 'a' + 1;
+    if (letter < 1 || letter > Bitboards.SIZE) {
+      fail(pos, "expected a letter a-h");
+      return -1;
+    }
+    ++pos;
+    int digit = pos < end ? text.charAt(pos) - '0' : 0;
+    if (digit < 1 || digit > Bitboards.SIZE) {
+      fail(pos, "expected a digit 1-8");
+      return -1;
+    }
+    ++pos;
+    if (pos == end || text.charAt(pos) != '_') {
+      fail(pos, "expected '_'");
+      return -1;
+    }
+    ++pos;
+    long tower = TowerBits.EMPTY;
+    int code;
+    while (pos < end && (code = TowerBits.codeOf(text.charAt(pos))) != -1) {
+      if (TowerBits.height(tower) == TowerBits.MAX_HEIGHT) {
+        fail(pos, "tower is full");
+        return -1;
+      }
+      tower = TowerBits.pushBottom(tower, code);
+      ++pos;
+    }
+    if (tower == TowerBits.EMPTY) {
+      fail(pos, "expected a piece");
+      return -1;
+    }
+    add(letter, digit, tower);
+    return pos;
+  }
+
+  private void add(int letter, int digit, long tower) {
+    if (length == letters.length) {
+      letters = Arrays.copyOf(letters, length * 2);
+      digits = Arrays.copyOf(digits, length * 2);
+      towers = Arrays.copyOf(towers, length * 2);
+    }
+    letters[length] = letter;
+    digits[length] = digit;
+    towers[length] = tower;
+    ++length;
+  }
+
+  /**
+   * Sets the move to the given cells as if it had been parsed, with empty towers.
+   *
+   * @param squares   cells of the move, see {@link Bitboards}
+   * @param count     number of cells
+   * @param isCapture whether the move is a capture
+   */
+  void setMove(int[] squares, int count, boolean isCapture) {
+    reset();
+    for (int k = 0; k < count; ++k) {
+      add(Bitboards.letterOf(squares[k]), Bitboards.digitOf(squares[k]), TowerBits.EMPTY);
+    }
+    capture = isCapture;
+  }
+
+  private boolean fail(int position, String message) {
+    errorPosition = position;
+    error = message;
+    return false;
+  }
+
+  /**
+   * Returns the number of cells of the parsed move, including the start one.
+   */
+  public int getLength() {
+    return length;
+  }
+
+  public int getLetter(int index) {
+    return letters[index];
+  }
+
+  public int getDigit(int index) {
+    return digits[index];
+  }
+
+  /**
+   * Returns the tower written for the given cell, see {@link TowerBits}.
+   */
+  public long getTower(int index) {
+    return towers[index];
+  }
+
+  public boolean isCapture() {
+    return capture;
+  }
+
+  /**
+   * Returns the index in the parsed text where the last parse failed, or -1 after a success.
+   */
+  public int getErrorPosition() {
+    return errorPosition;
+  }
+
+  /**
+   * Returns what was expected at {@link #getErrorPosition()}, or null after a success.
+   */
+  public String getError() {
+    return error;
+  }
+}
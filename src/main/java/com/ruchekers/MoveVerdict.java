@@ -0,0 +1,53 @@
+package com.ruchekers;
+
+import com.ruchekers.exceptions.AnyErrorException;
+import com.ruchekers.exceptions.BusyCellException;
+import com.ruchekers.exceptions.InvalidMoveException;
+import com.ruchekers.exceptions.WhiteCellException;
+
+/**
+ * Outcome of checking a move, returned instead of thrown so that rejecting a move costs no more than accepting
+ * it. Each rejection matches one of the exceptions of {@link GameBoard#moveTower(int, int, int, int)}.
+ */
+public enum MoveVerdict {
+  LEGAL(""),
+  BUSY_CELL("busy cell"),
+  WHITE_CELL("white cell"),
+  INVALID_MOVE("invalid move"),
+  ERROR("error");
+
+  private final String message;
+
+  MoveVerdict(String message) {
+    this.message = message;
+  }
+
+  /**
+   * Returns the message printed for the rejection, the same as {@link Main#errorKind(Exception)} of its exception.
+   */
+  public String getMessage() {
+    return message;
+  }
+
+  public boolean isLegal() {
+    return this == LEGAL;
+  }
+
+  /**
+   * Throws the exception of a rejection, does nothing for {@link #LEGAL}.
+   */
+  void raise() throws BusyCellException, WhiteCellException, InvalidMoveException, AnyErrorException {
+    switch (this) {
+      case BUSY_CELL:
+        throw new BusyCellException(message);
+      case WHITE_CELL:
+        throw new WhiteCellException(message);
+      case INVALID_MOVE:
+        throw new InvalidMoveException(message);
+      case ERROR:
+        throw new AnyErrorException(message);
+      default:
+        break;
+    }
+  }
+}
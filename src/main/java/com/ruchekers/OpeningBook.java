@@ -0,0 +1,196 @@
+package com.ruchekers;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Opening book written by {@link OpeningBookBuilder}: for every position hash, the moves played there with the
+ * number of games and the points scored by the side to move, 2 for a win and 1 for a draw.
+ * The file starts with a header of {@link #HEADER_BYTES}: the magic number, the format version as ints and
+ * the number of entries as a long. The entries follow, {@link #ENTRY_BYTES} each and sorted by hash then move:
+ * the hash and the move as longs, the games and the points as ints. All numbers are big-endian.
+ * The file is memory-mapped and searched in place, so a lookup allocates nothing but the move it returns.
+ * A move is kept as its squares, up to {@link #MAX_MOVE_LENGTH}, {@link #SQUARE_BITS} each from the low bits,
+ * with the number of squares in the top bits.
+ */
+public final class OpeningBook implements AutoCloseable {
+  static final int MAGIC = 0x5243424F;
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES;
+  static final int ENTRY_BYTES = 2 * Long.BYTES + 2 * Integer.BYTES;
+  static final int MAX_MOVE_LENGTH = 10;
+  static final int SQUARE_BITS = 6;
+
+  private static final int LENGTH_SHIFT = MAX_MOVE_LENGTH * SQUARE_BITS;
+  private static final int SQUARE_MASK = (1 << SQUARE_BITS) - 1;
+  private static final int MOVE_OFFSET = Long.BYTES;
+  private static final int GAMES_OFFSET = 2 * Long.BYTES;
+  private static final int POINTS_OFFSET = GAMES_OFFSET + Integer.BYTES;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer entries;
+  private final int size;
+
+  /**
+   * Opens a book.
+   *
+   * @param path file to read
+   * @throws IOException if the file cannot be read or is not a book
+   */
+  public OpeningBook(Path path) throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (channel.size() < HEADER_BYTES || file.getInt(0) != MAGIC) {
+        throw new IOException(path + " is not an opening book");
+      }
+      if (file.getInt(Integer.BYTES) != VERSION) {
+        throw new IOException(path + " has an unsupported book version");
+      }
+      long count = file.getLong(2 * Integer.BYTES);
+      if (count > (Integer.MAX_VALUE - HEADER_BYTES) / ENTRY_BYTES
+              || HEADER_BYTES + count * ENTRY_BYTES != channel.size()) {
+        throw new IOException(path + " is truncated");
+      }
+      entries = file;
+      size = (int) count;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the number of entries, one per position and move.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the first entry of the position with the given hash, or -1 if the book does not know it.
+   */
+  int find(long hash) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (getHash(middle) < hash) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low < size && getHash(low) == hash ? low : -1;
+  }
+
+  long getHash(int entry) {
+    return entries.getLong(HEADER_BYTES + entry * ENTRY_BYTES);
+  }
+
+  long getMove(int entry) {
+    return entries.getLong(HEADER_BYTES + entry * ENTRY_BYTES + MOVE_OFFSET);
+  }
+
+  int getGames(int entry) {
+    return entries.getInt(HEADER_BYTES + entry * ENTRY_BYTES + GAMES_OFFSET);
+  }
+
+  int getPoints(int entry) {
+    return entries.getInt(HEADER_BYTES + entry * ENTRY_BYTES + POINTS_OFFSET);
+  }
+
+  /**
+   * Picks a move of the position at random, each with the probability of being played in the games.
+   *
+   * @param board  position to look up
+   * @param random source of randomness
+   * @return the squares of the move as in {@link MoveList#getSquare(int, int)},
+   *     or an empty array if the book does not know the position
+   */
+  public int[] select(GameBoard board, Random random) {
+    long hash = board.getHash();
+    int first = find(hash);
+    if (first < 0) {
+      return new int[0];
+    }
+    long total = 0;
+    for (int entry = first; entry < size && getHash(entry) == hash; ++entry) {
+      total += getGames(entry);
+    }
+    long pick = (long) (random.nextDouble() * total);
+    int entry = first;
+    while (pick >= getGames(entry)) {
+      pick -= getGames(entry);
+      ++entry;
+    }
+    return unpack(getMove(entry));
+  }
+
+  /**
+   * Picks the move of the position with the best score, counting one more drawn game for every move
+   * so that a move won once does not outrank one won most of the time in many games.
+   *
+   * @param board position to look up
+   * @return the squares of the move as in {@link MoveList#getSquare(int, int)},
+   *     or an empty array if the book does not know the position
+   */
+  public int[] best(GameBoard board) {
+    long hash = board.getHash();
+    int first = find(hash);
+    if (first < 0) {
+      return new int[0];
+    }
+    int best = first;
+    for (int entry = first + 1; entry < size && getHash(entry) == hash; ++entry) {
+      long score = (long) (getPoints(entry) + 1) * (getGames(best) + 1);
+      long bestScore = (long) (getPoints(best) + 1) * (getGames(entry) + 1);
+      if (score > bestScore || score == bestScore && getGames(entry) > getGames(best)) {
+        best = entry;
+      }
+    }
+    return unpack(getMove(best));
+  }
+
+  /**
+   * Packs the squares of a move, which must have at most {@link #MAX_MOVE_LENGTH} of them.
+   */
+  static long pack(int[] squares, int length) {
+    long move = (long) length << LENGTH_SHIFT;
+    for (int k = 0; k < length; ++k) {
+      move |= (long) squares[k] << (k * SQUARE_BITS);
+    }
+    return move;
+  }
+
+  static int[] unpack(long move) {
+    int[] squares = new int[moveLength(move)];
+    for (int k = 0; k < squares.length; ++k) {
+      squares[k] = moveSquare(move, k);
+    }
+    return squares;
+  }
+
+  /**
+   * Returns the number of squares of a packed move.
+   */
+  static int moveLength(long move) {
+    return (int) (move >>> LENGTH_SHIFT);
+  }
+
+  /**
+   * Returns a square of a packed move, the index being below {@link #moveLength(long)}.
+   */
+  static int moveSquare(long move, int index) {
+    return (int) (move >>> (index * SQUARE_BITS)) & SQUARE_MASK;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
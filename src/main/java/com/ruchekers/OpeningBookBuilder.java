@@ -0,0 +1,181 @@
+package com.ruchekers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds an {@link OpeningBook} from archived games. Every game is replayed with
+ * {@link Main#tryMove(GameBoard, CharSequence, int, int)} and each of its first moves is counted for the position
+ * it was played in, scored from the result of the game: the side left without a legal move at the end has lost,
+ * a game ending otherwise counts as a draw. Games with an illegal move are skipped.
+ * Usage: {@code OpeningBookBuilder archive book [--plies count]}.
+ */
+public final class OpeningBookBuilder {
+  static final int DEFAULT_PLIES = 16;
+
+  private static final int WIN_POINTS = 2;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final int plies;
+  private final GameBoard board = new GameBoard();
+  private final MoveGenerator generator = new MoveGenerator();
+  private final MoveList moves = new MoveList();
+  private final Map<Entry, Entry> entries = new HashMap<>();
+  private final long[] hashes;
+  private final long[] bookMoves;
+  private final Color[] movers;
+  private final int[] squares = new int[OpeningBook.MAX_MOVE_LENGTH];
+  private long games;
+  private long rejected;
+
+  /**
+   * Creates a builder counting the given number of half-moves of every game.
+   */
+  public OpeningBookBuilder(int plies) {
+    if (plies < 1) {
+      throw new IllegalArgumentException("plies must be positive");
+    }
+    this.plies = plies;
+    hashes = new long[plies];
+    bookMoves = new long[plies];
+    movers = new Color[plies];
+  }
+
+  /**
+   * Replays a game and counts its first moves.
+   *
+   * @param game game to add
+   * @return false if the game has an illegal move and was skipped
+   */
+  public boolean add(ArchivedGame game) {
+    game.setUp(board);
+    int counted = 0;
+    for (int move = 0; move < game.getHalfMoves(); ++move) {
+      int length = game.getMoveLength(move);
+      if (move < plies && length <= OpeningBook.MAX_MOVE_LENGTH) {
+        for (int k = 0; k < length; ++k) {
+          squares[k] = game.getSquare(move, k);
+        }
+        hashes[counted] = board.getHash();
+        bookMoves[counted] = OpeningBook.pack(squares, length);
+        movers[counted] = board.getSideToMove();
+        ++counted;
+      }
+      String text = game.getMoveText(move);
+      if (!Main.tryMove(board, text, 0, text.length()).isLegal()) {
+        ++rejected;
+        return false;
+      }
+    }
+    ++games;
+    Color loser = generator.generate(board, board.getSideToMove(), moves) == 0 ? board.getSideToMove() : null;
+    for (int k = 0; k < counted; ++k) {
+      Entry key = new Entry(hashes[k], bookMoves[k]);
+      Entry entry = entries.computeIfAbsent(key, e -> e);
+      ++entry.games;
+      if (loser == null) {
+        entry.points += 1;
+      } else if (movers[k] != loser) {
+        entry.points += WIN_POINTS;
+      }
+    }
+    return true;
+  }
+
+  public long getGames() {
+    return games;
+  }
+
+  public long getRejected() {
+    return rejected;
+  }
+
+  /**
+   * Returns the number of distinct positions and moves counted so far.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Writes the book, replacing an existing file.
+   *
+   * @param path file to write
+   * @throws IOException if the file cannot be written
+   */
+  public void write(Path path) throws IOException {
+    List<Entry> sorted = new ArrayList<>(entries.keySet());
+    sorted.sort(Comparator.comparingLong((Entry e) -> e.hash).thenComparingLong(e -> e.move));
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+      buffer.putInt(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putLong(sorted.size());
+      for (Entry entry : sorted) {
+        if (buffer.remaining() < OpeningBook.ENTRY_BYTES) {
+          flush(channel, buffer);
+        }
+        buffer.putLong(entry.hash).putLong(entry.move).putInt(entry.games).putInt(entry.points);
+      }
+      flush(channel, buffer);
+    }
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2 && !(args.length == 4 && "--plies".equals(args[2]))) {
+      System.out.println("usage: OpeningBookBuilder archive book [--plies count]");
+      return;
+    }
+    int plies = args.length == 4 ? Integer.parseInt(args[3]) : DEFAULT_PLIES;
+    OpeningBookBuilder builder = new OpeningBookBuilder(plies);
+    try (GameArchiveReader reader = new GameArchiveReader(Paths.get(args[0]))) {
+      for (long game = 0; game < reader.getGames(); ++game) {
+        builder.add(reader.read(game));
+      }
+    }
+    builder.write(Paths.get(args[1]));
+    System.err.println(builder.getGames() + " games, " + builder.getRejected() + " rejected, "
+            + builder.size() + " entries");
+  }
+
+  /**
+   * A position and a move, with the games where the move was played there.
+   */
+  private static final class Entry {
+    private final long hash;
+    private final long move;
+    private int games;
+    private int points;
+
+    Entry(long hash, long move) {
+      this.hash = hash;
+      this.move = move;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Entry && ((Entry) other).hash == hash && ((Entry) other).move == move;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(hash ^ Long.rotateLeft(move, Integer.SIZE));
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package com.ruchekers;
+
+import java.io.PrintStream;
+import java.util.Scanner;
+
+/**
+ * Counts the leaf nodes of the move tree to a fixed depth, the standard check of a move generator.
+ * Moves of the last ply are counted without being played, and subtree counts can be cached by
+ * position hash, which pays off on positions where towers and kings lead to many transpositions.
+ * Usage: {@code Perft depth [--divide] [--black] [--cache megabytes]} with the position read from
+ * stdin in the {@link Main} format: the white towers on the first line, the black ones on the second.
+ */
+public final class Perft {
+  private static final int MAX_DEPTH = 64;
+  private static final int BYTES_PER_ENTRY = 2 * Long.BYTES;
+  private static final int BYTES_PER_MEGABYTE = 1024 * 1024;
+  private static final int DEPTH_BITS = 6;
+  private static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final MoveGenerator generator = new MoveGenerator();
+  private final MoveList[] lists = new MoveList[MAX_DEPTH + 1];
+  private final long[] cacheKeys;
+  private final long[] cacheCounts;
+  private final int cacheMask;
+
+  /**
+   * Creates a counter.
+   *
+   * @param cacheMegabytes size of the subtree cache, 0 to count without it
+   */
+  public Perft(int cacheMegabytes) {
+    for (int depth = 0; depth < lists.length; ++depth) {
+      lists[depth] = new MoveList();
+    }
+    int entries = cacheMegabytes <= 0 ? 0
+            : (int) Long.highestOneBit((long) cacheMegabytes * BYTES_PER_MEGABYTE / BYTES_PER_ENTRY);
+    cacheKeys = new long[entries];
+    cacheCounts = new long[entries];
+    cacheMask = entries - 1;
+  }
+
+  /**
+   * Counts the move paths of the given length from the position, for the side to move.
+   *
+   * @param board position to start from, restored before returning
+   * @param depth number of plies
+   * @return number of leaf nodes
+   */
+  public long count(GameBoard board, int depth) {
+    if (depth < 0 || depth > MAX_DEPTH) {
+      throw new IllegalArgumentException("depth must be between 0 and " + MAX_DEPTH);
+    }
+    if (depth == 0) {
+      return 1;
+    }
+    MoveList moves = lists[depth];
+    int size = generator.generate(board, board.getSideToMove(), moves);
+    if (depth == 1) {
+      return size;
+    }
+    long key = 0;
+    int slot = 0;
+    if (cacheKeys.length != 0) {
+      key = board.getHash() & ~DEPTH_MASK | depth;
+      slot = (int) Zobrist.mix(key) & cacheMask;
+      if (cacheKeys[slot] == key) {
+        return cacheCounts[slot];
+      }
+    }
+    long nodes = 0;
+    for (int move = 0; move < size; ++move) {
+      board.makeMove(moves, move);
+      nodes += count(board, depth - 1);
+      board.unmakeMove();
+    }
+    if (cacheKeys.length != 0) {
+      cacheKeys[slot] = key;
+      cacheCounts[slot] = nodes;
+    }
+    return nodes;
+  }
+
+  /**
+   * Prints the leaf count below every move of the position and returns their sum.
+   *
+   * @param board position to start from, restored before returning
+   * @param depth number of plies, at least 1
+   * @param out   where to print the counts
+   * @return number of leaf nodes
+   */
+  public long divide(GameBoard board, int depth, PrintStream out) {
+    MoveList moves = new MoveList();
+    int size = generator.generate(board, board.getSideToMove(), moves);
+    long total = 0;
+    for (int move = 0; move < size; ++move) {
+      board.makeMove(moves, move);
+      long nodes = count(board, depth - 1);
+      board.unmakeMove();
+      out.println(pathString(moves, move) + " " + nodes);
+      total += nodes;
+    }
+    return total;
+  }
+
+  /**
+   * Formats a move as its squares joined by '-' for a simple move or ':' for a capture, e.g. "c3:e5:c7".
+   */
+  static String pathString(MoveList moves, int move) {
+    StringBuilder path = new StringBuilder();
+    char separator = moves.isCapture(move) ? ':' : '-';
+    for (int k = 0; k < moves.getLength(move); ++k) {
+      if (k > 0) {
+        path.append(separator);
+      }
+      int square = moves.getSquare(move, k);
+      path.append((char) ('a' + Bitboards.letterOf(square) - 1)).append(Bitboards.digitOf(square));
+    }
+    return path.toString();
+  }
+
+  public static void main(String[] args) {
+    if (args.length == 0) {
+      System.out.println("usage: Perft depth [--divide] [--black] [--cache megabytes]");
+      return;
+    }
+    int depth = Integer.parseInt(args[0]);
+    boolean divide = false;
+    Color side = Color.WHITE;
+    int cacheMegabytes = 0;
+    for (int k = 1; k < args.length; ++k) {
+      if ("--divide".equals(args[k])) {
+        divide = true;
+      } else if ("--black".equals(args[k])) {
+        side = Color.BLACK;
+      } else if ("--cache".equals(args[k]) && k + 1 < args.length) {
+        cacheMegabytes = Integer.parseInt(args[++k]);
+      }
+    }
+    GameBoard board = new GameBoard();
+    try (Scanner in = new Scanner(System.in)) {
+      Main.fillBoard(board, in.nextLine());
+      Main.fillBoard(board, in.hasNextLine() ? in.nextLine() : "");
+    }
+    board.setSideToMove(side);
+    Perft perft = new Perft(cacheMegabytes);
+    long start = System.nanoTime();
+    long nodes = divide ? perft.divide(board, depth, System.out) : perft.count(board, depth);
+    double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+    System.out.printf("nodes %d time %.3f s (%.0f nodes/s)%n", nodes, seconds, nodes / seconds);
+  }
+}
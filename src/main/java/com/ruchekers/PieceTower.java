@@ -1,55 +1,115 @@
 package com.ruchekers;
 
 import java.util.LinkedList;
+import java.util.NoSuchElementException;
 
 /**
  * The main figure on the game board.
+ * The pieces are kept in a single {@code long}, see {@link TowerBits} for the layout.
  */
 class PieceTower {
-  private final LinkedList<Piece> tower;
+  private long bits;
   private int lastBeatLetterOrder;
   private int lastBeatDigitOrder;
 
   PieceTower() {
-    tower = new LinkedList<>();
+    bits = TowerBits.EMPTY;
     lastBeatDigitOrder = 0;
     lastBeatLetterOrder = 0;
   }
 
   PieceTower(LinkedList<Piece> tower, int i, int j) {
-    this.tower = tower;
+    this();
+    for (Piece piece : tower) {
+      pushPiece(piece);
+    }
     this.lastBeatLetterOrder = i;
     this.lastBeatDigitOrder = j;
   }
 
+  PieceTower(long bits) {
+    this.bits = bits;
+  }
+
+  PieceTower copy() {
+    PieceTower copy = new PieceTower(bits);
+    copy.lastBeatLetterOrder = lastBeatLetterOrder;
+    copy.lastBeatDigitOrder = lastBeatDigitOrder;
+    return copy;
+  }
+
+  public long getBits() {
+    return bits;
+  }
+
+  public void setBits(long bits) {
+    this.bits = bits;
+  }
+
   public void pushPiece(Piece piece) {
-    tower.addLast(piece);
+    pushCode(TowerBits.code(piece.getColor(), piece.isKing()));
   }
 
+  /**
+   * Removes the top piece of the tower.
+   *
+   * @return the removed piece or {@code null} if the tower is empty
+   */
   public Piece popPiece() {
-    return tower.pollFirst();
+    if (isEmpty()) {
+      return null;
+    }
+    int code = popCode();
+    return new Piece(TowerBits.colorOf(code), TowerBits.isKing(code));
+  }
+
+  /**
+   * Puts a piece, given by its {@link TowerBits} code, under the tower.
+   */
+  public void pushCode(int code) {
+    bits = TowerBits.pushBottom(bits, code);
+  }
+
+  /**
+   * Removes the top piece of a non-empty tower.
+   *
+   * @return the {@link TowerBits} code of the removed piece
+   */
+  public int popCode() {
+    int code = TowerBits.top(bits);
+    bits = TowerBits.popTop(bits);
+    return code;
   }
 
   public void makeKing() {
-    tower.getFirst().makeKing();
+    checkNotEmpty();
+    bits = TowerBits.makeKing(bits);
   }
 
   public boolean isKing() {
-    return tower.getFirst().isKing();
+    checkNotEmpty();
+    return TowerBits.isKing(TowerBits.top(bits));
   }
 
   public Color getColor() {
-    return tower.getFirst().getColor();
+    checkNotEmpty();
+    return TowerBits.colorOf(TowerBits.top(bits));
   }
 
   public int size() {
-    return tower.size();
+    return TowerBits.height(bits);
   }
 
   public boolean isEmpty() {
     return size() == 0;
   }
 
+  private void checkNotEmpty() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+  }
+
   public int getLastBeatLetterOrder() {
     return lastBeatLetterOrder;
   }
@@ -77,14 +137,11 @@ class PieceTower {
    * @return a {@code String}: representation of the contents of the tower
    */
   public String getContentString() {
-    StringBuilder contents = new StringBuilder();
-    for (Piece piece : tower) {
-      if (piece.getColor().equals(Color.WHITE)) {
-        contents.append(piece.isKing() ? 'W' : 'w');
-      } else if (piece.getColor().equals(Color.BLACK)) {
-        contents.append(piece.isKing() ? 'B' : 'b');
-      }
+    int height = size();
+    char[] contents = new char[height];
+    for (int depth = 0; depth < height; ++depth) {
+      contents[depth] = TowerBits.charOf(TowerBits.pieceAt(bits, depth));
     }
-    return contents.toString();
+    return new String(contents);
   }
 }
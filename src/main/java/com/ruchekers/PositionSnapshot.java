@@ -0,0 +1,146 @@
+package com.ruchekers;
+
+import java.util.Arrays;
+
+/**
+ * Immutable view of a position: the packed towers, see {@link TowerBits}, the last-beat marks, the side to move
+ * and the hash of a {@link GameBoard} at one point. The towers are kept row by row and {@link #update(GameBoard)}
+ * copies only the rows a move changed, so versions share the rest. A snapshot published through a volatile
+ * field can be read by any number of threads without locking the board it was taken from.
+ */
+public final class PositionSnapshot {
+  /** Estimated heap size of a snapshot sharing no row, on a 64-bit JVM. */
+  static final int BYTES = 736;
+
+  private static final int LETTER_SHIFT = 4;
+  private static final int SQUARE_SHIFT = 8;
+  private static final int ORDER_MASK = (1 << LETTER_SHIFT) - 1;
+
+  private final long[][] rows;
+  /** Towers carrying a last-beat mark: the square, the letter and the digit of the mark, a byte each. */
+  private final int[] lastBeats;
+  private final Color sideToMove;
+  private final long hash;
+  private final long version;
+
+  private PositionSnapshot(long[][] rows, int[] lastBeats, Color sideToMove, long hash, long version) {
+    this.rows = rows;
+    this.lastBeats = lastBeats;
+    this.sideToMove = sideToMove;
+    this.hash = hash;
+    this.version = version;
+  }
+
+  /**
+   * Takes a snapshot of a board, as version 1.
+   */
+  public static PositionSnapshot of(GameBoard board) {
+    return of(board, 1);
+  }
+
+  /**
+   * Takes a snapshot of a board as the given version, e.g. to go on with the versions of a board read back
+   * from disk.
+   */
+  static PositionSnapshot of(GameBoard board, long version) {
+    return build(null, board, version);
+  }
+
+  /**
+   * Takes a snapshot of the board this one was taken from after it changed, sharing the unchanged rows.
+   *
+   * @param board the board, which must not change meanwhile
+   * @return the next version, or this snapshot if the position did not change
+   */
+  public PositionSnapshot update(GameBoard board) {
+    return build(this, board, version + 1);
+  }
+
+  private static PositionSnapshot build(PositionSnapshot previous, GameBoard board, long version) {
+    long hash = board.getHash();
+    long[][] rows = new long[Bitboards.SIZE][];
+    boolean changed = previous == null;
+    for (int j = 0; j < Bitboards.SIZE; ++j) {
+      long[] old = previous == null ? null : previous.rows[j];
+      long[] row = null;
+      for (int i = 0; i < Bitboards.SIZE; ++i) {
+        long tower = board.getTowerBits(Bitboards.square(i + 1, j + 1));
+        if (row == null && (old == null || old[i] != tower)) {
+          row = old == null ? new long[Bitboards.SIZE] : old.clone();
+        }
+        if (row != null) {
+          row[i] = tower;
+        }
+      }
+      rows[j] = row == null ? old : row;
+      changed |= row != null;
+    }
+    int[] lastBeats = new int[Long.bitCount(board.getLastBeaters())];
+    int count = 0;
+    for (long rest = board.getLastBeaters(); rest != 0; rest &= rest - 1) {
+      int square = Long.numberOfTrailingZeros(rest);
+      PieceTower tower = board.getTower(square);
+      lastBeats[count++] = square << SQUARE_SHIFT | tower.getLastBeatLetterOrder() << LETTER_SHIFT
+              | tower.getLastBeatDigitOrder();
+    }
+    if (!changed && previous.sideToMove == board.getSideToMove() && Arrays.equals(previous.lastBeats, lastBeats)) {
+      return previous;
+    }
+    return new PositionSnapshot(rows, lastBeats, board.getSideToMove(), hash, version);
+  }
+
+  /**
+   * Returns the packed tower on a square, see {@link Bitboards} for the numbering.
+   *
+   * @return the tower or {@link TowerBits#EMPTY} for a free square
+   */
+  public long getTowerBits(int square) {
+    return rows[Bitboards.digitOf(square) - 1][Bitboards.letterOf(square) - 1];
+  }
+
+  public Color getSideToMove() {
+    return sideToMove;
+  }
+
+  /**
+   * Returns the hash of the position, see {@link GameBoard#getHash()}.
+   */
+  public long getHash() {
+    return hash;
+  }
+
+  /**
+   * Returns the number of the version, counting from 1 and growing by one with every change.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Returns whether a later version still holds the same row of towers as this one, counting from 0.
+   */
+  boolean sharesRow(PositionSnapshot other, int row) {
+    return rows[row] == other.rows[row];
+  }
+
+  /**
+   * Builds a board holding the position, e.g. to analyse it.
+   */
+  public GameBoard toBoard() {
+    GameBoard board = new GameBoard();
+    for (int square = 0; square < Bitboards.SQUARES; ++square) {
+      long tower = getTowerBits(square);
+      if (tower != TowerBits.EMPTY) {
+        board.setTower(Bitboards.letterOf(square), Bitboards.digitOf(square), new PieceTower(tower));
+      }
+    }
+    for (int mark : lastBeats) {
+      int square = mark >>> SQUARE_SHIFT;
+      PieceTower tower = board.getTower(Bitboards.letterOf(square), Bitboards.digitOf(square));
+      tower.setLastBeatLetterOrder(mark >>> LETTER_SHIFT & ORDER_MASK);
+      tower.setLastBeatDigitOrder(mark & ORDER_MASK);
+    }
+    board.setSideToMove(sideToMove);
+    return board;
+  }
+}
@@ -0,0 +1,211 @@
+package com.ruchekers;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the rules core: moves played in games through {@link Main#processMove(GameBoard, String)},
+ * {@link Main#tryMove(GameBoard, CharSequence, int, int)}, {@link GameState#play(MoveList, int)} and the server,
+ * their captures, promotions, capture chain lengths and the height of the moved towers, the rejections of the
+ * text path by kind and its latency. Moves that searches play on their own boards are not counted. Counters are
+ * striped {@link LongAdder}s, so threads do not contend on them. The text path also emits a {@link MoveEvent} to
+ * Java Flight Recorder.
+ * Everything is off unless the JVM is started with {@code -Druchekers.metrics=true}: the switch is a
+ * constant, so the JIT drops the disabled instrumentation from the hot path.
+ */
+public final class RulesMetrics {
+  /** Whether the rules core counts what it does, read once at startup. */
+  public static final boolean ENABLED = Boolean.getBoolean("ruchekers.metrics");
+
+  /** Largest capture chain counted on its own, longer ones share the last bucket. */
+  static final int MAX_CHAIN = 16;
+  /** Number of latency buckets: bucket k counts moves of less than 2^k nanoseconds, the last one the rest. */
+  static final int LATENCY_BUCKETS = 32;
+
+  private static final LongAdder MOVES = new LongAdder();
+  private static final LongAdder CAPTURES = new LongAdder();
+  private static final LongAdder PROMOTIONS = new LongAdder();
+  private static final LongAdder[] REJECTIONS = adders(MoveVerdict.values().length);
+  private static final LongAdder[] CHAINS = adders(MAX_CHAIN + 1);
+  private static final LongAdder[] HEIGHTS = adders(TowerBits.MAX_HEIGHT + 1);
+  private static final LongAdder[] LATENCIES = adders(LATENCY_BUCKETS);
+
+  private RulesMetrics() {
+
+  }
+
+  private static LongAdder[] adders(int count) {
+    LongAdder[] adders = new LongAdder[count];
+    for (int k = 0; k < count; ++k) {
+      adders[k] = new LongAdder();
+    }
+    return adders;
+  }
+
+  /**
+   * Counts a played move. Callers check {@link #ENABLED} first.
+   *
+   * @param captures number of towers beaten, 0 for a simple move
+   * @param promoted whether the moving tower became a king
+   * @param height   height of the moving tower after the move
+   */
+  static void recordMove(int captures, boolean promoted, int height) {
+    MOVES.increment();
+    if (captures > 0) {
+      CAPTURES.add(captures);
+      CHAINS[Math.min(captures, MAX_CHAIN)].increment();
+    }
+    if (promoted) {
+      PROMOTIONS.increment();
+    }
+    HEIGHTS[Math.min(height, TowerBits.MAX_HEIGHT)].increment();
+  }
+
+  /**
+   * Counts a move of a game played by {@link GameBoard#makeMove(MoveList, int)}. Callers check {@link #ENABLED}
+   * first.
+   *
+   * @param wasKing whether the moving tower was a king before the move
+   */
+  static void recordMove(GameBoard board, MoveList moves, int move, boolean wasKing) {
+    int last = moves.getLength(move) - 1;
+    PieceTower moved = board.getTower(moves.getSquare(move, last));
+    recordMove(moves.isCapture(move) ? last : 0, moved.isKing() && !wasKing, moved.size());
+  }
+
+  /**
+   * Counts a move rejected by the text path. Callers check {@link #ENABLED} first.
+   */
+  static void recordRejection(MoveVerdict verdict) {
+    REJECTIONS[verdict.ordinal()].increment();
+  }
+
+  /**
+   * Counts the time taken by a move of the text path, legal or not. Callers check {@link #ENABLED} first.
+   */
+  static void recordLatency(long nanos) {
+    int bucket = Long.SIZE - Long.numberOfLeadingZeros(Math.max(nanos, 0));
+    LATENCIES[Math.min(bucket, LATENCY_BUCKETS - 1)].increment();
+  }
+
+  /**
+   * Returns the current counters. Counts taken while moves are played may be off by the moves in progress.
+   */
+  public static Snapshot snapshot() {
+    return new Snapshot();
+  }
+
+  /**
+   * Sets every counter back to zero.
+   */
+  public static void reset() {
+    MOVES.reset();
+    CAPTURES.reset();
+    PROMOTIONS.reset();
+    for (LongAdder[] adders : new LongAdder[][] {REJECTIONS, CHAINS, HEIGHTS, LATENCIES}) {
+      for (LongAdder adder : adders) {
+        adder.reset();
+      }
+    }
+  }
+
+  private static long[] sums(LongAdder[] adders) {
+    long[] sums = new long[adders.length];
+    for (int k = 0; k < adders.length; ++k) {
+      sums[k] = adders[k].sum();
+    }
+    return sums;
+  }
+
+  /**
+   * Counters at one point in time.
+   */
+  public static final class Snapshot {
+    private final long moves = MOVES.sum();
+    private final long captures = CAPTURES.sum();
+    private final long promotions = PROMOTIONS.sum();
+    private final long[] rejections = sums(REJECTIONS);
+    private final long[] chains = sums(CHAINS);
+    private final long[] heights = sums(HEIGHTS);
+    private final long[] latencies = sums(LATENCIES);
+
+    private Snapshot() {
+
+    }
+
+    public long getMoves() {
+      return moves;
+    }
+
+    /**
+     * Returns the number of towers beaten.
+     */
+    public long getCaptures() {
+      return captures;
+    }
+
+    public long getPromotions() {
+      return promotions;
+    }
+
+    public long getRejections(MoveVerdict verdict) {
+      return rejections[verdict.ordinal()];
+    }
+
+    /**
+     * Returns the number of captures beating the given number of towers, up to {@link #MAX_CHAIN}.
+     */
+    public long getChains(int length) {
+      return chains[Math.min(length, MAX_CHAIN)];
+    }
+
+    /**
+     * Returns the number of moves leaving the moving tower with the given height.
+     */
+    public long getHeights(int height) {
+      return heights[height];
+    }
+
+    /**
+     * Returns the number of moves of the text path taking less than 2^bucket nanoseconds and at least half that.
+     */
+    public long getLatencies(int bucket) {
+      return latencies[bucket];
+    }
+
+    /**
+     * Writes the counters one per line as a name and a value, leaving out the empty histogram buckets.
+     */
+    @Override
+    public String toString() {
+      StringBuilder text = new StringBuilder();
+      text.append("moves ").append(moves).append("\ncaptures ").append(captures)
+              .append("\npromotions ").append(promotions).append('\n');
+      for (MoveVerdict verdict : MoveVerdict.values()) {
+        if (verdict != MoveVerdict.LEGAL) {
+          text.append("rejections.").append(verdict.name().toLowerCase(Locale.ROOT)).append(' ')
+                  .append(rejections[verdict.ordinal()]).append('\n');
+        }
+      }
+      appendHistogram(text, "chain.", chains);
+      appendHistogram(text, "height.", heights);
+      for (int k = 0; k < latencies.length - 1; ++k) {
+        if (latencies[k] != 0) {
+          text.append("latency.lt").append(1L << k).append("ns ").append(latencies[k]).append('\n');
+        }
+      }
+      if (latencies[latencies.length - 1] != 0) {
+        text.append("latency.more ").append(latencies[latencies.length - 1]).append('\n');
+      }
+      return text.toString();
+    }
+
+    private static void appendHistogram(StringBuilder text, String name, long[] buckets) {
+      for (int k = 0; k < buckets.length; ++k) {
+        if (buckets[k] != 0) {
+          text.append(name).append(k).append(' ').append(buckets[k]).append('\n');
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package com.ruchekers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Endgame tablebase written by {@link TablebaseGenerator}: the exact result of every position up to a number of
+ * pieces. Pieces are never removed from the board, so every position of a game belongs to the table of its
+ * starting number of pieces. Each table is a file {@code towers-<pieces>.rtb} holding one value per position
+ * and side to move, deflated in blocks of {@link #BLOCK_VALUES}; the files are memory-mapped and a probe
+ * inflates one block, kept per thread for the next probe.
+ * A value is 0 for a draw, otherwise the number of plies to the end of the game plus one:
+ * an odd number of plies is a win for the side to move, an even one a loss, see {@link #isWin(int)}.
+ */
+public final class Tablebase implements AutoCloseable {
+  public static final int NOT_FOUND = -1;
+  public static final int DRAW = 0;
+
+  static final int MAGIC = 0x52435442;
+  static final int VERSION = 1;
+  static final int BLOCK_VALUES = 4096;
+  static final int HEADER_BYTES = 4 * Integer.BYTES + 2 * Long.BYTES;
+
+  private static final int BYTE_MASK = 0xFF;
+
+  private final List<FileChannel> channels = new ArrayList<>();
+  private final TablebaseIndex[] indexes;
+  private final MappedByteBuffer[] files;
+  private final ThreadLocal<BlockCache> caches = ThreadLocal.withInitial(BlockCache::new);
+
+  private Tablebase(int maxPieces) {
+    indexes = new TablebaseIndex[maxPieces + 1];
+    files = new MappedByteBuffer[maxPieces + 1];
+  }
+
+  /**
+   * Opens the tables of a directory, from one piece up to the first missing table.
+   *
+   * @param directory directory holding the table files
+   * @return the tablebase, possibly without any table
+   * @throws IOException if a table cannot be read
+   */
+  public static Tablebase open(Path directory) throws IOException {
+    int maxPieces = 0;
+    while (maxPieces < TablebaseIndex.MAX_PIECES && Files.exists(fileOf(directory, maxPieces + 1))) {
+      ++maxPieces;
+    }
+    Tablebase tablebase = new Tablebase(maxPieces);
+    try {
+      for (int pieces = 1; pieces <= maxPieces; ++pieces) {
+        tablebase.map(fileOf(directory, pieces), pieces);
+      }
+    } catch (IOException | RuntimeException e) {
+      tablebase.close();
+      throw e;
+    }
+    return tablebase;
+  }
+
+  static Path fileOf(Path directory, int pieces) {
+    return directory.resolve("towers-" + pieces + ".rtb");
+  }
+
+  private void map(Path path, int pieces) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    channels.add(channel);
+    MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    TablebaseIndex index = new TablebaseIndex(pieces);
+    if (file.getInt(0) != MAGIC || file.getInt(Integer.BYTES) != VERSION
+            || file.getInt(2 * Integer.BYTES) != pieces || file.getInt(3 * Integer.BYTES) != BLOCK_VALUES
+            || file.getLong(4 * Integer.BYTES) != 2 * index.size()) {
+      throw new IOException(path + " is not a " + pieces + "-piece table");
+    }
+    indexes[pieces] = index;
+    files[pieces] = file;
+  }
+
+  /**
+   * Returns the largest number of pieces covered, 0 if there is no table.
+   */
+  public int getMaxPieces() {
+    return indexes.length - 1;
+  }
+
+  /**
+   * Looks the position up, for the side to move of the board.
+   *
+   * @param board position to look up
+   * @return the value of the position or {@link #NOT_FOUND} if it has too many pieces
+   */
+  public int probe(GameBoard board) {
+    int pieces = TablebaseIndex.countPieces(board);
+    if (pieces == 0 || pieces >= indexes.length) {
+      return NOT_FOUND;
+    }
+    TablebaseIndex index = indexes[pieces];
+    long position = index.rank(board) + (board.getSideToMove() == Color.BLACK ? index.size() : 0);
+    return caches.get().value(files[pieces], pieces, position);
+  }
+
+  public static boolean isWin(int value) {
+    return value > 0 && value % 2 == 0;
+  }
+
+  public static boolean isLoss(int value) {
+    return value > 0 && value % 2 == 1;
+  }
+
+  /**
+   * Returns the number of plies to the end of the game of a won or lost position.
+   */
+  public static int distance(int value) {
+    return value - 1;
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (FileChannel channel : channels) {
+      channel.close();
+    }
+  }
+
+  /**
+   * The last inflated block of a thread.
+   */
+  private static final class BlockCache {
+    private final Inflater inflater = new Inflater();
+    private final byte[] values = new byte[BLOCK_VALUES];
+    private int pieces;
+    private long block = -1;
+
+    int value(MappedByteBuffer file, int tablePieces, long position) {
+      long wanted = position / BLOCK_VALUES;
+      if (tablePieces != pieces || wanted != block) {
+        int offsets = HEADER_BYTES;
+        int start = (int) file.getLong(offsets + (int) wanted * Long.BYTES);
+        int end = (int) file.getLong(offsets + ((int) wanted + 1) * Long.BYTES);
+        ByteBuffer compressed = file.duplicate();
+        compressed.position(start).limit(end);
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+          inflater.inflate(values);
+        } catch (DataFormatException e) {
+          throw new IllegalStateException("corrupt table block " + wanted, e);
+        }
+        pieces = tablePieces;
+        block = wanted;
+      }
+      return values[(int) (position % BLOCK_VALUES)] & BYTE_MASK;
+    }
+  }
+}
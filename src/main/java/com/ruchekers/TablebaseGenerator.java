@@ -0,0 +1,355 @@
+package com.ruchekers;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+/**
+ * Builds the {@link Tablebase} tables by retrograde analysis. All positions of a table are enumerated with
+ * both sides to move and their successors are listed once with {@link MoveGenerator}. A position without
+ * moves is lost in 0 plies; then pass {@code p} marks as won in {@code p} plies every position with a
+ * successor lost in fewer plies, and as lost in {@code p} plies every position whose successors are all won
+ * in fewer plies. The passes stop when one finds nothing, the positions left are draws.
+ * The work is split between threads, and the state is saved to {@code towers-<pieces>.part} at most every
+ * {@link #CHECKPOINT_NANOS}, so that an interrupted run resumes from the last saved pass.
+ * Usage: {@code TablebaseGenerator directory max-pieces [--threads count]}.
+ * The successor lists take about four bytes per move, which limits tables to three or four pieces.
+ */
+public final class TablebaseGenerator implements AutoCloseable {
+  static final long CHECKPOINT_NANOS = 60_000_000_000L;
+
+  private static final int CHUNK = 4096;
+  private static final int MAX_VALUE = 0xFF;
+  private static final int BYTE_MASK = 0xFF;
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final Path directory;
+  private final int threads;
+  private final ExecutorService executor;
+  private long checkpointNanos = CHECKPOINT_NANOS;
+  private int passLimit = Integer.MAX_VALUE;
+
+  /**
+   * Creates a generator.
+   *
+   * @param directory directory of the table files
+   * @param threads   number of worker threads, at least 1
+   */
+  public TablebaseGenerator(Path directory, int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive");
+    }
+    this.directory = directory;
+    this.threads = threads;
+    executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "tablebase");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  void setCheckpointNanos(long checkpointNanos) {
+    this.checkpointNanos = checkpointNanos;
+  }
+
+  /**
+   * Makes {@link #generate(int)} give up after the given number of passes, as if it had been interrupted.
+   */
+  void setPassLimit(int passLimit) {
+    this.passLimit = passLimit;
+  }
+
+  /**
+   * Builds the missing tables up to the given number of pieces.
+   *
+   * @param maxPieces largest number of pieces
+   * @return true if all tables are complete
+   * @throws IOException if a file cannot be read or written
+   */
+  public boolean generate(int maxPieces) throws IOException {
+    Files.createDirectories(directory);
+    for (int pieces = 1; pieces <= maxPieces; ++pieces) {
+      if (!Files.exists(Tablebase.fileOf(directory, pieces)) && !solve(pieces)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean solve(int pieces) throws IOException {
+    long start = System.nanoTime();
+    TablebaseIndex index = new TablebaseIndex(pieces);
+    if (2 * index.size() > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("the " + pieces + "-piece table is too large");
+    }
+    int positions = (int) (2 * index.size());
+    int[] starts = new int[positions + 1];
+    forEachChunk(positions, (worker, from, to) -> {
+      for (int position = from; position < to; ++position) {
+        starts[position + 1] = worker.setUp(index, position);
+      }
+      return 0;
+    });
+    long moves = 0;
+    for (int position = 0; position < positions; ++position) {
+      moves += starts[position + 1];
+      if (moves > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("the " + pieces + "-piece table has too many moves");
+      }
+      starts[position + 1] = (int) moves;
+    }
+    int[] successors = new int[(int) moves];
+    forEachChunk(positions, (worker, from, to) -> {
+      for (int position = from; position < to; ++position) {
+        worker.setUp(index, position);
+        worker.listSuccessors(index, successors, starts[position]);
+      }
+      return 0;
+    });
+
+    byte[] values = new byte[positions];
+    int pass = readCheckpoint(pieces, values);
+    if (pass == 0) {
+      for (int position = 0; position < positions; ++position) {
+        values[position] = (byte) (starts[position] == starts[position + 1] ? 1 : 0);
+      }
+    }
+    long lastCheckpoint = System.nanoTime();
+    int passes = 0;
+    while (true) {
+      ++pass;
+      if (pass >= MAX_VALUE) {
+        throw new IllegalStateException("distance to the end exceeds " + (MAX_VALUE - 1) + " plies");
+      }
+      if (passes++ == passLimit) {
+        writeCheckpoint(pieces, values, pass - 1);
+        return false;
+      }
+      int current = pass;
+      long found = forEachChunk(positions, (worker, from, to) -> resolve(values, starts, successors, from, to,
+              current));
+      if (found == 0) {
+        break;
+      }
+      if (System.nanoTime() - lastCheckpoint >= checkpointNanos) {
+        writeCheckpoint(pieces, values, pass);
+        lastCheckpoint = System.nanoTime();
+      }
+    }
+    writeTable(pieces, values);
+    Files.deleteIfExists(checkpointOf(pieces));
+    System.err.printf("%d pieces: %d positions, %d moves, %d passes, %.1f s%n", pieces, positions, moves, pass,
+            (System.nanoTime() - start) / NANOS_PER_SECOND);
+    return true;
+  }
+
+  /**
+   * Runs one pass over a range of positions, see the class comment.
+   *
+   * @return the number of positions resolved
+   */
+  private static long resolve(byte[] values, int[] starts, int[] successors, int from, int to, int pass) {
+    long found = 0;
+    for (int position = from; position < to; ++position) {
+      if (values[position] != 0) {
+        continue;
+      }
+      boolean won = false;
+      boolean lost = true;
+      for (int k = starts[position]; k < starts[position + 1] && !won; ++k) {
+        int value = values[successors[k]] & BYTE_MASK;
+        boolean known = value != 0 && value <= pass;
+        won = known && Tablebase.isLoss(value);
+        lost &= known && Tablebase.isWin(value);
+      }
+      if (won || lost) {
+        values[position] = (byte) (pass + 1);
+        ++found;
+      }
+    }
+    return found;
+  }
+
+  private long forEachChunk(int positions, ChunkTask task) throws IOException {
+    List<Future<Long>> futures = new ArrayList<>();
+    for (int from = 0; from < positions; from += CHUNK) {
+      int start = from;
+      int end = Math.min(from + CHUNK, positions);
+      futures.add(executor.submit(() -> task.run(Worker.LOCAL.get(), start, end)));
+    }
+    long total = 0;
+    for (Future<Long> future : futures) {
+      try {
+        total += future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("interrupted", e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("tablebase worker failed", e.getCause());
+      }
+    }
+    return total;
+  }
+
+  private Path checkpointOf(int pieces) {
+    return directory.resolve("towers-" + pieces + ".part");
+  }
+
+  private int readCheckpoint(int pieces, byte[] values) throws IOException {
+    Path path = checkpointOf(pieces);
+    if (!Files.exists(path)) {
+      return 0;
+    }
+    try (InputStream file = Files.newInputStream(path); DataInputStream in = new DataInputStream(file)) {
+      if (in.readInt() != Tablebase.MAGIC || in.readInt() != pieces || in.readInt() != values.length) {
+        throw new IOException(path + " does not belong to the " + pieces + "-piece table");
+      }
+      int pass = in.readInt();
+      in.readFully(values);
+      return pass;
+    }
+  }
+
+  private void writeCheckpoint(int pieces, byte[] values, int pass) throws IOException {
+    Path path = checkpointOf(pieces);
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try (OutputStream file = Files.newOutputStream(temporary); DataOutputStream out = new DataOutputStream(file)) {
+      out.writeInt(Tablebase.MAGIC);
+      out.writeInt(pieces);
+      out.writeInt(values.length);
+      out.writeInt(pass);
+      out.write(values);
+    }
+    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Writes a table: the header, the file offset of every block and one past the last, then the deflated blocks.
+   */
+  private void writeTable(int pieces, byte[] values) throws IOException {
+    Path path = Tablebase.fileOf(directory, pieces);
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    int blocks = (values.length + Tablebase.BLOCK_VALUES - 1) / Tablebase.BLOCK_VALUES;
+    long[] offsets = new long[blocks + 1];
+    offsets[0] = Tablebase.HEADER_BYTES + (long) (blocks + 1) * Long.BYTES;
+    Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+    byte[] buffer = new byte[2 * Tablebase.BLOCK_VALUES];
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      channel.position(offsets[0]);
+      for (int block = 0; block < blocks; ++block) {
+        int from = block * Tablebase.BLOCK_VALUES;
+        deflater.reset();
+        deflater.setInput(values, from, Math.min(Tablebase.BLOCK_VALUES, values.length - from));
+        deflater.finish();
+        int size = deflater.deflate(buffer);
+        if (!deflater.finished()) {
+          throw new IllegalStateException("block " + block + " does not fit its buffer");
+        }
+        writeFully(channel, ByteBuffer.wrap(buffer, 0, size));
+        offsets[block + 1] = offsets[block] + size;
+      }
+      ByteBuffer header = ByteBuffer.allocate((int) offsets[0]);
+      header.putInt(Tablebase.MAGIC).putInt(Tablebase.VERSION).putInt(pieces).putInt(Tablebase.BLOCK_VALUES);
+      header.putLong(values.length).putLong(blocks);
+      for (long offset : offsets) {
+        header.putLong(offset);
+      }
+      header.flip();
+      channel.position(0);
+      writeFully(channel, header);
+    } finally {
+      deflater.end();
+    }
+    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.out.println("usage: TablebaseGenerator directory max-pieces [--threads count]");
+      return;
+    }
+    int threads = Runtime.getRuntime().availableProcessors();
+    for (int k = 2; k < args.length; ++k) {
+      if ("--threads".equals(args[k]) && k + 1 < args.length) {
+        threads = Integer.parseInt(args[++k]);
+      }
+    }
+    try (TablebaseGenerator generator = new TablebaseGenerator(Paths.get(args[0]), threads)) {
+      generator.generate(Integer.parseInt(args[1]));
+    }
+  }
+
+  /**
+   * Work on a range of positions, run by a pool thread with its own {@link Worker}.
+   */
+  private interface ChunkTask {
+    long run(Worker worker, int from, int to);
+  }
+
+  /**
+   * Scratch state of a pool thread.
+   */
+  private static final class Worker {
+    static final ThreadLocal<Worker> LOCAL = ThreadLocal.withInitial(Worker::new);
+
+    private final GameBoard board = new GameBoard();
+    private final MoveGenerator generator = new MoveGenerator();
+    private final MoveList moves = new MoveList();
+
+    /**
+     * Puts the position on the board and lists its moves.
+     *
+     * @return the number of moves
+     */
+    int setUp(TablebaseIndex index, int position) {
+      boolean black = position >= index.size();
+      index.unrank(black ? position - index.size() : position, board);
+      board.setSideToMove(black ? Color.BLACK : Color.WHITE);
+      return generator.generate(board, board.getSideToMove(), moves);
+    }
+
+    /**
+     * Writes the positions reached by the moves listed by the last {@link #setUp(TablebaseIndex, int)}.
+     */
+    void listSuccessors(TablebaseIndex index, int[] successors, int offset) {
+      long base = board.getSideToMove() == Color.WHITE ? index.size() : 0;
+      for (int move = 0; move < moves.size(); ++move) {
+        board.makeMove(moves, move);
+        successors[offset + move] = (int) (base + index.rank(board));
+        board.unmakeMove();
+      }
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package com.ruchekers;
+
+/**
+ * Perfect index of the positions with a given number of pieces, used by the tablebase.
+ * A position is split into its shape, the dark squares holding towers and the height of each tower,
+ * and its contents, the codes of all pieces. Shapes are grouped by their sequence of heights, a composition
+ * of the number of pieces written as a mask of the cuts between towers, and ranked inside a group by the
+ * combinatorial number of their squares. The index is {@code shape * 4^pieces + contents}.
+ * The side to move is not part of the index.
+ */
+final class TablebaseIndex {
+  static final int MAX_PIECES = 8;
+
+  private static final int DARK_SQUARES = Bitboards.SQUARES / 2;
+  private static final int BITS_PER_PIECE = 2;
+  private static final int PIECE_MASK = 3;
+  private static final long[][] BINOMIAL = new long[DARK_SQUARES + 1][MAX_PIECES + 1];
+
+  static {
+    for (int n = 0; n <= DARK_SQUARES; ++n) {
+      BINOMIAL[n][0] = 1;
+      for (int k = 1; k <= MAX_PIECES && k <= n; ++k) {
+        BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + (k < n ? BINOMIAL[n - 1][k] : 0);
+      }
+    }
+  }
+
+  private final int pieces;
+  private final long[] groupOffsets;
+  private final long size;
+
+  TablebaseIndex(int pieces) {
+    if (pieces < 1 || pieces > MAX_PIECES) {
+      throw new IllegalArgumentException("pieces must be between 1 and " + MAX_PIECES);
+    }
+    this.pieces = pieces;
+    groupOffsets = new long[(1 << (pieces - 1)) + 1];
+    for (int cuts = 0; cuts + 1 < groupOffsets.length; ++cuts) {
+      groupOffsets[cuts + 1] = groupOffsets[cuts] + BINOMIAL[DARK_SQUARES][Integer.bitCount(cuts) + 1];
+    }
+    size = groupOffsets[groupOffsets.length - 1] << (BITS_PER_PIECE * pieces);
+  }
+
+  int getPieces() {
+    return pieces;
+  }
+
+  /**
+   * Returns the number of positions, for one side to move.
+   */
+  long size() {
+    return size;
+  }
+
+  /**
+   * Counts the pieces of a position, the number of the table it belongs to.
+   */
+  static int countPieces(GameBoard board) {
+    int count = 0;
+    for (int square = 0; square < Bitboards.SQUARES; ++square) {
+      count += TowerBits.height(board.getTowerBits(square));
+    }
+    return count;
+  }
+
+  /**
+   * Returns the index of the position on the board, which must hold exactly {@link #getPieces()} pieces.
+   */
+  long rank(GameBoard board) {
+    long contents = 0;
+    long combination = 0;
+    int cuts = 0;
+    int towers = 0;
+    int stacked = 0;
+    for (int dark = 0; dark < DARK_SQUARES; ++dark) {
+      long tower = board.getTowerBits(squareOf(dark));
+      int height = TowerBits.height(tower);
+      if (height == 0) {
+        continue;
+      }
+      if (towers > 0) {
+        cuts |= 1 << (stacked - 1);
+      }
+      for (int depth = 0; depth < height; ++depth) {
+        contents = contents << BITS_PER_PIECE | TowerBits.pieceAt(tower, depth);
+      }
+      ++towers;
+      stacked += height;
+      combination += BINOMIAL[dark][towers];
+    }
+    return (groupOffsets[cuts] + combination) << (BITS_PER_PIECE * pieces) | contents;
+  }
+
+  /**
+   * Puts the position with the given index on the board, which is cleared first.
+   */
+  void unrank(long index, GameBoard board) {
+    board.clear();
+    long shape = index >>> (BITS_PER_PIECE * pieces);
+    int cuts = 0;
+    while (groupOffsets[cuts + 1] <= shape) {
+      ++cuts;
+    }
+    long combination = shape - groupOffsets[cuts];
+    int towers = Integer.bitCount(cuts) + 1;
+    int[] darks = new int[towers];
+    for (int k = towers; k > 0; --k) {
+      int dark = k - 1;
+      while (dark + 1 < DARK_SQUARES && BINOMIAL[dark + 1][k] <= combination) {
+        ++dark;
+      }
+      combination -= BINOMIAL[dark][k];
+      darks[k - 1] = dark;
+    }
+    int shift = BITS_PER_PIECE * pieces;
+    int piece = 0;
+    for (int k = 0; k < towers; ++k) {
+      int height = 1;
+      while (piece + height < pieces && (cuts & 1 << (piece + height - 1)) == 0) {
+        ++height;
+      }
+      long tower = TowerBits.EMPTY;
+      for (int depth = 0; depth < height; ++depth) {
+        shift -= BITS_PER_PIECE;
+        tower = TowerBits.pushBottom(tower, (int) (index >>> shift) & PIECE_MASK);
+      }
+      piece += height;
+      int square = squareOf(darks[k]);
+      board.setTower(Bitboards.letterOf(square), Bitboards.digitOf(square), new PieceTower(tower));
+    }
+  }
+
+  /**
+   * Returns the square of the dark square with the given number, counted row by row from a1.
+   */
+  static int squareOf(int dark) {
+    return dark * 2 + dark / (Bitboards.SIZE / 2) % 2;
+  }
+}
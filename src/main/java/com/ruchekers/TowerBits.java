@@ -0,0 +1,133 @@
+package com.ruchekers;
+
+/**
+ * Packed encoding of a tower in a single {@code long}.
+ * Every piece takes two bits: the lower one is set for black pieces, the upper one for kings.
+ * The top piece lives in the lowest bits, the height of the tower is kept in the highest bits.
+ */
+public final class TowerBits {
+  public static final long EMPTY = 0L;
+
+  public static final int WHITE_MAN = 0;
+  public static final int BLACK_MAN = 1;
+  public static final int WHITE_KING = 2;
+  public static final int BLACK_KING = 3;
+
+  public static final int MAX_HEIGHT = 29;
+
+  private static final int PIECE_BITS = 2;
+  private static final int PIECE_MASK = 3;
+  private static final int BLACK_BIT = 1;
+  private static final int KING_BIT = 2;
+  private static final int HEIGHT_SHIFT = 58;
+  private static final long PIECES_MASK = (1L << HEIGHT_SHIFT) - 1;
+  private static final long ONE_PIECE = 1L << HEIGHT_SHIFT;
+  private static final String CODE_CHARS = "wbWB";
+
+  private TowerBits() {
+
+  }
+
+  public static int code(Color color, boolean isKing) {
+    return (color == Color.BLACK ? BLACK_BIT : 0) | (isKing ? KING_BIT : 0);
+  }
+
+  public static Color colorOf(int code) {
+    return (code & BLACK_BIT) != 0 ? Color.BLACK : Color.WHITE;
+  }
+
+  public static boolean isKing(int code) {
+    return (code & KING_BIT) != 0;
+  }
+
+  public static char charOf(int code) {
+    return CODE_CHARS.charAt(code);
+  }
+
+  /**
+   * Decodes a piece letter of the text notation.
+   *
+   * @param c one of 'w', 'W', 'b', 'B'
+   * @return the code of the piece or -1 if the letter is unknown
+   */
+  public static int codeOf(char c) {
+    return CODE_CHARS.indexOf(c);
+  }
+
+  public static int height(long bits) {
+    return (int) (bits >>> HEIGHT_SHIFT);
+  }
+
+  /**
+   * Tells if a long is a tower as laid out here: empty, or 1 to {@link #MAX_HEIGHT} pieces with no bit set above
+   * the last one. Towers from untrusted input must pass this check before use.
+   */
+  public static boolean isValid(long bits) {
+    int height = height(bits);
+    return bits == EMPTY
+            || height >= 1 && height <= MAX_HEIGHT && (bits & PIECES_MASK) >>> (height * PIECE_BITS) == 0;
+  }
+
+  public static int top(long bits) {
+    return (int) bits & PIECE_MASK;
+  }
+
+  /**
+   * Returns the piece at the given depth, the top piece having depth 0.
+   */
+  public static int pieceAt(long bits, int depth) {
+    return (int) (bits >>> (depth * PIECE_BITS)) & PIECE_MASK;
+  }
+
+  /**
+   * Builds a tower of the given height from its pieces, laid out as read by {@link #pieceAt(long, int)}.
+   * Bits above the last piece are ignored.
+   */
+  static long pack(long pieces, int height) {
+    return pieces & (ONE_PIECE - 1 >>> (HEIGHT_SHIFT - height * PIECE_BITS)) | (long) height << HEIGHT_SHIFT;
+  }
+
+  /**
+   * Puts a piece under the tower, as it happens to a captured piece.
+   */
+  static long pushBottom(long bits, int code) {
+    int height = height(bits);
+    if (height == MAX_HEIGHT) {
+      throw new IllegalStateException("tower is full");
+    }
+    return bits + ONE_PIECE | (long) code << (height * PIECE_BITS);
+  }
+
+  /**
+   * Puts a piece on top of the tower, reverting {@link #popTop(long)}.
+   */
+  static long pushTop(long bits, int code) {
+    if (height(bits) == MAX_HEIGHT) {
+      throw new IllegalStateException("tower is full");
+    }
+    return ((bits & PIECES_MASK) << PIECE_BITS | code) + (bits & ~PIECES_MASK) + ONE_PIECE;
+  }
+
+  /**
+   * Removes the top piece, the caller has to read it with {@link #top(long)} beforehand.
+   */
+  static long popTop(long bits) {
+    return (bits & PIECES_MASK) >>> PIECE_BITS | (bits & ~PIECES_MASK) - ONE_PIECE;
+  }
+
+  /**
+   * Removes the bottom piece, reverting {@link #pushBottom(long, int)}.
+   */
+  static long popBottom(long bits) {
+    int height = height(bits) - 1;
+    return (bits & ~((long) PIECE_MASK << (height * PIECE_BITS))) - ONE_PIECE;
+  }
+
+  static long makeKing(long bits) {
+    return bits | KING_BIT;
+  }
+
+  static long unmakeKing(long bits) {
+    return bits & ~KING_BIT;
+  }
+}
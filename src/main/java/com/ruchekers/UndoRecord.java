@@ -0,0 +1,97 @@
+package com.ruchekers;
+
+/**
+ * Packing of the records kept on the undo stack of {@link GameBoard}.
+ * A move leaves one record per tower that carried a last-beat mark before the move,
+ * one record per step of the move and finally a header with both counts.
+ */
+final class UndoRecord {
+  private static final int SQUARE_BITS = 6;
+  private static final long SQUARE_MASK = (1L << SQUARE_BITS) - 1;
+  private static final int TO_SHIFT = SQUARE_BITS;
+  private static final int VICTIM_SHIFT = TO_SHIFT + SQUARE_BITS;
+  private static final int CODE_SHIFT = VICTIM_SHIFT + SQUARE_BITS + 1;
+  private static final long CODE_MASK = 3;
+  private static final long CAPTURE_FLAG = 1L << (VICTIM_SHIFT + SQUARE_BITS);
+  private static final long PROMOTED_FLAG = 1L << (CODE_SHIFT + 2);
+  private static final long REMOVED_FLAG = PROMOTED_FLAG << 1;
+
+  private static final int COUNT_BITS = 16;
+  private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+  private static final int ORDER_BITS = 4;
+  private static final long ORDER_MASK = (1L << ORDER_BITS) - 1;
+
+  private UndoRecord() {
+
+  }
+
+  /**
+   * Packs one step of a move.
+   *
+   * @param from     square the tower left
+   * @param to       square the tower landed on
+   * @param victim   square of the beaten tower or {@link Bitboards#NO_SQUARE}
+   * @param code     {@link TowerBits} code of the captured piece
+   * @param promoted whether the moving tower became a king on this step
+   * @param removed  whether the beaten tower lost its last piece
+   * @return the record
+   */
+  static long step(int from, int to, int victim, int code, boolean promoted, boolean removed) {
+    long record = from | (long) to << TO_SHIFT;
+    if (victim != Bitboards.NO_SQUARE) {
+      record |= CAPTURE_FLAG | (long) victim << VICTIM_SHIFT | (long) code << CODE_SHIFT;
+    }
+    return record | (promoted ? PROMOTED_FLAG : 0) | (removed ? REMOVED_FLAG : 0);
+  }
+
+  static int from(long record) {
+    return (int) (record & SQUARE_MASK);
+  }
+
+  static int to(long record) {
+    return (int) (record >>> TO_SHIFT & SQUARE_MASK);
+  }
+
+  static int victim(long record) {
+    return (record & CAPTURE_FLAG) != 0 ? (int) (record >>> VICTIM_SHIFT & SQUARE_MASK) : Bitboards.NO_SQUARE;
+  }
+
+  static int code(long record) {
+    return (int) (record >>> CODE_SHIFT & CODE_MASK);
+  }
+
+  static boolean promoted(long record) {
+    return (record & PROMOTED_FLAG) != 0;
+  }
+
+  static boolean removed(long record) {
+    return (record & REMOVED_FLAG) != 0;
+  }
+
+  /**
+   * Packs the last-beat mark of the tower standing on the given square.
+   */
+  static long lastBeat(int square, int letterOrder, int digitOrder) {
+    return square | (long) letterOrder << SQUARE_BITS | (long) digitOrder << (SQUARE_BITS + ORDER_BITS);
+  }
+
+  static int lastBeatLetterOrder(long record) {
+    return (int) (record >>> SQUARE_BITS & ORDER_MASK);
+  }
+
+  static int lastBeatDigitOrder(long record) {
+    return (int) (record >>> (SQUARE_BITS + ORDER_BITS) & ORDER_MASK);
+  }
+
+  static long header(int steps, int lastBeats) {
+    return steps | (long) lastBeats << COUNT_BITS;
+  }
+
+  static int steps(long header) {
+    return (int) (header & COUNT_MASK);
+  }
+
+  static int lastBeats(long header) {
+    return (int) (header >>> COUNT_BITS & COUNT_MASK);
+  }
+}
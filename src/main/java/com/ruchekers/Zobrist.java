@@ -0,0 +1,59 @@
+package com.ruchekers;
+
+/**
+ * Keys of the position hash kept by {@link GameBoard}.
+ * The hash is the XOR of one key per occupied square and a key for the side to move,
+ * so a move updates it by XOR-ing out the old keys of the touched squares and XOR-ing in the new ones.
+ * Towers are stacks of any height, too many to draw a random key for each, so the key of a square
+ * mixes the packed tower value with a random salt of that square.
+ */
+final class Zobrist {
+  static final long SIDE_TO_MOVE;
+
+  private static final long[] TOWER_SALTS = new long[Bitboards.SQUARES];
+  private static final long[] LAST_BEAT_SALTS = new long[Bitboards.SQUARES];
+  private static final long SEED = 0x5EED_C0DE_2021L;
+  private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+  private static final long MIX_1 = 0xBF58476D1CE4E5B9L;
+  private static final long MIX_2 = 0x94D049BB133111EBL;
+  private static final int SHIFT_1 = 30;
+  private static final int SHIFT_2 = 27;
+  private static final int SHIFT_3 = 31;
+  private static final int ORDER_BITS = 4;
+
+  static {
+    long state = SEED;
+    for (int square = 0; square < Bitboards.SQUARES; ++square) {
+      state += GOLDEN_GAMMA;
+      TOWER_SALTS[square] = mix(state);
+      state += GOLDEN_GAMMA;
+      LAST_BEAT_SALTS[square] = mix(state);
+    }
+    SIDE_TO_MOVE = mix(state + GOLDEN_GAMMA);
+  }
+
+  private Zobrist() {
+
+  }
+
+  /**
+   * The SplitMix64 finalizer, a bijection spreading every input bit over the whole output.
+   */
+  static long mix(long value) {
+    long z = value;
+    z = (z ^ (z >>> SHIFT_1)) * MIX_1;
+    z = (z ^ (z >>> SHIFT_2)) * MIX_2;
+    return z ^ (z >>> SHIFT_3);
+  }
+
+  static long tower(int square, long bits) {
+    return mix(bits ^ TOWER_SALTS[square]);
+  }
+
+  /**
+   * Key of the last-beat mark carried by the tower on the given square.
+   */
+  static long lastBeat(int square, int letterOrder, int digitOrder) {
+    return mix(LAST_BEAT_SALTS[square] + (letterOrder << ORDER_BITS | digitOrder));
+  }
+}
@@ -0,0 +1,338 @@
+package com.ruchekers.engine;
+
+import com.ruchekers.Color;
+import com.ruchekers.GameBoard;
+import com.ruchekers.Main;
+import com.ruchekers.MoveGenerator;
+import com.ruchekers.MoveList;
+import com.ruchekers.MoveNotation;
+import com.ruchekers.MoveVerdict;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Line protocol of a long-running engine process, in the spirit of UCI, so that one warmed-up JVM serves a stream
+ * of searches instead of paying for startup on every position. Commands, one per line:
+ * <ul>
+ *   <li>{@code isready}: answers {@code readyok}, during a search too;</li>
+ *   <li>{@code newgame}: clears the transposition table;</li>
+ *   <li>{@code setoption threads|hash <n>}: sets the number of search threads or the table size in megabytes, at
+ *   most half of the heap;</li>
+ *   <li>{@code position startpos|<tower>... [w|b] [moves <move>...]}: sets up the starting position or the towers
+ *   as read by {@link Main#fillBoard(GameBoard, String)}, white to move unless {@code b} is given, then plays the
+ *   moves;</li>
+ *   <li>{@code go [depth <plies>] [movetime <ms>] [infinite]}: searches the position, printing
+ *   {@code info depth <d> score <s> nodes <n> nps <n> time <ms> pv <move>} after every iteration and
+ *   {@code bestmove <move>}, or {@code bestmove none}, at the end; a won or lost score reads {@code win <plies>}
+ *   or {@code loss <plies>};</li>
+ *   <li>{@code stop}: ends the search, which still prints its best move;</li>
+ *   <li>{@code quit}: stops the search and exits, as does the end of the input once the search is over.</li>
+ * </ul>
+ * The search runs on a thread of its own on a copy of the position, so commands are read meanwhile. A command
+ * changing the position or the options waits for the search to finish, stopping it first if it has no limit.
+ * Errors are reported as {@code info string <message>} lines.
+ */
+public final class EngineProtocol implements AutoCloseable {
+  static final int DEFAULT_HASH_MEGABYTES = 16;
+
+  private static final long STOP_POLL_MILLIS = 1;
+  private static final int BYTES_PER_MEGABYTE = 1024 * 1024;
+  private static final double NANOS_PER_MILLI = 1e6;
+
+  private final BufferedReader in;
+  private final PrintWriter out;
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "engine-search");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final MoveNotation notation = new MoveNotation();
+  private int threads = 1;
+  private int hashMegabytes = DEFAULT_HASH_MEGABYTES;
+  private TranspositionTable table = new TranspositionTable(hashMegabytes);
+  private ParallelSearch search;
+  private GameBoard board = startingPosition();
+  /** Legal moves of the searched position in the move notation, and their cells. */
+  private String[] rootTexts;
+  private int[][] rootPaths;
+  private Future<?> running;
+  private boolean unlimited;
+
+  /**
+   * Creates an engine answering on the output, which it flushes after every line.
+   */
+  public EngineProtocol(BufferedReader in, PrintWriter out) {
+    this.in = in;
+    this.out = out;
+    createSearch();
+  }
+
+  /**
+   * Reads and runs commands until {@code quit} or the end of the input.
+   */
+  public void run() throws IOException {
+    String line = in.readLine();
+    while (line != null && execute(line)) {
+      line = in.readLine();
+    }
+    finishSearch(line != null || unlimited);
+  }
+
+  /**
+   * Runs one command.
+   *
+   * @return false on {@code quit}
+   */
+  boolean execute(String line) {
+    String[] tokens = line.trim().split("\\s+");
+    try {
+      switch (tokens[0]) {
+        case "":
+          break;
+        case "isready":
+          send("readyok");
+          break;
+        case "newgame":
+          finishSearch(unlimited);
+          table.clear();
+          break;
+        case "setoption":
+          finishSearch(unlimited);
+          setOption(tokens);
+          break;
+        case "position":
+          finishSearch(unlimited);
+          position(tokens);
+          break;
+        case "go":
+          finishSearch(unlimited);
+          go(tokens);
+          break;
+        case "stop":
+          finishSearch(true);
+          break;
+        case "quit":
+          finishSearch(true);
+          return false;
+        default:
+          send("info string unknown command " + tokens[0]);
+      }
+    } catch (IllegalArgumentException e) {
+      send("info string " + e.getMessage());
+    } catch (RuntimeException e) {
+      // the process outlives any one command
+      send("info string " + tokens[0] + " failed: " + e);
+    }
+    return true;
+  }
+
+  private void setOption(String[] tokens) {
+    if (tokens.length != 3) {
+      throw new IllegalArgumentException("usage: setoption threads|hash <n>");
+    }
+    int value = parsePositive(tokens[2]);
+    if ("threads".equals(tokens[1])) {
+      threads = value;
+    } else if ("hash".equals(tokens[1])) {
+      if (value > maxHashMegabytes()) {
+        throw new IllegalArgumentException("hash out of range 1.." + maxHashMegabytes());
+      }
+      hashMegabytes = value;
+      table = new TranspositionTable(hashMegabytes);
+    } else {
+      throw new IllegalArgumentException("unknown option " + tokens[1]);
+    }
+    search.close();
+    createSearch();
+  }
+
+  /**
+   * Returns the largest table allowed, which takes at most half of the heap.
+   */
+  static int maxHashMegabytes() {
+    long heap = Runtime.getRuntime().maxMemory() / 2 / BYTES_PER_MEGABYTE;
+    return (int) Math.max(1, Math.min(heap, TranspositionTable.getMaxMegabytes()));
+  }
+
+  private void createSearch() {
+    search = new ParallelSearch(table, threads);
+    search.setListener(this::info);
+  }
+
+  /**
+   * Sets up a position. A rejected move is reported and ends the command, leaving the moves before it played.
+   */
+  private void position(String[] tokens) {
+    GameBoard next = new GameBoard();
+    int k = 1;
+    if (k < tokens.length && "startpos".equals(tokens[k])) {
+      next = startingPosition();
+      ++k;
+    }
+    for (; k < tokens.length && !"moves".equals(tokens[k]); ++k) {
+      if ("w".equals(tokens[k]) || "b".equals(tokens[k])) {
+        next.setSideToMove("w".equals(tokens[k]) ? Color.WHITE : Color.BLACK);
+      } else if (notation.parseTowers(tokens[k], 0, tokens[k].length())) {
+        Main.fillBoard(next, tokens[k]);
+      } else {
+        throw new IllegalArgumentException("bad tower " + tokens[k]);
+      }
+    }
+    board = next;
+    for (++k; k < tokens.length; ++k) {
+      MoveVerdict verdict = Main.tryMove(board, tokens[k], 0, tokens[k].length());
+      if (!verdict.isLegal()) {
+        throw new IllegalArgumentException("rejected move " + tokens[k] + ": " + verdict.getMessage());
+      }
+    }
+  }
+
+  private static GameBoard startingPosition() {
+    GameBoard board = new GameBoard();
+    Main.fillBoard(board, Main.INITIAL_WHITE);
+    Main.fillBoard(board, Main.INITIAL_BLACK);
+    return board;
+  }
+
+  private void go(String[] tokens) {
+    int depth = SearchLimits.MAX_DEPTH;
+    long timeMillis = SearchLimits.NO_TIME_LIMIT;
+    boolean infinite = tokens.length == 1;
+    for (int k = 1; k < tokens.length; ++k) {
+      if ("infinite".equals(tokens[k])) {
+        infinite = true;
+      } else if ("depth".equals(tokens[k]) && k + 1 < tokens.length) {
+        depth = parsePositive(tokens[++k]);
+      } else if ("movetime".equals(tokens[k]) && k + 1 < tokens.length) {
+        timeMillis = parsePositive(tokens[++k]);
+      } else {
+        throw new IllegalArgumentException("usage: go [depth <plies>] [movetime <ms>] [infinite]");
+      }
+    }
+    listRootMoves();
+    SearchLimits limits = new SearchLimits(depth, timeMillis);
+    GameBoard copy = board.copy();
+    unlimited = infinite;
+    running = executor.submit(() -> {
+      try {
+        send("bestmove " + moveText(search.search(copy, limits).getBestPath()));
+      } catch (RuntimeException e) {
+        send("info string search failed: " + e);
+        send("bestmove none");
+      }
+    });
+  }
+
+  private void listRootMoves() {
+    MoveList moves = new MoveList();
+    int count = new MoveGenerator().generate(board, board.getSideToMove(), moves);
+    rootTexts = new String[count];
+    rootPaths = new int[count][];
+    StringBuilder text = new StringBuilder();
+    for (int move = 0; move < count; ++move) {
+      text.setLength(0);
+      Main.appendMove(text, board.copy(), moves, move);
+      rootTexts[move] = text.toString();
+      rootPaths[move] = new int[moves.getLength(move)];
+      for (int k = 0; k < rootPaths[move].length; ++k) {
+        rootPaths[move][k] = moves.getSquare(move, k);
+      }
+    }
+  }
+
+  private String moveText(int[] path) {
+    for (int move = 0; move < rootPaths.length; ++move) {
+      if (Arrays.equals(rootPaths[move], path)) {
+        return rootTexts[move];
+      }
+    }
+    return "none";
+  }
+
+  /**
+   * Reports a finished iteration, on the searching thread.
+   */
+  private void info(SearchResult result) {
+    int score = result.getScore();
+    String value;
+    if (score > Search.WIN_THRESHOLD) {
+      value = "win " + (Search.WIN - score);
+    } else if (score < -Search.WIN_THRESHOLD) {
+      value = "loss " + (Search.WIN + score);
+    } else {
+      value = Integer.toString(score);
+    }
+    send(String.format("info depth %d score %s nodes %d nps %d time %.0f pv %s", result.getDepth(), value,
+            result.getNodes(), result.getNodesPerSecond(), result.getElapsedNanos() / NANOS_PER_MILLI,
+            moveText(result.getBestPath())));
+  }
+
+  /**
+   * Waits for the running search, if any, to print its best move.
+   *
+   * @param stop whether to stop it first
+   */
+  private void finishSearch(boolean stop) {
+    if (running == null) {
+      return;
+    }
+    try {
+      // a search submitted a moment ago may not have started yet and would clear an earlier stop
+      while (stop && !running.isDone()) {
+        search.stop();
+        Thread.sleep(STOP_POLL_MILLIS);
+      }
+      running.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting for the search", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("search failed", e.getCause());
+    }
+    running = null;
+  }
+
+  private void send(String line) {
+    out.println(line);
+  }
+
+  private static int parsePositive(String token) {
+    try {
+      int value = Integer.parseInt(token);
+      if (value > 0) {
+        return value;
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("not a number: " + token, e);
+    }
+    throw new IllegalArgumentException("not positive: " + token);
+  }
+
+  @Override
+  public void close() {
+    finishSearch(true);
+    search.close();
+    executor.shutdownNow();
+  }
+
+  public static void main(String[] args) {
+    BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+    PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true);
+    try (EngineProtocol engine = new EngineProtocol(in, out)) {
+      engine.run();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.ruchekers.engine;
+
+import com.ruchekers.Bitboards;
+import com.ruchekers.Color;
+import com.ruchekers.GameBoard;
+import com.ruchekers.TowerBits;
+
+/**
+ * Static evaluation of a position. A tower belongs to the side of its top piece, and beaten
+ * pieces stay under the tower that took them, so besides the top piece the evaluation counts
+ * the pieces of the owner waiting below (freed when the top is beaten) and the enemy pieces held
+ * prisoner (lost for the enemy as long as the tower keeps its top).
+ */
+public final class Evaluator {
+  static final int MAN = 100;
+  static final int KING = 300;
+  static final int RESERVE_MAN = 45;
+  static final int RESERVE_KING = 120;
+  static final int PRISONER = 20;
+  static final int ADVANCE = 4;
+
+  /**
+   * Scores the position from the point of view of the side to move.
+   *
+   * @param board position to score
+   * @return score in centipawns
+   */
+  public int evaluate(GameBoard board) {
+    int score = 0;
+    for (int square = 0; square < Bitboards.SQUARES; ++square) {
+      long bits = board.getTowerBits(square);
+      if (TowerBits.height(bits) != 0) {
+        score += evaluateTower(bits, Bitboards.digitOf(square));
+      }
+    }
+    return board.getSideToMove() == Color.WHITE ? score : -score;
+  }
+
+  /**
+   * Scores one tower from the point of view of white.
+   */
+  static int evaluateTower(long bits, int digitOrder) {
+    int top = TowerBits.top(bits);
+    boolean black = TowerBits.colorOf(top) == Color.BLACK;
+    int value;
+    if (TowerBits.isKing(top)) {
+      value = KING;
+    } else {
+      value = MAN + ADVANCE * (black ? Bitboards.SIZE - digitOrder : digitOrder - 1);
+    }
+    int height = TowerBits.height(bits);
+    for (int depth = 1; depth < height; ++depth) {
+      int code = TowerBits.pieceAt(bits, depth);
+      if (TowerBits.colorOf(code) == TowerBits.colorOf(top)) {
+        value += TowerBits.isKing(code) ? RESERVE_KING : RESERVE_MAN;
+      } else {
+        value += PRISONER;
+      }
+    }
+    return black ? -value : value;
+  }
+}
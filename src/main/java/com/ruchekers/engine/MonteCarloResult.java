@@ -0,0 +1,65 @@
+package com.ruchekers.engine;
+
+/**
+ * Outcome of a {@link MonteCarloSearch}: the most visited move, how well it did in the playouts and the effort spent.
+ */
+public final class MonteCarloResult {
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+  private final int[] bestPath;
+  private final double winRate;
+  private final long visits;
+  private final long playouts;
+  private final int nodes;
+  private final long elapsedNanos;
+
+  MonteCarloResult(int[] bestPath, double winRate, long visits, long playouts, int nodes, long elapsedNanos) {
+    this.bestPath = bestPath;
+    this.winRate = winRate;
+    this.visits = visits;
+    this.playouts = playouts;
+    this.nodes = nodes;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Returns the squares of the best move as in {@link com.ruchekers.MoveList#getSquare(int, int)},
+   * or an empty array if the side to move has no legal move.
+   */
+  public int[] getBestPath() {
+    return bestPath.clone();
+  }
+
+  /**
+   * Returns the share of the playouts through the best move won by the side to move, a draw counting as half.
+   */
+  public double getWinRate() {
+    return winRate;
+  }
+
+  /**
+   * Returns the number of playouts through the best move.
+   */
+  public long getVisits() {
+    return visits;
+  }
+
+  public long getPlayouts() {
+    return playouts;
+  }
+
+  /**
+   * Returns the number of tree nodes in use at the end of the search.
+   */
+  public int getNodes() {
+    return nodes;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public long getPlayoutsPerSecond() {
+    return elapsedNanos == 0 ? 0 : playouts * NANOS_PER_SECOND / elapsedNanos;
+  }
+}
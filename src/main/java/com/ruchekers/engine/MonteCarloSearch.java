@@ -0,0 +1,367 @@
+package com.ruchekers.engine;
+
+import com.ruchekers.Color;
+import com.ruchekers.GameBoard;
+import com.ruchekers.Main;
+import com.ruchekers.MoveGenerator;
+import com.ruchekers.MoveList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Monte Carlo tree search with UCT selection and random playouts, for positions where a static evaluation of the
+ * towers says little. Worker threads share one tree kept in flat arrays: the visits and the score of a node are
+ * packed in one long updated by atomic adds, so no node is ever locked. A worker counts its visit on every node of
+ * its path on the way down, a virtual loss steering the other workers to other paths until its result is added on
+ * the way up. A node is expanded by the first worker claiming it, all its children at once, from a pool of nodes
+ * sized by a memory budget; once the pool is used up leaves stay leaves, and the next search recycles the whole
+ * pool. Playouts play random moves in place on the board of the worker and take them back, allocating nothing.
+ * Usage: {@code MonteCarloSearch [milliseconds] [threads...]}, by default 2000 ms with 1, 2, 4 and 8 threads,
+ * reports the playouts per second on the positions of {@link SpeedupSuite}.
+ */
+public final class MonteCarloSearch implements AutoCloseable {
+  /** Heap size of a node: its statistics, its first child and its number of children. */
+  static final int NODE_BYTES = Long.BYTES + 2 * Integer.BYTES;
+  /** Longest playout, drawn when it gets there. */
+  static final int MAX_PLAYOUT_PLIES = 200;
+  /** Visits a leaf gets before its children are added. */
+  static final int EXPAND_VISITS = 4;
+
+  private static final double EXPLORATION = Math.sqrt(2);
+  /** Statistics of one visit: the visits are the high half, the score in half-points the low half. */
+  private static final long VISIT = 1L << Integer.SIZE;
+  private static final long SCORE_MASK = VISIT - 1;
+  private static final int WIN = 2;
+  private static final int DRAW = 1;
+  private static final int LOSS = 0;
+  private static final int ROOT = 0;
+  private static final int UNEXPANDED = 0;
+  private static final int EXPANDING = -1;
+  private static final int TERMINAL = -2;
+  private static final int NO_ROOM = -3;
+  private static final int INITIAL_PATH = 64;
+  private static final int BYTES_PER_MEGABYTE = 1024 * 1024;
+  private static final long NANOS_PER_MILLI = 1_000_000L;
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+  private static final long SEED_MIX = 0x9E3779B97F4A7C15L;
+  private static final int XORSHIFT_A = 13;
+  private static final int XORSHIFT_B = 7;
+  private static final int XORSHIFT_C = 17;
+  private static final long DEFAULT_MILLIS = 2000;
+  private static final int[] DEFAULT_THREADS = {1, 2, 4, 8};
+
+  private final int capacity;
+  private final AtomicLongArray stats;
+  /** First child of every node, or one of the negative states, published after its children are set up. */
+  private final AtomicIntegerArray children;
+  private final int[] childCounts;
+  private final AtomicInteger used = new AtomicInteger();
+  private final AtomicLong playouts = new AtomicLong();
+  private final AtomicBoolean stopSignal = new AtomicBoolean();
+  private final Worker[] workers;
+  private final ExecutorService executor;
+
+  /**
+   * Creates a search running on the given number of threads, the calling one included.
+   *
+   * @param megabytes memory budget of the tree
+   * @param threads   number of threads, at least 1
+   */
+  public MonteCarloSearch(int megabytes, int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive");
+    }
+    capacity = (int) Math.max(1, Math.min((long) megabytes * BYTES_PER_MEGABYTE / NODE_BYTES, Integer.MAX_VALUE));
+    stats = new AtomicLongArray(capacity);
+    children = new AtomicIntegerArray(capacity);
+    childCounts = new int[capacity];
+    workers = new Worker[threads];
+    for (int k = 0; k < threads; ++k) {
+      workers[k] = new Worker(k + 1);
+    }
+    executor = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, runnable -> {
+      Thread thread = new Thread(runnable, "playout-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public int getThreads() {
+    return workers.length;
+  }
+
+  /**
+   * Returns the number of nodes the memory budget holds.
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public void stop() {
+    stopSignal.set(true);
+  }
+
+  /**
+   * Searches the position for the side to move until the time is up or enough playouts are done.
+   *
+   * @param board       position to search, restored before returning
+   * @param timeMillis  time budget, {@link SearchLimits#NO_TIME_LIMIT} for none
+   * @param maxPlayouts number of playouts to stop at
+   * @return the most visited move with its statistics
+   */
+  public MonteCarloResult search(GameBoard board, long timeMillis, long maxPlayouts) {
+    long start = System.nanoTime();
+    long deadline = timeMillis >= Long.MAX_VALUE / NANOS_PER_MILLI ? Long.MAX_VALUE
+            : start + timeMillis * NANOS_PER_MILLI;
+    used.set(ROOT + 1);
+    stats.set(ROOT, 0);
+    children.set(ROOT, UNEXPANDED);
+    playouts.set(0);
+    stopSignal.set(false);
+    List<Future<?>> futures = new ArrayList<>(workers.length - 1);
+    for (int k = 1; k < workers.length; ++k) {
+      Worker worker = workers[k];
+      GameBoard copy = board.copy();
+      futures.add(executor.submit(() -> worker.run(copy, deadline, maxPlayouts)));
+    }
+    workers[0].run(board, deadline, maxPlayouts);
+    stopSignal.set(true);
+    for (Future<?> future : futures) {
+      join(future);
+    }
+    return result(board, Math.min(playouts.get(), maxPlayouts), System.nanoTime() - start);
+  }
+
+  private MonteCarloResult result(GameBoard board, long done, long elapsedNanos) {
+    MoveList moves = new MoveList();
+    int count = new MoveGenerator().generate(board, board.getSideToMove(), moves);
+    if (count == 0) {
+      return new MonteCarloResult(new int[0], 0, 0, done, used.get(), elapsedNanos);
+    }
+    int first = children.get(ROOT);
+    int best = 0;
+    long bestStats = 0;
+    for (int k = 0; first > 0 && k < count; ++k) {
+      long nodeStats = stats.get(first + k);
+      if (visits(nodeStats) > visits(bestStats)) {
+        best = k;
+        bestStats = nodeStats;
+      }
+    }
+    int[] path = new int[moves.getLength(best)];
+    for (int k = 0; k < path.length; ++k) {
+      path[k] = moves.getSquare(best, k);
+    }
+    long visits = visits(bestStats);
+    double winRate = visits == 0 ? 0 : (bestStats & SCORE_MASK) / (double) (WIN * visits);
+    return new MonteCarloResult(path, winRate, visits, done, Math.min(used.get(), capacity), elapsedNanos);
+  }
+
+  private static long visits(long nodeStats) {
+    return nodeStats >>> Integer.SIZE;
+  }
+
+  private static void join(Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting for a worker", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("playout worker failed", e.getCause());
+    }
+  }
+
+  /**
+   * Adds the children of a node once it has enough visits, unless another worker does it first.
+   *
+   * @param count number of legal moves of the node
+   * @return the first child, or a negative state if the node stays a leaf for now
+   */
+  private int expand(int node, int count) {
+    if (count == 0) {
+      children.compareAndSet(node, UNEXPANDED, TERMINAL);
+      return TERMINAL;
+    }
+    if (visits(stats.get(node)) < EXPAND_VISITS || !children.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+      return EXPANDING;
+    }
+    int first = used.getAndAdd(count);
+    if (first > capacity - count) {
+      children.set(node, NO_ROOM);
+      return NO_ROOM;
+    }
+    for (int k = first; k < first + count; ++k) {
+      stats.set(k, 0);
+      children.set(k, UNEXPANDED);
+    }
+    childCounts[node] = count;
+    children.set(node, first);
+    return first;
+  }
+
+  /**
+   * Picks the child with the best upper confidence bound, an unvisited one first.
+   */
+  private int select(int node, int first) {
+    double logVisits = Math.log(visits(stats.get(node)));
+    int best = first;
+    double bestValue = Double.NEGATIVE_INFINITY;
+    for (int child = first; child < first + childCounts[node]; ++child) {
+      long childStats = stats.get(child);
+      long visits = visits(childStats);
+      if (visits == 0) {
+        return child;
+      }
+      double value = (childStats & SCORE_MASK) / (double) (WIN * visits) + EXPLORATION * Math.sqrt(logVisits / visits);
+      if (value > bestValue) {
+        bestValue = value;
+        best = child;
+      }
+    }
+    return best;
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  public static void main(String[] args) {
+    long millis = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_MILLIS;
+    int[] threadCounts = DEFAULT_THREADS;
+    if (args.length > 1) {
+      threadCounts = new int[args.length - 1];
+      for (int k = 1; k < args.length; ++k) {
+        threadCounts[k - 1] = Integer.parseInt(args[k]);
+      }
+    }
+    for (int threads : threadCounts) {
+      try (MonteCarloSearch search = new MonteCarloSearch(SpeedupSuite.TABLE_MEGABYTES, threads)) {
+        long playoutCount = 0;
+        long nanos = 0;
+        for (String[] position : SpeedupSuite.POSITIONS) {
+          GameBoard board = new GameBoard();
+          Main.fillBoard(board, position[0]);
+          Main.fillBoard(board, position[1]);
+          board.setSideToMove("w".equals(position[2]) ? Color.WHITE : Color.BLACK);
+          MonteCarloResult result = search.search(board, millis, Long.MAX_VALUE);
+          playoutCount += result.getPlayouts();
+          nanos += result.getElapsedNanos();
+        }
+        System.out.printf("threads %2d: %10d playouts, %9d playouts/s%n", threads, playoutCount,
+                playoutCount * NANOS_PER_SECOND / nanos);
+      }
+    }
+  }
+
+  /**
+   * Scratch objects of one thread.
+   */
+  private final class Worker {
+    private final MoveGenerator generator = new MoveGenerator();
+    private final MoveList moves = new MoveList();
+    private int[] path = new int[INITIAL_PATH];
+    private long seed;
+
+    Worker(int index) {
+      seed = index * SEED_MIX;
+    }
+
+    void run(GameBoard board, long deadline, long maxPlayouts) {
+      while (!stopSignal.get()) {
+        if (System.nanoTime() > deadline) {
+          stopSignal.set(true);
+        } else if (playouts.getAndIncrement() < maxPlayouts) {
+          iterate(board);
+        } else {
+          stopSignal.set(true);
+        }
+      }
+    }
+
+    /**
+     * Walks down the tree from the root, plays out the leaf reached and adds the result to the path.
+     */
+    private void iterate(GameBoard board) {
+      int node = ROOT;
+      int depth = 0;
+      stats.getAndAdd(ROOT, VISIT);
+      path[depth++] = ROOT;
+      while (true) {
+        int first = children.get(node);
+        if (first == UNEXPANDED) {
+          first = expand(node, generator.generate(board, board.getSideToMove(), moves));
+        } else if (first > 0) {
+          generator.generate(board, board.getSideToMove(), moves);
+        }
+        if (first <= 0) {
+          break;
+        }
+        int child = select(node, first);
+        board.makeMove(moves, child - first);
+        stats.getAndAdd(child, VISIT);
+        if (depth == path.length) {
+          path = Arrays.copyOf(path, depth * 2);
+        }
+        path[depth++] = child;
+        node = child;
+      }
+      // the score of a node counts for the side that moved into it
+      int score = WIN - playout(board);
+      for (int k = depth - 1; k >= 0; --k) {
+        stats.getAndAdd(path[k], score);
+        score = WIN - score;
+        if (k > 0) {
+          board.unmakeMove();
+        }
+      }
+    }
+
+    /**
+     * Plays random moves until a side cannot move, then takes them back.
+     *
+     * @return the result for the side to move at the start, in half-points
+     */
+    private int playout(GameBoard board) {
+      Color side = board.getSideToMove();
+      int result = DRAW;
+      int plies = 0;
+      for (; plies < MAX_PLAYOUT_PLIES; ++plies) {
+        int count = generator.generate(board, board.getSideToMove(), moves);
+        if (count == 0) {
+          result = board.getSideToMove() == side ? LOSS : WIN;
+          break;
+        }
+        board.makeMove(moves, random(count));
+      }
+      for (; plies > 0; --plies) {
+        board.unmakeMove();
+      }
+      return result;
+    }
+
+    /**
+     * Returns a random number below the bound from a xorshift generator.
+     */
+    private int random(int bound) {
+      seed ^= seed << XORSHIFT_A;
+      seed ^= seed >>> XORSHIFT_B;
+      seed ^= seed << XORSHIFT_C;
+      return (int) (((seed >>> Integer.SIZE) * bound) >>> Integer.SIZE);
+    }
+  }
+}
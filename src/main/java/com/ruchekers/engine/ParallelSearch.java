@@ -0,0 +1,120 @@
+package com.ruchekers.engine;
+
+import com.ruchekers.GameBoard;
+import com.ruchekers.Tablebase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Lazy SMP search: helper threads search their own copies of the board with the same limits
+ * and share the transposition table with the main search, which decides the move.
+ * The helpers stop as soon as the main search is done.
+ */
+public final class ParallelSearch implements AutoCloseable {
+  private final TranspositionTable table;
+  private final AtomicBoolean stopSignal = new AtomicBoolean();
+  private final Search main;
+  private final Search[] helpers;
+  private final ExecutorService executor;
+
+  /**
+   * Creates a search running on the given number of threads, the calling one included.
+   *
+   * @param table   table shared by all threads
+   * @param threads number of threads, at least 1
+   */
+  public ParallelSearch(TranspositionTable table, int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive");
+    }
+    this.table = table;
+    main = new Search(table, stopSignal);
+    helpers = new Search[threads - 1];
+    for (int k = 0; k < helpers.length; ++k) {
+      helpers[k] = new Search(table, stopSignal);
+    }
+    executor = helpers.length == 0 ? null : Executors.newFixedThreadPool(helpers.length, runnable -> {
+      Thread thread = new Thread(runnable, "search-helper");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public int getThreads() {
+    return helpers.length + 1;
+  }
+
+  /**
+   * Lets every thread read exact results from an endgame tablebase, see {@link Search#setTablebase(Tablebase)}.
+   */
+  public void setTablebase(Tablebase tablebase) {
+    main.setTablebase(tablebase);
+    for (Search helper : helpers) {
+      helper.setTablebase(tablebase);
+    }
+  }
+
+  /**
+   * Lets a caller follow the main search, see {@link Search#setListener(Consumer)}. The nodes reported are those
+   * of the main thread only.
+   */
+  public void setListener(Consumer<SearchResult> listener) {
+    main.setListener(listener);
+  }
+
+  public void stop() {
+    stopSignal.set(true);
+  }
+
+  /**
+   * Searches the position for the side to move.
+   *
+   * @param board  position to search, restored before returning
+   * @param limits depth and time limits
+   * @return the result of the main search, with the nodes of all threads
+   */
+  public SearchResult search(GameBoard board, SearchLimits limits) {
+    stopSignal.set(false);
+    table.newSearch();
+    List<Future<SearchResult>> futures = new ArrayList<>(helpers.length);
+    for (int k = 0; k < helpers.length; ++k) {
+      Search helper = helpers[k];
+      GameBoard copy = board.copy();
+      int index = k + 1;
+      futures.add(executor.submit(() -> helper.run(copy, limits, index)));
+    }
+    SearchResult result = main.run(board, limits, 0);
+    stopSignal.set(true);
+    long nodes = result.getNodes();
+    for (Future<SearchResult> future : futures) {
+      nodes += join(future).getNodes();
+    }
+    return new SearchResult(result.getBestPath(), result.getScore(), result.getDepth(), nodes,
+            result.getElapsedNanos());
+  }
+
+  private static SearchResult join(Future<SearchResult> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting for a helper", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("helper search failed", e.getCause());
+    }
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+}
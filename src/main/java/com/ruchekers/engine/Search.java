@@ -0,0 +1,288 @@
+package com.ruchekers.engine;
+
+import com.ruchekers.GameBoard;
+import com.ruchekers.MoveGenerator;
+import com.ruchekers.MoveList;
+import com.ruchekers.Tablebase;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Negamax alpha-beta search with iterative deepening over a {@link GameBoard}.
+ * Moves are played and taken back in place, so the board is back in its original state
+ * when {@link #search(GameBoard, SearchLimits)} returns. Captures are mandatory and come
+ * as complete chains, so positions with a capture pending are searched past the nominal depth.
+ * A search instance keeps per-ply buffers and must not be used by two threads at once.
+ */
+public final class Search {
+  public static final int WIN = 30000;
+  public static final int WIN_THRESHOLD = WIN - SearchLimits.MAX_DEPTH * 2;
+
+  private static final int INFINITY = WIN + 1;
+  private static final int MAX_PLY = SearchLimits.MAX_DEPTH * 2;
+  private static final int CHECK_MASK = 0x3FF;
+  private static final long NANOS_PER_MILLI = 1_000_000L;
+
+  private final TranspositionTable table;
+  private final Evaluator evaluator = new Evaluator();
+  private final MoveGenerator generator = new MoveGenerator();
+  private final MoveList[] lists = new MoveList[MAX_PLY + 1];
+  private final AtomicBoolean stopSignal;
+  private final boolean ownsStopSignal;
+  private Tablebase tablebase;
+  private Consumer<SearchResult> listener;
+  private boolean probing;
+  private long nodes;
+  private long deadline;
+  private boolean aborted;
+
+  public Search(TranspositionTable table) {
+    this(table, new AtomicBoolean(), true);
+  }
+
+  /**
+   * Creates a search obeying a stop signal shared with other searches, see {@link ParallelSearch}.
+   */
+  Search(TranspositionTable table, AtomicBoolean stopSignal) {
+    this(table, stopSignal, false);
+  }
+
+  private Search(TranspositionTable table, AtomicBoolean stopSignal, boolean ownsStopSignal) {
+    this.table = table;
+    this.stopSignal = stopSignal;
+    this.ownsStopSignal = ownsStopSignal;
+    for (int ply = 0; ply < lists.length; ++ply) {
+      lists[ply] = new MoveList();
+    }
+  }
+
+  /**
+   * Lets the search read exact results from an endgame tablebase. Pieces are never removed, so either the whole
+   * tree is in the tablebase and the search stops one ply below the root, or the tablebase is not used at all.
+   *
+   * @param tablebase the tablebase or null to search without one
+   */
+  public void setTablebase(Tablebase tablebase) {
+    this.tablebase = tablebase;
+  }
+
+  /**
+   * Lets a caller follow the search: the listener gets the result of every finished iteration, on the searching
+   * thread, while the board is still in use.
+   *
+   * @param listener the listener or null for none
+   */
+  public void setListener(Consumer<SearchResult> listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Asks a running search to return as soon as possible with the result of the last finished iteration.
+   */
+  public void stop() {
+    stopSignal.set(true);
+  }
+
+  /**
+   * Searches the position for the side to move.
+   *
+   * @param board  position to search, restored before returning
+   * @param limits depth and time limits
+   * @return the best move found with its score and statistics
+   */
+  public SearchResult search(GameBoard board, SearchLimits limits) {
+    if (ownsStopSignal) {
+      stopSignal.set(false);
+    }
+    table.newSearch();
+    return run(board, limits, 0);
+  }
+
+  /**
+   * Runs the iterative deepening loop. Helper threads of a parallel search pass a non-zero index,
+   * which makes them start from another root move and search every other depth, the even ones for odd indices
+   * and the odd ones for even indices, so they fill the shared table with different parts of the tree.
+   *
+   * @param board  position to search
+   * @param limits depth and time limits
+   * @param helper index of the helper thread, 0 for the main one
+   * @return the result of the last finished iteration
+   */
+  SearchResult run(GameBoard board, SearchLimits limits, int helper) {
+    long start = System.nanoTime();
+    long budget = limits.getTimeMillis();
+    deadline = budget >= Long.MAX_VALUE / NANOS_PER_MILLI ? Long.MAX_VALUE : start + budget * NANOS_PER_MILLI;
+    aborted = false;
+    nodes = 0;
+    probing = tablebase != null && tablebase.probe(board) != Tablebase.NOT_FOUND;
+
+    MoveList rootMoves = lists[0];
+    int count = generator.generate(board, board.getSideToMove(), rootMoves);
+    if (count == 0) {
+      return new SearchResult(new int[0], -WIN, 0, 1, System.nanoTime() - start);
+    }
+    int[] order = new int[count];
+    for (int move = 0; move < count; ++move) {
+      order[move] = (move + helper) % count;
+    }
+    int bestMove = 0;
+    int bestScore = 0;
+    int completedDepth = 0;
+    int step = helper == 0 ? 1 : 2;
+    for (int depth = 1 + helper % 2; depth <= limits.getDepth(); depth += step) {
+      int alpha = -INFINITY;
+      int iterationBest = order[0];
+      for (int k = 0; k < count; ++k) {
+        board.makeMove(rootMoves, order[k]);
+        int score = -negamax(board, depth - 1, 1, -INFINITY, -alpha);
+        board.unmakeMove();
+        if (aborted) {
+          break;
+        }
+        if (score > alpha) {
+          alpha = score;
+          iterationBest = order[k];
+        }
+      }
+      if (aborted) {
+        break;
+      }
+      bestMove = iterationBest;
+      bestScore = alpha;
+      completedDepth = depth;
+      moveToFront(order, bestMove);
+      table.store(board.getHash(), depth, bestScore, TranspositionTable.EXACT, bestMove);
+      if (listener != null) {
+        listener.accept(new SearchResult(path(rootMoves, bestMove), bestScore, depth, nodes,
+                System.nanoTime() - start));
+      }
+      if (count == 1 || probing || Math.abs(bestScore) > WIN_THRESHOLD) {
+        break;
+      }
+    }
+    return new SearchResult(path(rootMoves, bestMove), bestScore, completedDepth, nodes, System.nanoTime() - start);
+  }
+
+  private static int[] path(MoveList moves, int move) {
+    int[] path = new int[moves.getLength(move)];
+    for (int k = 0; k < path.length; ++k) {
+      path[k] = moves.getSquare(move, k);
+    }
+    return path;
+  }
+
+  private int negamax(GameBoard board, int depth, int ply, int alpha, int beta) {
+    ++nodes;
+    if ((nodes & CHECK_MASK) == 0 && (stopSignal.get() || System.nanoTime() > deadline)) {
+      aborted = true;
+    }
+    if (aborted) {
+      return 0;
+    }
+    if (probing) {
+      return tablebaseScore(tablebase.probe(board), ply);
+    }
+    if (ply >= MAX_PLY) {
+      return evaluator.evaluate(board);
+    }
+
+    long key = board.getHash();
+    long entry = table.probe(key);
+    int hashMove = -1;
+    if (entry != TranspositionTable.MISS) {
+      hashMove = TranspositionTable.move(entry);
+      if (TranspositionTable.depth(entry) >= Math.max(depth, 0)) {
+        int score = fromTable(TranspositionTable.score(entry), ply);
+        int bound = TranspositionTable.bound(entry);
+        if (bound == TranspositionTable.EXACT
+                || bound == TranspositionTable.LOWER && score >= beta
+                || bound == TranspositionTable.UPPER && score <= alpha) {
+          return score;
+        }
+      }
+    }
+
+    MoveList moves = lists[ply];
+    int count = generator.generate(board, board.getSideToMove(), moves);
+    if (count == 0) {
+      return -WIN + ply;
+    }
+    if (depth <= 0 && !moves.isCapture(0)) {
+      return evaluator.evaluate(board);
+    }
+    if (hashMove >= count) {
+      hashMove = -1;
+    }
+
+    int originalAlpha = alpha;
+    int best = -INFINITY;
+    int bestMove = 0;
+    for (int k = -1; k < count; ++k) {
+      int move = k == -1 ? hashMove : k;
+      if (move == -1 || k >= 0 && move == hashMove) {
+        continue;
+      }
+      board.makeMove(moves, move);
+      int score = -negamax(board, depth - 1, ply + 1, -beta, -alpha);
+      board.unmakeMove();
+      if (aborted) {
+        return 0;
+      }
+      if (score > best) {
+        best = score;
+        bestMove = move;
+        if (score > alpha) {
+          alpha = score;
+          if (alpha >= beta) {
+            break;
+          }
+        }
+      }
+    }
+
+    int bound;
+    if (best <= originalAlpha) {
+      bound = TranspositionTable.UPPER;
+    } else if (best >= beta) {
+      bound = TranspositionTable.LOWER;
+    } else {
+      bound = TranspositionTable.EXACT;
+    }
+    table.store(key, Math.max(depth, 0), toTable(best, ply), bound, bestMove);
+    return best;
+  }
+
+  private static int tablebaseScore(int value, int ply) {
+    if (Tablebase.isWin(value)) {
+      return WIN - ply - Tablebase.distance(value);
+    }
+    return Tablebase.isLoss(value) ? -WIN + ply + Tablebase.distance(value) : 0;
+  }
+
+  private static void moveToFront(int[] order, int move) {
+    int k = 0;
+    while (order[k] != move) {
+      ++k;
+    }
+    System.arraycopy(order, 0, order, 1, k);
+    order[0] = move;
+  }
+
+  /**
+   * Stores win scores relative to the current node, so they stay valid when the position is reached at another ply.
+   */
+  private static int toTable(int score, int ply) {
+    if (score > WIN_THRESHOLD) {
+      return score + ply;
+    }
+    return score < -WIN_THRESHOLD ? score - ply : score;
+  }
+
+  private static int fromTable(int score, int ply) {
+    if (score > WIN_THRESHOLD) {
+      return score - ply;
+    }
+    return score < -WIN_THRESHOLD ? score + ply : score;
+  }
+}
@@ -0,0 +1,33 @@
+package com.ruchekers.engine;
+
+/**
+ * Limits of a search: the deepest iteration in plies and the time budget in milliseconds.
+ */
+public final class SearchLimits {
+  public static final int MAX_DEPTH = 48;
+  public static final long NO_TIME_LIMIT = Long.MAX_VALUE;
+
+  private final int depth;
+  private final long timeMillis;
+
+  public SearchLimits(int depth, long timeMillis) {
+    this.depth = Math.max(1, Math.min(depth, MAX_DEPTH));
+    this.timeMillis = timeMillis;
+  }
+
+  public static SearchLimits depth(int depth) {
+    return new SearchLimits(depth, NO_TIME_LIMIT);
+  }
+
+  public static SearchLimits time(long timeMillis) {
+    return new SearchLimits(MAX_DEPTH, timeMillis);
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public long getTimeMillis() {
+    return timeMillis;
+  }
+}
@@ -0,0 +1,57 @@
+package com.ruchekers.engine;
+
+/**
+ * Outcome of a search: the best move found, its score and the effort spent.
+ */
+public final class SearchResult {
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+  private final int[] bestPath;
+  private final int score;
+  private final int depth;
+  private final long nodes;
+  private final long elapsedNanos;
+
+  SearchResult(int[] bestPath, int score, int depth, long nodes, long elapsedNanos) {
+    this.bestPath = bestPath;
+    this.score = score;
+    this.depth = depth;
+    this.nodes = nodes;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Returns the squares of the best move as in {@link com.ruchekers.MoveList#getSquare(int, int)},
+   * or an empty array if the side to move has no legal move.
+   */
+  public int[] getBestPath() {
+    return bestPath.clone();
+  }
+
+  /**
+   * Returns the score in centipawns from the point of view of the side to move.
+   * Scores beyond {@link Search#WIN_THRESHOLD} in absolute value mean a forced win or loss.
+   */
+  public int getScore() {
+    return score;
+  }
+
+  /**
+   * Returns the depth of the last completed iteration.
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  public long getNodes() {
+    return nodes;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public long getNodesPerSecond() {
+    return elapsedNanos == 0 ? 0 : nodes * NANOS_PER_SECOND / elapsedNanos;
+  }
+}
@@ -0,0 +1,75 @@
+package com.ruchekers.engine;
+
+import com.ruchekers.Color;
+import com.ruchekers.GameBoard;
+import com.ruchekers.Main;
+
+/**
+ * Measures the speedup of {@link ParallelSearch} on a fixed set of positions.
+ * Usage: {@code SpeedupSuite [depth] [threads...]}, by default depth 12 and 1, 2, 4, 8 and 16 threads.
+ * Every position is searched to the same depth with an empty table, the time to depth is compared
+ * with the first thread count. A single-threaded pass runs first to warm the JIT up.
+ */
+public final class SpeedupSuite {
+  static final String[][] POSITIONS = {
+      {"a1_w c1_w e1_w g1_w b2_w d2_w f2_w h2_w a3_w c3_w e3_w g3_w",
+          "b6_b d6_b f6_b h6_b a7_b c7_b e7_b g7_b b8_b d8_b f8_b h8_b", "w"},
+      {"a1_w c1_w e1_w b2_w f2_w h2_w c3_w e3_w g3_w b4_w", "b6_b d6_b h6_b a7_b c7_b e7_b g7_b d8_b f8_b f4_b", "w"},
+      {"c1_w e1_w d2_w c3_wb g3_wbb f4_w", "b6_bww d6_b f6_b c7_b e7_b g7_b", "b"},
+      {"c3_wbb e5_Wb a1_w g1_w", "f6_bww h8_B d8_b b6_b", "w"},
+  };
+  private static final int[] DEFAULT_THREADS = {1, 2, 4, 8, 16};
+  private static final int DEFAULT_DEPTH = 12;
+  static final int TABLE_MEGABYTES = 64;
+  private static final double NANOS_PER_MILLI = 1e6;
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+  private SpeedupSuite() {
+
+  }
+
+  public static void main(String[] args) {
+    int depth = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+    int[] threadCounts = DEFAULT_THREADS;
+    if (args.length > 1) {
+      threadCounts = new int[args.length - 1];
+      for (int k = 1; k < args.length; ++k) {
+        threadCounts[k - 1] = Integer.parseInt(args[k]);
+      }
+    }
+    runSuite(depth, 1);
+    double baseline = 0;
+    for (int threads : threadCounts) {
+      long[] totals = runSuite(depth, threads);
+      if (baseline == 0) {
+        baseline = totals[0];
+      }
+      System.out.printf("threads %2d: %8.1f ms, %10d nodes, %9d nps, speedup %.2f%n", threads,
+              totals[0] / NANOS_PER_MILLI, totals[1], totals[1] * NANOS_PER_SECOND / totals[0], baseline / totals[0]);
+    }
+  }
+
+  /**
+   * Searches every position of the suite.
+   *
+   * @return total time in nanoseconds and total nodes
+   */
+  private static long[] runSuite(int depth, int threads) {
+    long totalNanos = 0;
+    long totalNodes = 0;
+    TranspositionTable table = new TranspositionTable(TABLE_MEGABYTES);
+    try (ParallelSearch search = new ParallelSearch(table, threads)) {
+      for (String[] position : POSITIONS) {
+        GameBoard board = new GameBoard();
+        Main.fillBoard(board, position[0]);
+        Main.fillBoard(board, position[1]);
+        board.setSideToMove("w".equals(position[2]) ? Color.WHITE : Color.BLACK);
+        table.clear();
+        SearchResult result = search.search(board, SearchLimits.depth(depth));
+        totalNanos += result.getElapsedNanos();
+        totalNodes += result.getNodes();
+      }
+    }
+    return new long[] {totalNanos, totalNodes};
+  }
+}
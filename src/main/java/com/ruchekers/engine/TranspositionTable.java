@@ -0,0 +1,148 @@
+package com.ruchekers.engine;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size hash table of search results shared without locks.
+ * Every entry is two longs: the data and the position hash XOR-ed with the data, so an entry torn
+ * by concurrent writers simply fails the key check. Buckets hold two entries: the first one keeps
+ * the deepest result of the current search, the second one is always replaced.
+ */
+public final class TranspositionTable {
+  static final long MISS = 0;
+  static final int EXACT = 0;
+  static final int LOWER = 1;
+  static final int UPPER = 2;
+
+  private static final int LONGS_PER_BUCKET = 4;
+  private static final int BYTES_PER_BUCKET = LONGS_PER_BUCKET * Long.BYTES;
+  private static final int BYTES_PER_MEGABYTE = 1024 * 1024;
+  /** Most buckets a table holds, the largest power of two whose slots fit in one array. */
+  private static final long MAX_BUCKETS = Integer.highestOneBit(Integer.MAX_VALUE / LONGS_PER_BUCKET);
+
+  private static final int SCORE_BITS = 16;
+  private static final int SCORE_OFFSET = 1 << (SCORE_BITS - 1);
+  private static final long SCORE_MASK = (1L << SCORE_BITS) - 1;
+  private static final int DEPTH_SHIFT = SCORE_BITS;
+  private static final long DEPTH_MASK = 0xFF;
+  private static final int BOUND_SHIFT = 24;
+  private static final long BOUND_MASK = 3;
+  private static final int MOVE_SHIFT = 26;
+  private static final long MOVE_MASK = 0x3FF;
+  private static final int AGE_SHIFT = 36;
+  private static final int AGE_MASK = 0x3F;
+  private static final long VALID = Long.MIN_VALUE;
+  private static final int PERMILLE = 1000;
+
+  private final long[] slots;
+  private final int bucketMask;
+  private int age;
+
+  /**
+   * Creates a table using at most the given amount of memory, rounded down to a power of two of buckets, and
+   * at most {@link #getMaxMegabytes()}.
+   *
+   * @param megabytes size of the table
+   */
+  public TranspositionTable(int megabytes) {
+    int count = buckets(megabytes);
+    slots = new long[count * LONGS_PER_BUCKET];
+    bucketMask = count - 1;
+  }
+
+  /**
+   * Returns the number of buckets of a table of the given size, computed in long so that no size overflows.
+   */
+  static int buckets(int megabytes) {
+    long buckets = Math.max(1L, (long) megabytes * BYTES_PER_MEGABYTE / BYTES_PER_BUCKET);
+    return (int) Math.min(Long.highestOneBit(buckets), MAX_BUCKETS);
+  }
+
+  /**
+   * Returns the size of the largest table, in megabytes.
+   */
+  public static int getMaxMegabytes() {
+    return (int) (MAX_BUCKETS * BYTES_PER_BUCKET / BYTES_PER_MEGABYTE);
+  }
+
+  public void clear() {
+    Arrays.fill(slots, 0);
+    age = 0;
+  }
+
+  /**
+   * Marks the start of a new search, so results of older searches are replaced first.
+   */
+  void newSearch() {
+    age = (age + 1) & AGE_MASK;
+  }
+
+  /**
+   * Looks a position up.
+   *
+   * @param key hash of the position
+   * @return the packed entry or {@link #MISS}
+   */
+  long probe(long key) {
+    int base = bucket(key);
+    for (int slot = base; slot < base + LONGS_PER_BUCKET; slot += 2) {
+      long data = slots[slot + 1];
+      if ((slots[slot] ^ data) == key && data != MISS) {
+        return data;
+      }
+    }
+    return MISS;
+  }
+
+  void store(long key, int depth, int score, int bound, int move) {
+    long data = VALID | (long) age << AGE_SHIFT | (move & MOVE_MASK) << MOVE_SHIFT
+            | (long) bound << BOUND_SHIFT | (long) depth << DEPTH_SHIFT | (score + SCORE_OFFSET) & SCORE_MASK;
+    int slot = bucket(key);
+    long old = slots[slot + 1];
+    boolean sameKey = (slots[slot] ^ old) == key;
+    if (!sameKey && old != MISS && age(old) == age && depth(old) > depth) {
+      slot += 2;
+    }
+    slots[slot + 1] = data;
+    slots[slot] = key ^ data;
+  }
+
+  /**
+   * Returns how full the table is, in permille, judging by the first thousand buckets.
+   */
+  public int usagePermille() {
+    int sample = Math.min(bucketMask + 1, PERMILLE);
+    int used = 0;
+    for (int bucket = 0; bucket < sample; ++bucket) {
+      long data = slots[bucket * LONGS_PER_BUCKET + 1];
+      if (data != MISS && age(data) == age) {
+        ++used;
+      }
+    }
+    return used * PERMILLE / sample;
+  }
+
+  private int bucket(long key) {
+    return ((int) key & bucketMask) * LONGS_PER_BUCKET;
+  }
+
+  static int score(long data) {
+    return (int) (data & SCORE_MASK) - SCORE_OFFSET;
+  }
+
+  static int depth(long data) {
+    return (int) (data >>> DEPTH_SHIFT & DEPTH_MASK);
+  }
+
+  static int bound(long data) {
+    return (int) (data >>> BOUND_SHIFT & BOUND_MASK);
+  }
+
+  static int move(long data) {
+    return (int) (data >>> MOVE_SHIFT & MOVE_MASK);
+  }
+
+  private static int age(long data) {
+    return (int) (data >>> AGE_SHIFT) & AGE_MASK;
+  }
+}
@@ -0,0 +1,64 @@
+package com.ruchekers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public class BatchAdjudicatorTest {
+  private static final String WHITE = Main.INITIAL_WHITE;
+  private static final String BLACK = Main.INITIAL_BLACK;
+
+  @Test
+  public void adjudicateTest() {
+    GameBoard board = new GameBoard();
+    Assertions.assertThat(BatchAdjudicator.adjudicate(board,
+            List.of(WHITE, BLACK, "c3_w-d4_w f6_b-e5_b", "d4_w:f6_wb g7_b:e5_bw"), null))
+            .startsWith("ok a1_w ").contains(" e5_bw ").contains(" | ");
+    Assertions.assertThat(BatchAdjudicator.adjudicate(board,
+            List.of(WHITE, BLACK, "c3_w-d4_w f6_b-e5_b", "a3_w-b4_w g7_b-f6_b"), null))
+            .isEqualTo("invalid move at 3");
+    Assertions.assertThat(BatchAdjudicator.adjudicate(board, List.of(WHITE, BLACK, "c3_w-c4_w f6_b-e5_b"), null))
+            .isEqualTo("white cell at 1");
+    Assertions.assertThat(BatchAdjudicator.adjudicate(board, List.of("c3_w", "d4_b", "c3_w:e5_wb"), null))
+            .isEqualTo("ok e5_wb |  | white wins (no towers)");
+    Assertions.assertThat(BatchAdjudicator.adjudicate(board, List.of("c3_" + "w".repeat(30), "d4_b"), null))
+            .isEqualTo("error at 0");
+    Assertions.assertThat(BatchAdjudicator.adjudicate(board, Arrays.asList(null, "d4_b"), null))
+            .isEqualTo("error at 0");
+    String shuffle = "a1_W-b2_W h6_B-g5_B\nb2_W-a1_W g5_B-h6_B";
+    Assertions.assertThat(BatchAdjudicator.adjudicate(board,
+            List.of(("a1_W\nh6_B\n" + shuffle + "\n" + shuffle).split("\n")), null))
+            .isEqualTo("ok a1_W | h6_B | draw (threefold repetition)");
+  }
+
+  @Test
+  public void orderTest(@TempDir Path directory) throws IOException {
+    StringBuilder games = new StringBuilder();
+    for (int k = 0; k < 500; ++k) {
+      games.append(WHITE).append('\n').append(BLACK).append('\n');
+      games.append(k % 2 == 0 ? "c3_w-d4_w f6_b-e5_b" : "c3_w-b3_w").append("\n\n");
+    }
+    Files.writeString(directory.resolve("b.txt"), games);
+    Files.writeString(directory.resolve("a.txt"), "\n" + WHITE + "\n" + BLACK + "\nc3_w-d4_w f6_b-e5_b\n");
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (BatchAdjudicator adjudicator = new BatchAdjudicator(4)) {
+      adjudicator.run(directory, new PrintStream(output, true));
+      Assertions.assertThat(adjudicator.getGames()).isEqualTo(501);
+      Assertions.assertThat(adjudicator.getRejected()).isEqualTo(250);
+    }
+    String[] lines = output.toString().split("\n");
+    Assertions.assertThat(lines).hasSize(501);
+    Assertions.assertThat(lines[0]).startsWith("a.txt:2 ok ");
+    for (int k = 0; k < 500; ++k) {
+      Assertions.assertThat(lines[k + 1]).startsWith("b.txt:" + (4 * k + 1) + (k % 2 == 0 ? " ok " : " white cell at 1"));
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package com.ruchekers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class BatchValidatorTest {
+  private static long move(String... cells) {
+    int[] squares = new int[cells.length];
+    for (int k = 0; k < cells.length; ++k) {
+      squares[k] = Bitboards.square(cells[k].charAt(0) - 'a' + 1, cells[k].charAt(1) - '0');
+    }
+    return OpeningBook.pack(squares, squares.length);
+  }
+
+  @Test
+  public void validateTest() {
+    GameBoard pending = Boards.board("a1_w c1_w b2_w a3_w g3_w e1_w", "f4_b b8_b d8_b");
+    GameBoard chain = Boards.board("b4_w h2_w", "c5_b e7_b g7_b e3_b");
+    long[] moves = {move("g3", "e5"), move("a3", "b4"), move("a3", "b2"), move("a3", "a4"), move("c3", "d4"),
+        move("b4", "d6", "f8", "h6", "d2"), move("b4", "d6", "f8"), move("b4")};
+    GameBoard[] boards = {pending, pending, pending, pending, pending, chain, chain, chain};
+    int copies = 2000;
+    long[] positions = new long[copies * moves.length * BatchValidator.POSITION_LONGS];
+    long[] allMoves = new long[copies * moves.length];
+    for (int k = 0; k < allMoves.length; ++k) {
+      BatchValidator.packPosition(boards[k % moves.length], positions, k * BatchValidator.POSITION_LONGS);
+      allMoves[k] = moves[k % moves.length];
+    }
+    long[] before = positions.clone();
+    MoveVerdict[] verdicts;
+    try (BatchValidator validator = new BatchValidator(3)) {
+      verdicts = validator.validate(positions, allMoves);
+    }
+    MoveVerdict[] expected = {MoveVerdict.LEGAL, MoveVerdict.INVALID_MOVE, MoveVerdict.BUSY_CELL,
+        MoveVerdict.WHITE_CELL, MoveVerdict.ERROR, MoveVerdict.LEGAL, MoveVerdict.INVALID_MOVE, MoveVerdict.ERROR};
+    for (int k = 0; k < verdicts.length; k += moves.length) {
+      Assertions.assertThat(Arrays.copyOfRange(verdicts, k, k + moves.length)).containsExactly(expected);
+    }
+    Assertions.assertThat(positions).isEqualTo(before);
+  }
+
+  @Test
+  public void sideToMoveTest() {
+    GameBoard board = Boards.board("c3_w", "f6_b");
+    board.setSideToMove(Color.BLACK);
+    long[] position = new long[BatchValidator.POSITION_LONGS];
+    BatchValidator.packPosition(board, position, 0);
+    Assertions.assertThat(position[BatchValidator.DARK_SQUARES]).isEqualTo(1);
+    try (BatchValidator validator = new BatchValidator(1)) {
+      Assertions.assertThat(validator.validate(position, new long[] {move("f6", "e5")}))
+              .containsExactly(MoveVerdict.LEGAL);
+      Assertions.assertThat(validator.validate(position, new long[] {move("c3", "d4")}))
+              .containsExactly(MoveVerdict.INVALID_MOVE);
+      Assertions.assertThatThrownBy(() -> validator.validate(position, new long[2]))
+              .isInstanceOf(IllegalArgumentException.class);
+    }
+  }
+
+  @Test
+  public void malformedPositionTest() {
+    GameBoard board = Boards.board("a1_w", "");
+    long[] position = new long[BatchValidator.POSITION_LONGS];
+    BatchValidator.packPosition(board, position, 0);
+    long tower = position[0];
+    try (BatchValidator validator = new BatchValidator(1)) {
+      Assertions.assertThat(validator.validate(position, new long[] {move("a1", "b2")}))
+              .containsExactly(MoveVerdict.LEGAL);
+      position[0] = -1L;
+      Assertions.assertThat(validator.validate(position, new long[] {move("a1", "b2")}))
+              .containsExactly(MoveVerdict.ERROR);
+      position[0] = tower | 1L << 10;
+      Assertions.assertThat(validator.validate(position, new long[] {move("a1", "b2")}))
+              .containsExactly(MoveVerdict.ERROR);
+      position[0] = tower;
+      position[BatchValidator.DARK_SQUARES] = 2;
+      Assertions.assertThat(validator.validate(position, new long[] {move("a1", "b2")}))
+              .containsExactly(MoveVerdict.ERROR);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package com.ruchekers;
+
+/**
+ * Positions shared by the tests, set up as by {@link Main#fillBoard(GameBoard, String)}.
+ */
+public final class Boards {
+  private Boards() {
+
+  }
+
+  public static GameBoard board(String whiteCoords, String blackCoords) {
+    GameBoard board = new GameBoard();
+    Main.fillBoard(board, whiteCoords);
+    Main.fillBoard(board, blackCoords);
+    return board;
+  }
+
+  public static GameBoard board(String whiteCoords, String blackCoords, Color sideToMove) {
+    GameBoard board = board(whiteCoords, blackCoords);
+    board.setSideToMove(sideToMove);
+    return board;
+  }
+
+  /**
+   * Returns the starting position of {@link Main#INITIAL_WHITE} and {@link Main#INITIAL_BLACK}.
+   */
+  public static GameBoard initialBoard() {
+    return board(Main.INITIAL_WHITE, Main.INITIAL_BLACK);
+  }
+}
@@ -0,0 +1,73 @@
+package com.ruchekers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+
+public class GameArchiveTest {
+  private static final List<String> OPENING = List.of(
+          Main.INITIAL_WHITE,
+          Main.INITIAL_BLACK,
+          "c3_w-d4_w f6_b-e5_b",
+          "d4_w:f6_wb g7_b:e5_bw");
+  private static final List<String> CHAIN = List.of(
+          "b4_w h2_w e1_WbbwbwbbwbwBBwbwbbwbbbwbwbwbb",
+          "",
+          "b4_w:d6_wb:f8_Wbb:h6_Wbbb:d2_Wbbbb");
+
+  @Test
+  public void textRoundTripTest() {
+    for (List<String> lines : List.of(OPENING, CHAIN)) {
+      ArchivedGame game = ArchivedGame.fromText(lines);
+      ByteBuffer buffer = ByteBuffer.allocate(game.encodedSize());
+      game.encode(buffer);
+      Assertions.assertThat(buffer.hasRemaining()).isFalse();
+      buffer.flip();
+      Assertions.assertThat(ArchivedGame.decode(buffer).toText()).isEqualTo(lines);
+    }
+    ArchivedGame chain = ArchivedGame.fromText(CHAIN);
+    Assertions.assertThat(chain.getHalfMoves()).isEqualTo(1);
+    Assertions.assertThat(chain.isCapture(0)).isTrue();
+    Assertions.assertThat(chain.getMoveLength(0)).isEqualTo(5);
+    Assertions.assertThat(chain.getMoveText(0)).isEqualTo(CHAIN.get(2));
+  }
+
+  @Test
+  public void setUpTest() {
+    GameBoard expected = Boards.board(OPENING.get(0), OPENING.get(1));
+    GameBoard board = new GameBoard();
+    ArchivedGame.fromText(OPENING).setUp(board);
+    Assertions.assertThat(board.getHash()).isEqualTo(expected.getHash());
+    Assertions.assertThat(Main.figuresString(board, Color.WHITE)).isEqualTo(Main.figuresString(expected, Color.WHITE));
+  }
+
+  @Test
+  public void syntaxErrorTest() {
+    Assertions.assertThatThrownBy(() -> ArchivedGame.fromText(List.of("a1_w", "b2_b", "a1_w-b2_w c3_w-d4")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("line 3, column 18: expected '_'");
+  }
+
+  @Test
+  public void randomAccessTest(@TempDir Path directory) throws IOException {
+    Path file = directory.resolve("games.rca");
+    int count = 1000;
+    try (GameArchiveWriter writer = new GameArchiveWriter(file)) {
+      for (int game = 0; game < count; ++game) {
+        writer.write(ArchivedGame.fromText(game % 2 == 0 ? OPENING : CHAIN));
+      }
+    }
+    try (GameArchiveReader reader = new GameArchiveReader(file)) {
+      Assertions.assertThat(reader.getGames()).isEqualTo(count);
+      for (int game = count - 1; game >= 0; game -= 7) {
+        Assertions.assertThat(reader.read(game).toText()).isEqualTo(game % 2 == 0 ? OPENING : CHAIN);
+      }
+      Assertions.assertThatThrownBy(() -> reader.read(count)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+  }
+}
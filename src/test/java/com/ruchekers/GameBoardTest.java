@@ -11,6 +11,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Random;
 
 public class GameBoardTest {
   private final static GameBoard board = new GameBoard();
@@ -90,4 +91,99 @@ public class GameBoardTest {
     board.beatWithKing(5, 1, 2, 4);
     Assertions.assertThat(board.getTower(3, 3).size()).isEqualTo(2);
   }
+
+  @Test
+  public void verdictTest() {
+    GameBoard game = Boards.board("a1_w c1_w b2_w a3_w g3_w e1_w", "f4_b b8_b d8_b");
+    long hash = game.getHash();
+    Assertions.assertThat(Main.validate(game, "a3_w-b4_w")).isEqualTo(MoveVerdict.INVALID_MOVE);
+    Assertions.assertThat(Main.validate(game, "a3_w-b2_w")).isEqualTo(MoveVerdict.BUSY_CELL);
+    Assertions.assertThat(Main.validate(game, "a3_w-a4_w")).isEqualTo(MoveVerdict.WHITE_CELL);
+    Assertions.assertThat(Main.validate(game, "c3_w-d4_w")).isEqualTo(MoveVerdict.ERROR);
+    Assertions.assertThat(Main.validate(game, "a3_w-b4")).isEqualTo(MoveVerdict.ERROR);
+    Assertions.assertThat(Main.validate(game, "g3_w:e5_wb")).isEqualTo(MoveVerdict.LEGAL);
+    Assertions.assertThat(game.checkMoveTower(1, 3, 2, 4)).isEqualTo(MoveVerdict.INVALID_MOVE);
+    Assertions.assertThat(game.checkBeatWithTower(7, 3, 5, 5)).isEqualTo(MoveVerdict.LEGAL);
+    Assertions.assertThat(game.getHash()).isEqualTo(hash);
+    Assertions.assertThatThrownBy(() -> Main.processMove(game, "a3_w-b4_w"))
+            .isInstanceOf(InvalidMoveException.class).hasMessage(MoveVerdict.INVALID_MOVE.getMessage());
+    Assertions.assertThat(Main.tryMove(game, "g3_w:e5_wb", 0, 10)).isEqualTo(MoveVerdict.LEGAL);
+    Assertions.assertThat(game.getSideToMove()).isEqualTo(Color.BLACK);
+    Assertions.assertThat(game.getTower(5, 5).size()).isEqualTo(2);
+  }
+
+  @Test
+  public void validateCaptureInPlaceTest() {
+    GameBoard game = Boards.board("c3_w a1_w", "d4_bb f6_b");
+    long hash = game.getHash();
+    Assertions.assertThat(Main.validate(game, "c3_w:e5_wb")).isEqualTo(MoveVerdict.INVALID_MOVE);
+    Assertions.assertThat(Main.validate(game, "c3_w:e5_wb:g7_wbb")).isEqualTo(MoveVerdict.LEGAL);
+    Assertions.assertThat(Main.validate(game, "c3_w:e5_wb:c7_wbb")).isEqualTo(MoveVerdict.ERROR);
+    Assertions.assertThat(game.getHash()).isEqualTo(hash);
+    Assertions.assertThat(game.getTower(4, 4).size()).isEqualTo(2);
+    Assertions.assertThat(game.getTower(6, 6).size()).isEqualTo(1);
+    Assertions.assertThat(game.getTower(5, 5)).isNull();
+    Assertions.assertThat(Main.tryMove(game, "c3_w:e5_wb:g7_wbb", 0, 17)).isEqualTo(MoveVerdict.LEGAL);
+    Assertions.assertThat(game.getTower(4, 4).size()).isEqualTo(1);
+  }
+
+  @Test
+  public void makeUnmakeMoveTest() {
+    GameBoard game = Boards.board("d6_w a1_wb", "e7_b b4_bbw");
+    MoveList moves = new MoveList();
+    new MoveGenerator().generate(game, Color.WHITE, moves);
+    game.makeMove(moves, 0);
+    Assertions.assertThat(game.getTower(1, 3).getContentString()).isEqualTo("Wbb");
+    Assertions.assertThat(game.getTower(2, 4).getContentString()).isEqualTo("bw");
+    Assertions.assertThat(game.getTower(5, 7)).isNull();
+    game.unmakeMove();
+    Assertions.assertThat(game.getTower(4, 6).getContentString()).isEqualTo("w");
+    Assertions.assertThat(game.getTower(5, 7).getContentString()).isEqualTo("b");
+    Assertions.assertThat(game.getTower(2, 4).getContentString()).isEqualTo("bbw");
+    Assertions.assertThat(game.getTower(1, 3)).isNull();
+    Assertions.assertThat(game.getTower(4, 6).getLastBeatLetterOrder()).isEqualTo(0);
+  }
+
+  @Test
+  public void hashTest() {
+    GameBoard game = Boards.board("c3_w e1_wbB", "f6_b d4_bw");
+    GameBoard same = Boards.board("d4_bw f6_b", "e1_wbB c3_w");
+    long initial = game.getHash();
+    Assertions.assertThat(same.getHash()).isEqualTo(initial);
+
+    MoveList moves = new MoveList();
+    new MoveGenerator().generate(game, Color.WHITE, moves);
+    game.makeMove(moves, 0);
+    Assertions.assertThat(game.getHash()).isNotEqualTo(initial);
+    game.unmakeMove();
+    Assertions.assertThat(game.getHash()).isEqualTo(initial);
+
+    same.setSideToMove(Color.BLACK);
+    Assertions.assertThat(same.getHash()).isNotEqualTo(initial);
+  }
+
+  @Test
+  public void capturersTest() {
+    GameBoard game = Boards.initialBoard();
+    MoveGenerator generator = new MoveGenerator();
+    MoveList moves = new MoveList();
+    Random random = new Random(1);
+    for (int ply = 0; ply < 200; ++ply) {
+      Color side = game.getSideToMove();
+      if (generator.generate(game, side, moves) == 0) {
+        break;
+      }
+      game.makeMove(moves, random.nextInt(moves.size()));
+      GameBoard rebuilt = new GameBoard();
+      for (int square = 0; square < Bitboards.SQUARES; ++square) {
+        if (game.getTowerBits(square) != TowerBits.EMPTY) {
+          rebuilt.setTower(Bitboards.letterOf(square), Bitboards.digitOf(square),
+                  new PieceTower(game.getTowerBits(square)));
+        }
+      }
+      for (Color color : Color.values()) {
+        Assertions.assertThat(game.getCapturers(color)).isEqualTo(rebuilt.getCapturers(color));
+      }
+    }
+  }
 }
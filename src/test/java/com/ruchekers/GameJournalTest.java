@@ -0,0 +1,134 @@
+package com.ruchekers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+public class GameJournalTest {
+  @TempDir
+  Path directory;
+
+  private static long create(GameSessionStore store, GameJournal journal) throws IOException {
+    GameBoard board = Boards.initialBoard();
+    long id = store.create(board);
+    journal.created(id, board);
+    return id;
+  }
+
+  private static void play(GameSessionStore store, GameJournal journal, long id, String move) throws IOException {
+    Boolean played = store.withBoard(id, board -> GameServer.replay(board, move));
+    Assertions.assertThat(played).isTrue();
+    journal.moved(id, move);
+  }
+
+  @Test
+  public void recoveryTest() throws IOException {
+    GameSessionStore store = new GameSessionStore(null, Long.MAX_VALUE);
+    long first;
+    long second;
+    try (GameJournal journal = new GameJournal(directory, 2)) {
+      first = create(store, journal);
+      second = create(store, journal);
+      long third = create(store, journal);
+      play(store, journal, first, "c3_w-d4_w");
+      play(store, journal, third, "c3_w-b4_w");
+      journal.checkpoint(store);
+      play(store, journal, first, "f6_b-e5_b");
+      play(store, journal, first, "d4_w:f6_wb");
+      play(store, journal, second, "g3_w-h4_w");
+      store.remove(third);
+      journal.removed(third);
+      Assertions.assertThat(journal.getRecords()).isEqualTo(9);
+      Assertions.assertThat(journal.getCommits()).isBetween(1L, 9L);
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      Assertions.assertThat(files.map(file -> file.getFileName().toString()))
+              .containsExactlyInAnyOrder("2.checkpoint", "2-0.journal", "2-1.journal");
+    }
+    byte[] torn = {0, 0, 0, 42, 0, 0, 0, 0, 1, 2};
+    Files.write(directory.resolve("2-0.journal"), torn, StandardOpenOption.APPEND);
+
+    GameSessionStore recovered = new GameSessionStore(null, Long.MAX_VALUE);
+    try (GameJournal journal = new GameJournal(directory, 2)) {
+      Assertions.assertThat(journal.recover(recovered, 2, GameServer::replay)).isEqualTo(2);
+      for (long id : new long[] {first, second}) {
+        Assertions.assertThat(recovered.withBoard(id, GameBoard::getHash)).isEqualTo(store.withBoard(id,
+                GameBoard::getHash));
+      }
+      Assertions.assertThat(recovered.withBoard(first, GameBoard::getSideToMove)).isEqualTo(Color.BLACK);
+      Assertions.assertThat(recovered.create(Boards.initialBoard())).isEqualTo(4);
+      play(recovered, journal, first, "e7_b:g5_bw");
+      store.withBoard(first, board -> GameServer.replay(board, "e7_b:g5_bw"));
+    }
+
+    GameSessionStore again = new GameSessionStore(null, Long.MAX_VALUE);
+    try (GameJournal journal = new GameJournal(directory, 2)) {
+      Assertions.assertThat(journal.recover(again, 2, GameServer::replay)).isEqualTo(2);
+      Assertions.assertThat(again.withBoard(first, GameBoard::getHash)).isEqualTo(store.withBoard(first,
+              GameBoard::getHash));
+      journal.checkpoint(again);
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      Assertions.assertThat(files.map(file -> file.getFileName().toString()))
+              .containsExactlyInAnyOrder("5.checkpoint", "5-0.journal", "5-1.journal");
+    }
+  }
+
+  @Test
+  public void groupCommitTest() throws Exception {
+    int threads = 8;
+    int moves = 50;
+    GameSessionStore store = new GameSessionStore(null, Long.MAX_VALUE);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try (GameJournal journal = new GameJournal(directory, 1)) {
+      List<Callable<Void>> tasks = new ArrayList<>();
+      for (int k = 0; k < threads; ++k) {
+        long id = store.create(Boards.initialBoard());
+        tasks.add(() -> {
+          journal.created(id, Boards.initialBoard());
+          for (int move = 0; move < moves; ++move) {
+            journal.moved(id, "move " + move);
+          }
+          return null;
+        });
+      }
+      for (Future<Void> task : executor.invokeAll(tasks)) {
+        task.get();
+      }
+      Assertions.assertThat(journal.getRecords()).isEqualTo(threads * (moves + 1));
+      Assertions.assertThat(journal.getCommits()).isLessThanOrEqualTo(journal.getRecords());
+    } finally {
+      executor.shutdownNow();
+    }
+    List<String> replayed = new ArrayList<>();
+    try (GameJournal journal = new GameJournal(directory, 1)) {
+      GameSessionStore recovered = new GameSessionStore(null, Long.MAX_VALUE);
+      Assertions.assertThat(journal.recover(recovered, 4, (board, move) -> {
+        synchronized (replayed) {
+          replayed.add(move);
+        }
+        return true;
+      })).isEqualTo(threads);
+    }
+    Assertions.assertThat(replayed).hasSize(threads * moves).filteredOn("move 49"::equals).hasSize(threads);
+  }
+
+  @Test
+  public void closedTest() throws IOException {
+    GameJournal journal = new GameJournal(directory, 1);
+    journal.close();
+    Assertions.assertThatThrownBy(() -> journal.moved(1, "c3_w-d4_w")).isInstanceOf(IOException.class);
+  }
+}
@@ -0,0 +1,166 @@
+package com.ruchekers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class GameServerTest {
+  private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+  private GameServer server;
+  private URI base;
+
+  @BeforeEach
+  public void start() throws IOException {
+    server = new GameServer(new InetSocketAddress("localhost", 0));
+    server.start();
+    base = URI.create("http://localhost:" + server.getPort());
+  }
+
+  @AfterEach
+  public void stop() {
+    server.close();
+  }
+
+  private HttpResponse<String> send(String method, String path, String body) throws IOException,
+          InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder(base.resolve(path))
+            .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+            .build();
+    return client.send(request, HttpResponse.BodyHandlers.ofString());
+  }
+
+  @Test
+  public void playTest() throws IOException, InterruptedException {
+    HttpResponse<String> created = send("POST", "/games", null);
+    Assertions.assertThat(created.statusCode()).isEqualTo(201);
+    Assertions.assertThat(send("POST", "/games", "c3_" + "w".repeat(30) + "\nd4_b").statusCode()).isEqualTo(400);
+    String game = "/games/" + created.body().trim();
+    Assertions.assertThat(send("GET", game + "/moves", null).body().split("\n")).hasSize(7);
+    HttpResponse<String> played = send("POST", game + "/moves", "c3_w-d4_w");
+    Assertions.assertThat(played.statusCode()).isEqualTo(200);
+    Assertions.assertThat(played.body()).startsWith("a1_w a3_w b2_w c1_w d2_w d4_w e1_w e3_w f2_w g1_w g3_w h2_w\n")
+            .endsWith("\nblack\n");
+    Assertions.assertThat(send("POST", game + "/moves", "e3_w-f4_w").statusCode()).isEqualTo(409);
+    HttpResponse<String> malformed = send("POST", game + "/moves", "f6_b-e5");
+    Assertions.assertThat(malformed.statusCode()).isEqualTo(400);
+    Assertions.assertThat(malformed.body()).isEqualTo("expected '_' at 7\n");
+    Assertions.assertThat(send("POST", game + "/moves", "f6_b-e5_b").statusCode()).isEqualTo(200);
+    Assertions.assertThat(send("GET", game + "/moves", null).body()).isEqualTo("d4_w:f6_wb\n");
+    Assertions.assertThat(send("DELETE", game, null).statusCode()).isEqualTo(204);
+    Assertions.assertThat(send("GET", game, null).statusCode()).isEqualTo(404);
+    Assertions.assertThat(send("GET", "/games/moves", null).statusCode()).isEqualTo(404);
+  }
+
+  @Test
+  public void customPositionTest() throws IOException, InterruptedException {
+    String game = "/games/" + send("POST", "/games", "c3_w\nd4_b\n").body().trim();
+    Assertions.assertThat(send("POST", game + "/moves", "c3_w:e5_wb").statusCode()).isEqualTo(200);
+    Assertions.assertThat(send("GET", game, null).body()).isEqualTo("e5_wb\n\nblack\n");
+    Assertions.assertThat(send("GET", game + "/moves", null).body()).isEmpty();
+  }
+
+  @Test
+  public void concurrentMovesTest() throws IOException, InterruptedException {
+    String game = "/games/" + send("POST", "/games", null).body().trim();
+    List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+    for (int k = 0; k < 16; ++k) {
+      HttpRequest request = HttpRequest.newBuilder(base.resolve(game + "/moves"))
+              .POST(HttpRequest.BodyPublishers.ofString("c3_w-d4_w")).build();
+      responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+    }
+    Assertions.assertThat(responses.stream().filter(r -> r.join().statusCode() == 200).count()).isEqualTo(1);
+    Assertions.assertThat(send("GET", game, null).body()).endsWith("\nblack\n");
+  }
+
+  @Test
+  public void loadTest() throws IOException, InterruptedException {
+    long[] latencies = GameServerLoad.run(base, 40, 10, 20);
+    Assertions.assertThat(latencies.length).isGreaterThan(40 * 2);
+    Assertions.assertThat(server.getGames()).isZero();
+  }
+
+  @Test
+  public void spillTest(@TempDir Path directory) throws IOException, InterruptedException {
+    try (GameSessionStore store = new GameSessionStore(directory, 3 * GameSessionStore.BOARD_BYTES)) {
+      GameServer spilling = new GameServer(new InetSocketAddress("localhost", 0), store);
+      spilling.start();
+      try {
+        long[] latencies = GameServerLoad.run(URI.create("http://localhost:" + spilling.getPort()), 40, 10, 20);
+        Assertions.assertThat(latencies.length).isGreaterThan(40 * 2);
+        Assertions.assertThat(store.getEvictions()).isPositive();
+        Assertions.assertThat(store.getMisses()).isPositive();
+        Assertions.assertThat(spilling.getGames()).isZero();
+      } finally {
+        spilling.close();
+      }
+    }
+  }
+
+  @Test
+  public void journalTest(@TempDir Path directory) throws IOException, InterruptedException {
+    Path journalDirectory = directory.resolve("journal");
+    String position;
+    try (GameSessionStore store = new GameSessionStore(directory, 2 * GameSessionStore.BOARD_BYTES);
+         GameJournal journal = new GameJournal(journalDirectory, 2)) {
+      GameServer journaled = new GameServer(new InetSocketAddress("localhost", 0), store, journal);
+      journaled.start();
+      base = URI.create("http://localhost:" + journaled.getPort());
+      try {
+        for (int game = 1; game <= 3; ++game) {
+          Assertions.assertThat(send("POST", "/games", null).body()).isEqualTo(game + "\n");
+          Assertions.assertThat(send("POST", "/games/" + game + "/moves", "c3_w-d4_w").statusCode()).isEqualTo(200);
+        }
+        journal.checkpoint(store);
+        Assertions.assertThat(store.getEvictions()).isPositive();
+        Assertions.assertThat(send("POST", "/games/1/moves", "f6_b-e5_b").statusCode()).isEqualTo(200);
+        Assertions.assertThat(send("DELETE", "/games/3", null).statusCode()).isEqualTo(204);
+        position = send("GET", "/games/1", null).body();
+        Assertions.assertThat(send("GET", "/stats", null).body()).contains("\njournalRecords 8\n");
+      } finally {
+        journaled.close();
+      }
+    }
+    GameSessionStore store = new GameSessionStore(null, Long.MAX_VALUE);
+    try (GameJournal journal = new GameJournal(journalDirectory, 2)) {
+      Assertions.assertThat(journal.recover(store, 2, GameServer::replay)).isEqualTo(2);
+      GameServer recovered = new GameServer(new InetSocketAddress("localhost", 0), store, journal);
+      recovered.start();
+      base = URI.create("http://localhost:" + recovered.getPort());
+      try {
+        Assertions.assertThat(send("GET", "/games/1", null).body()).isEqualTo(position);
+        Assertions.assertThat(send("GET", "/games/3", null).statusCode()).isEqualTo(404);
+        Assertions.assertThat(send("POST", "/games", null).body()).isEqualTo("4\n");
+        journal.close();
+        HttpResponse<String> lost = send("POST", "/games/1/moves", "d4_w:f6_wb");
+        Assertions.assertThat(lost.statusCode()).isEqualTo(503);
+        Assertions.assertThat(send("GET", "/games/1", null).body()).isEqualTo(position);
+        Assertions.assertThat(send("POST", "/games", null).statusCode()).isEqualTo(503);
+        Assertions.assertThat(send("GET", "/games/5", null).statusCode()).isEqualTo(404);
+        Assertions.assertThat(send("DELETE", "/games/1", null).statusCode()).isEqualTo(503);
+        Assertions.assertThat(send("GET", "/games/1", null).body()).isEqualTo(position);
+      } finally {
+        recovered.close();
+      }
+    }
+  }
+
+  @Test
+  public void statsTest() throws IOException, InterruptedException {
+    send("POST", "/games", null);
+    Assertions.assertThat(send("GET", "/stats", null).body()).startsWith("games 1\nresident 1\n")
+            .contains("\nevictions 0\n");
+  }
+}
@@ -0,0 +1,67 @@
+package com.ruchekers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class GameSessionStoreTest {
+  @TempDir
+  Path directory;
+
+  @Test
+  public void snapshotTest() throws IOException {
+    GameBoard board = Boards.board("c3_wbbwbWbbw e1_W", "f6_bw h8_B");
+    board.getTower(3, 3).setLastBeatLetterOrder(5);
+    board.getTower(3, 3).setLastBeatDigitOrder(5);
+    board.setSideToMove(Color.BLACK);
+    GameBoard restored = GameSessionStore.decode(GameSessionStore.encode(board));
+    Assertions.assertThat(restored.getHash()).isEqualTo(board.getHash());
+    Assertions.assertThat(restored.getSideToMove()).isEqualTo(Color.BLACK);
+    Assertions.assertThat(Main.figuresString(restored, Color.WHITE)).isEqualTo(Main.figuresString(board, Color.WHITE));
+    Assertions.assertThat(Main.figuresString(restored, Color.BLACK)).isEqualTo(Main.figuresString(board, Color.BLACK));
+    Assertions.assertThat(restored.getTower(3, 3).getLastBeatLetterOrder()).isEqualTo(5);
+    Assertions.assertThat(GameSessionStore.encode(Boards.initialBoard())).hasSize(3 + 24 * 5);
+  }
+
+  @Test
+  public void evictionTest() throws IOException {
+    long boardBytes = GameSessionStore.estimateBytes(Boards.initialBoard());
+    try (GameSessionStore store = new GameSessionStore(directory, 2 * boardBytes)) {
+      long first = store.create(Boards.initialBoard());
+      long hash = store.withBoard(first, board -> {
+        MoveList moves = new MoveList();
+        new MoveGenerator().generate(board, Color.WHITE, moves);
+        board.makeMove(moves, 0);
+        return board.getHash();
+      });
+      long second = store.create(Boards.initialBoard());
+      Assertions.assertThat(store.getEvictions()).isZero();
+      long third = store.create(Boards.initialBoard());
+      Assertions.assertThat(store.getEvictions()).isEqualTo(1);
+      Assertions.assertThat(store.getResidentGames()).isEqualTo(2);
+      Assertions.assertThat(store.getResidentBytes()).isEqualTo(2 * boardBytes);
+      Assertions.assertThat(directory.resolve(first + ".game")).exists();
+
+      Assertions.assertThat(store.withBoard(first, GameBoard::getHash)).isEqualTo(hash);
+      Assertions.assertThat(store.getMisses()).isEqualTo(1);
+      Assertions.assertThat(store.getEvictions()).isEqualTo(2);
+      Assertions.assertThat(directory.resolve(second + ".game")).exists();
+      Color side = store.withBoard(third, GameBoard::getSideToMove);
+      Assertions.assertThat(side).isEqualTo(Color.WHITE);
+      Assertions.assertThat(store.getHits()).isEqualTo(2);
+
+      Assertions.assertThat(store.remove(second)).isTrue();
+      Assertions.assertThat(directory.resolve(second + ".game")).doesNotExist();
+      Assertions.assertThat(store.withBoard(second, GameBoard::getHash)).isNull();
+      Assertions.assertThat(store.size()).isEqualTo(2);
+    }
+    try (Stream<Path> files = Files.list(directory)) {
+      Assertions.assertThat(files).isEmpty();
+    }
+  }
+}
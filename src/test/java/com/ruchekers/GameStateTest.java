@@ -0,0 +1,79 @@
+package com.ruchekers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class GameStateTest {
+  @Test
+  public void repetitionTest() {
+    GameState game = new GameState(Boards.board("a1_W", "h6_B"));
+    Assertions.assertThat(game.getRepetitions()).isEqualTo(1);
+    for (int round = 1; round <= 2; ++round) {
+      Assertions.assertThat(game.getResult()).isEqualTo(GameResult.IN_PROGRESS);
+      for (String move : new String[] {"a1_W-b2_W", "h6_B-g5_B", "b2_W-a1_W", "g5_B-h6_B"}) {
+        Assertions.assertThat(game.play(move)).isEqualTo(MoveVerdict.LEGAL);
+      }
+      Assertions.assertThat(game.getRepetitions()).isEqualTo(round + 1);
+    }
+    Assertions.assertThat(game.getPlies()).isEqualTo(8);
+    Assertions.assertThat(game.getResult()).isEqualTo(GameResult.REPETITION);
+    Assertions.assertThat(game.getWinner()).isNull();
+    Assertions.assertThat(game.play("a1_W-a2_W")).isEqualTo(MoveVerdict.WHITE_CELL);
+    Assertions.assertThat(game.getPlies()).isEqualTo(8);
+    Assertions.assertThatThrownBy(game::undo).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void quietLimitTest() {
+    GameState game = new GameState(Boards.board("a1_W c3_w", "h8_B f6_b"), 4);
+    for (String move : List.of("a1_W-b2_W", "h8_B-g7_B", "c3_w-d4_w")) {
+      game.play(move);
+    }
+    Assertions.assertThat(game.getQuietPlies()).isEqualTo(3);
+    Assertions.assertThat(game.getResult()).isEqualTo(GameResult.IN_PROGRESS);
+    game.play("g7_B-h8_B");
+    Assertions.assertThat(game.getResult()).isEqualTo(GameResult.NO_CAPTURE);
+    game.reset();
+    Assertions.assertThat(game.getQuietPlies()).isZero();
+    game.play("d4_w-e5_w");
+    game.play("f6_b:d4_bw");
+    Assertions.assertThat(game.getQuietPlies()).isZero();
+  }
+
+  @Test
+  public void lossTest() {
+    GameState captured = new GameState(Boards.board("c3_w", "d4_b"));
+    Assertions.assertThat(captured.play("c3_w:e5_wb")).isEqualTo(MoveVerdict.LEGAL);
+    Assertions.assertThat(captured.getResult()).isEqualTo(GameResult.NO_TOWERS);
+    Assertions.assertThat(captured.getWinner()).isEqualTo(Color.WHITE);
+
+    GameState blocked = new GameState(Boards.board("a1_w", "b2_b c3_b"));
+    Assertions.assertThat(blocked.getResult()).isEqualTo(GameResult.NO_MOVES);
+    Assertions.assertThat(blocked.getWinner()).isEqualTo(Color.BLACK);
+  }
+
+  @Test
+  public void undoTest() {
+    GameState game = new GameState(Boards.initialBoard());
+    long start = game.getBoard().getHash();
+    MoveGenerator generator = new MoveGenerator();
+    MoveList moves = new MoveList();
+    Random random = new Random(1);
+    while (game.getPlies() < 300 && game.getResult() != GameResult.NO_MOVES
+            && game.getResult() != GameResult.NO_TOWERS) {
+      int count = generator.generate(game.getBoard(), game.getBoard().getSideToMove(), moves);
+      game.play(moves, random.nextInt(count));
+    }
+    Assertions.assertThat(game.getPlies()).isGreaterThan(40);
+    while (game.getPlies() > 0) {
+      game.undo();
+    }
+    Assertions.assertThat(game.getBoard().getHash()).isEqualTo(start);
+    Assertions.assertThat(game.getRepetitions()).isEqualTo(1);
+    Assertions.assertThat(game.getQuietPlies()).isZero();
+    Assertions.assertThat(game.getResult()).isEqualTo(GameResult.IN_PROGRESS);
+  }
+}
@@ -0,0 +1,43 @@
+package com.ruchekers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+public class MainTest {
+  private static String run(String input) {
+    InputStream in = System.in;
+    PrintStream out = System.out;
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      System.setIn(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+      System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+      Main.main(new String[0]);
+    } finally {
+      System.setIn(in);
+      System.setOut(out);
+    }
+    return output.toString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void twoMovesPerLineTest() throws Exception {
+    GameBoard expected = Boards.initialBoard();
+    Main.processMove(expected, "c3_w-d4_w");
+    Main.processMove(expected, "f6_b-e5_b");
+    String output = run(Main.INITIAL_WHITE + "\n" + Main.INITIAL_BLACK + "\nc3_w-d4_w f6_b-e5_b d4_w:f6_wb\n");
+    Assertions.assertThat(output).startsWith(Main.figuresString(expected, Color.WHITE).trim());
+    Assertions.assertThat(output).contains(Main.figuresString(expected, Color.BLACK).trim());
+  }
+
+  @Test
+  public void rejectedMoveTest() {
+    String output = run(Main.INITIAL_WHITE + "\n" + Main.INITIAL_BLACK + "\nc3_w-c4_w f6_b-e5_b\n");
+    Assertions.assertThat(output.trim()).isEqualTo(MoveVerdict.WHITE_CELL.getMessage());
+  }
+}
@@ -0,0 +1,120 @@
+package com.ruchekers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class MoveGeneratorTest {
+  private final MoveGenerator generator = new MoveGenerator();
+  private final MoveList moves = new MoveList();
+
+  @Test
+  public void initialPositionTest() {
+    GameBoard board = Boards.initialBoard();
+    Assertions.assertThat(generator.generate(board, Color.WHITE, moves)).isEqualTo(7);
+    Assertions.assertThat(moves.isCapture(0)).isEqualTo(false);
+    Assertions.assertThat(generator.generate(board, Color.BLACK, moves)).isEqualTo(7);
+  }
+
+  @Test
+  public void mandatoryCaptureTest() {
+    GameBoard board = Boards.board("c3_w a1_w", "d4_b");
+    Assertions.assertThat(generator.generate(board, Color.WHITE, moves)).isEqualTo(1);
+    Assertions.assertThat(moves.isCapture(0)).isEqualTo(true);
+    Assertions.assertThat(moves.getTo(0)).isEqualTo(Bitboards.square(5, 5));
+    Assertions.assertThat(moves.getVictim(0, 1)).isEqualTo(Bitboards.square(4, 4));
+  }
+
+  @Test
+  public void promotionInsideChainTest() {
+    GameBoard board = Boards.board("d6_w", "e7_b b4_b");
+    Assertions.assertThat(generator.generate(board, Color.WHITE, moves)).isEqualTo(1);
+    Assertions.assertThat(moves.getLength(0)).isEqualTo(3);
+    Assertions.assertThat(moves.getSquare(0, 1)).isEqualTo(Bitboards.square(6, 8));
+    Assertions.assertThat(moves.getVictim(0, 2)).isEqualTo(Bitboards.square(2, 4));
+    Assertions.assertThat(moves.getTo(0)).isEqualTo(Bitboards.square(1, 3));
+  }
+
+  @Test
+  public void lastBeatenTowerIsSkippedTest() {
+    GameBoard board = Boards.board("c3_w", "d4_bw");
+    board.getTower(3, 3).setLastBeatLetterOrder(4);
+    board.getTower(3, 3).setLastBeatDigitOrder(4);
+    generator.generate(board, Color.WHITE, moves);
+    Assertions.assertThat(moves.size()).isEqualTo(1);
+    Assertions.assertThat(moves.isCapture(0)).isEqualTo(false);
+  }
+
+  @Test
+  public void simpleTowerLandsBehindVictimTest() {
+    GameBoard board = Boards.board("e5_W", "d4_b");
+    Assertions.assertThat(Main.validate(board, "d4_b:g7_bW")).isEqualTo(MoveVerdict.ERROR);
+    Assertions.assertThat(Main.validate(board, "d4_b:f6_bW")).isEqualTo(MoveVerdict.LEGAL);
+    Assertions.assertThat(generator.generate(board, Color.BLACK, moves)).isEqualTo(1);
+    Assertions.assertThat(moves.getTo(0)).isEqualTo(Bitboards.square(6, 6));
+  }
+
+  @Test
+  public void agreesWithBoardTest() {
+    Random random = new Random(1);
+    for (int position = 0; position < 20_000; ++position) {
+      GameBoard board = randomBoard(random);
+      for (Color color : Color.values()) {
+        Set<Integer> generated = new HashSet<>();
+        for (int move = generator.generate(board, color, moves) - 1; move >= 0; --move) {
+          generated.add(moves.getSquare(move, 0) * Bitboards.SQUARES + moves.getSquare(move, 1));
+        }
+        Assertions.assertThat(acceptedSteps(board, color)).isEqualTo(generated);
+      }
+    }
+  }
+
+  private static GameBoard randomBoard(Random random) {
+    StringBuilder white = new StringBuilder("a1_w");
+    StringBuilder black = new StringBuilder("h8_b");
+    for (int square = 0; square < Bitboards.SQUARES; ++square) {
+      int i = Bitboards.letterOf(square);
+      int j = Bitboards.digitOf(square);
+      if ((i + j) % 2 != 0 || square == Bitboards.square(1, 1) || square == Bitboards.square(8, 8)
+              || random.nextInt(3) != 0) {
+        continue;
+      }
+      StringBuilder tower = new StringBuilder();
+      for (int height = 1 + random.nextInt(3); height > 0; --height) {
+        tower.append("wbWB".charAt(random.nextInt(4)));
+      }
+      StringBuilder coords = Character.toLowerCase(tower.charAt(0)) == 'w' ? white : black;
+      coords.append(' ').append((char) ('a' + i - 1)).append(j).append('_').append(tower);
+    }
+    return Boards.board(white.toString(), black.toString());
+  }
+
+  /**
+   * Returns the first steps {@link GameBoard} accepts for the towers of one side, a simple move counting only
+   * when no tower of the side can beat.
+   */
+  private static Set<Integer> acceptedSteps(GameBoard board, Color color) {
+    Set<Integer> accepted = new HashSet<>();
+    for (int from = 0; from < Bitboards.SQUARES; ++from) {
+      int oldI = Bitboards.letterOf(from);
+      int oldJ = Bitboards.digitOf(from);
+      PieceTower tower = board.getTower(oldI, oldJ);
+      if (tower == null || tower.getColor() != color) {
+        continue;
+      }
+      for (int to = 0; to < Bitboards.SQUARES; ++to) {
+        int newI = Bitboards.letterOf(to);
+        int newJ = Bitboards.digitOf(to);
+        MoveVerdict capture = tower.isKing() ? board.checkBeatWithKing(oldI, oldJ, newI, newJ)
+                : board.checkBeatWithTower(oldI, oldJ, newI, newJ);
+        if (capture.isLegal() || board.checkMoveTower(oldI, oldJ, newI, newJ).isLegal()) {
+          accepted.add(from * Bitboards.SQUARES + to);
+        }
+      }
+    }
+    return accepted;
+  }
+}
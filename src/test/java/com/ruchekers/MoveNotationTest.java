@@ -0,0 +1,42 @@
+package com.ruchekers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MoveNotationTest {
+  private final MoveNotation notation = new MoveNotation();
+
+  @Test
+  public void simpleMoveTest() {
+    Assertions.assertThat(notation.parse(" A1_wB-b2_wB ")).isTrue();
+    Assertions.assertThat(notation.isCapture()).isFalse();
+    Assertions.assertThat(notation.getLength()).isEqualTo(2);
+    Assertions.assertThat(notation.getLetter(0)).isEqualTo(1);
+    Assertions.assertThat(notation.getDigit(0)).isEqualTo(1);
+    Assertions.assertThat(notation.getLetter(1)).isEqualTo(2);
+    Assertions.assertThat(notation.getDigit(1)).isEqualTo(2);
+    Assertions.assertThat(notation.getErrorPosition()).isEqualTo(-1);
+  }
+
+  @Test
+  public void captureChainTest() {
+    String line = "c3_w-d4_w b4_w:d6_wb:f8_Wbb:h6_Wbbb:d2_Wbbbb";
+    Assertions.assertThat(notation.parse(line, 10, line.length())).isTrue();
+    Assertions.assertThat(notation.isCapture()).isTrue();
+    Assertions.assertThat(notation.getLength()).isEqualTo(5);
+    Assertions.assertThat(notation.getLetter(4)).isEqualTo(4);
+    Assertions.assertThat(notation.getDigit(4)).isEqualTo(2);
+  }
+
+  @Test
+  public void errorPositionTest() {
+    String[] moves = {"", "i1_w-b2_w", "a9_w-b2_w", "a1w-b2_w", "a1_x-b2_w", "a1_w", "a1_w+b2_w",
+        "a1_w-b2_w-c3_w", "a1_w:b2_w-c3_w", "a1_w-"};
+    int[] positions = {0, 0, 1, 2, 3, 4, 4, 9, 9, 5};
+    for (int k = 0; k < moves.length; ++k) {
+      Assertions.assertThat(notation.parse(moves[k])).as(moves[k]).isFalse();
+      Assertions.assertThat(notation.getErrorPosition()).as(moves[k]).isEqualTo(positions[k]);
+      Assertions.assertThat(notation.getError()).isNotNull();
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.ruchekers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+public class OpeningBookTest {
+  private static final String WHITE = "a1_w e3_w";
+  private static final String BLACK = "h8_b";
+
+  @TempDir
+  Path directory;
+
+  private static ArchivedGame game(String white, String black, String moves) {
+    return ArchivedGame.fromText(List.of(white, black, moves));
+  }
+
+  private OpeningBook build(ArchivedGame... games) throws IOException {
+    OpeningBookBuilder builder = new OpeningBookBuilder(OpeningBookBuilder.DEFAULT_PLIES);
+    for (ArchivedGame game : games) {
+      Assertions.assertThat(builder.add(game)).isTrue();
+    }
+    Path path = directory.resolve("book.bin");
+    builder.write(path);
+    return new OpeningBook(path);
+  }
+
+  @Test
+  public void selectTest() throws IOException {
+    ArchivedGame common = game(WHITE, BLACK, "a1_w-b2_w h8_b-g7_b");
+    ArchivedGame rare = game(WHITE, BLACK, "e3_w-f4_w");
+    try (OpeningBook book = build(common, common, common, rare)) {
+      Assertions.assertThat(book.size()).isEqualTo(3);
+      GameBoard board = Boards.board(WHITE, BLACK);
+      int entry = book.find(board.getHash());
+      Assertions.assertThat(book.getGames(entry) + book.getGames(entry + 1)).isEqualTo(4);
+      Assertions.assertThat(book.getPoints(entry) + book.getPoints(entry + 1)).isEqualTo(4);
+      Assertions.assertThat(book.best(board)).containsExactly(Bitboards.square(1, 1), Bitboards.square(2, 2));
+      Random random = new Random(1);
+      int commonPicks = 0;
+      for (int k = 0; k < 1000; ++k) {
+        int[] move = book.select(board, random);
+        Assertions.assertThat(move).hasSize(2);
+        if (move[0] == Bitboards.square(1, 1)) {
+          ++commonPicks;
+        }
+      }
+      Assertions.assertThat(commonPicks).isBetween(700, 800);
+      Assertions.assertThat(book.select(Boards.board("c1_w", BLACK), random)).isEmpty();
+      Assertions.assertThat(book.best(Boards.board("c1_w", BLACK))).isEmpty();
+    }
+  }
+
+  @Test
+  public void resultTest() throws IOException {
+    ArchivedGame win = game("c3_w e3_w", "d4_b", "c3_w:e5_wb");
+    ArchivedGame other = game("c3_w e3_w", "d4_b", "e3_w:c5_wb");
+    OpeningBookBuilder builder = new OpeningBookBuilder(1);
+    Assertions.assertThat(builder.add(game("c3_w e3_w", "d4_b", "c3_w-b4_w"))).isFalse();
+    Assertions.assertThat(builder.getRejected()).isEqualTo(1);
+    try (OpeningBook book = build(win, win, other)) {
+      GameBoard board = Boards.board("c3_w e3_w", "d4_b");
+      int entry = book.find(board.getHash());
+      Assertions.assertThat(List.of(book.getGames(entry), book.getGames(entry + 1))).containsExactlyInAnyOrder(1, 2);
+      Assertions.assertThat(book.getPoints(entry)).isEqualTo(2 * book.getGames(entry));
+      Assertions.assertThat(book.getPoints(entry + 1)).isEqualTo(2 * book.getGames(entry + 1));
+      Assertions.assertThat(book.best(board)).containsExactly(Bitboards.square(3, 3), Bitboards.square(5, 5));
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package com.ruchekers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+public class PerftTest {
+  @Test
+  public void initialPositionTest() {
+    GameBoard board = Boards.initialBoard();
+    Perft perft = new Perft(0);
+    long[] expected = {1, 7, 49, 302, 1469, 7482, 37908};
+    for (int depth = 0; depth < expected.length; ++depth) {
+      Assertions.assertThat(perft.count(board, depth)).isEqualTo(expected[depth]);
+    }
+  }
+
+  @Test
+  public void cacheTest() {
+    GameBoard board = Boards.board("c3_wbbw e1_Wbb g3_wb a1_w", "f6_bwww d8_Bww b6_bw h8_B");
+    long hash = board.getHash();
+    long plain = new Perft(0).count(board, 6);
+    Assertions.assertThat(new Perft(1).count(board, 6)).isEqualTo(plain);
+    Assertions.assertThat(board.getHash()).isEqualTo(hash);
+  }
+
+  @Test
+  public void divideTest() {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    long total = new Perft(0).divide(Boards.initialBoard(), 3, new PrintStream(output, true));
+    Assertions.assertThat(total).isEqualTo(302);
+    Assertions.assertThat(output.toString()).contains("c3-d4 ");
+  }
+}
@@ -20,4 +20,41 @@ public class PieceTowerTest {
     tower.pushPiece(new Piece(Color.BLACK, true));
     Assertions.assertThat(tower.getContentString()).isEqualTo("WbwB");
   }
+
+  @Test
+  public void popPieceTest() {
+    tower.pushPiece(new Piece(Color.BLACK, true));
+    tower.pushPiece(new Piece(Color.WHITE, false));
+    Piece top = tower.popPiece();
+    Assertions.assertThat(top.getColor()).isEqualTo(Color.BLACK);
+    Assertions.assertThat(top.isKing()).isEqualTo(true);
+    Assertions.assertThat(tower.getColor()).isEqualTo(Color.WHITE);
+    Assertions.assertThat(tower.isKing()).isEqualTo(false);
+    tower.popPiece();
+    Assertions.assertThat(tower.isEmpty()).isEqualTo(true);
+    Assertions.assertThat(tower.popPiece()).isNull();
+  }
+
+  @Test
+  public void packedUndoTest() {
+    tower.pushCode(TowerBits.WHITE_KING);
+    tower.pushCode(TowerBits.BLACK_MAN);
+    long before = tower.getBits();
+    long popped = TowerBits.popTop(before);
+    Assertions.assertThat(TowerBits.pushTop(popped, TowerBits.top(before))).isEqualTo(before);
+    long pushed = TowerBits.pushBottom(before, TowerBits.BLACK_KING);
+    Assertions.assertThat(TowerBits.popBottom(pushed)).isEqualTo(before);
+    Assertions.assertThat(new PieceTower(pushed).getContentString()).isEqualTo("WbB");
+  }
+
+  @Test
+  public void overHeightTowerTest() {
+    GameBoard board = new GameBoard();
+    String tall = "a1_" + "w".repeat(TowerBits.MAX_HEIGHT + 1);
+    Assertions.assertThat(Main.fillBoard(board, tall + " c3_w")).isFalse();
+    Assertions.assertThat(board.getTower(1, 1)).isNull();
+    Assertions.assertThat(board.getTower(3, 3).size()).isEqualTo(1);
+    Assertions.assertThat(Main.fillBoard(board, "e1_" + "w".repeat(TowerBits.MAX_HEIGHT))).isTrue();
+    Assertions.assertThat(board.getTower(5, 1).size()).isEqualTo(TowerBits.MAX_HEIGHT);
+  }
 }
@@ -0,0 +1,108 @@
+package com.ruchekers;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PositionSnapshotTest {
+  @Test
+  public void updateTest() throws Exception {
+    GameBoard board = Boards.initialBoard();
+    PositionSnapshot first = PositionSnapshot.of(board);
+    Assertions.assertThat(first.update(board)).isSameAs(first);
+    Main.processMove(board, "c3_w-d4_w");
+    PositionSnapshot second = first.update(board);
+    Assertions.assertThat(second.getVersion()).isEqualTo(2);
+    Assertions.assertThat(second.getSideToMove()).isEqualTo(Color.BLACK);
+    Assertions.assertThat(second.getHash()).isEqualTo(board.getHash());
+    for (int row = 0; row < Bitboards.SIZE; ++row) {
+      Assertions.assertThat(first.sharesRow(second, row)).isEqualTo(row != 2 && row != 3);
+    }
+    Assertions.assertThat(first.getTowerBits(Bitboards.square(3, 3))).isNotEqualTo(TowerBits.EMPTY);
+    Assertions.assertThat(second.getTowerBits(Bitboards.square(3, 3))).isEqualTo(TowerBits.EMPTY);
+
+    Main.processMove(board, "f6_b-e5_b");
+    Main.processMove(board, "d4_w:f6_wb");
+    PositionSnapshot third = second.update(board);
+    GameBoard copy = third.toBoard();
+    Assertions.assertThat(copy.getHash()).isEqualTo(board.getHash());
+    Assertions.assertThat(Main.figuresString(copy, Color.WHITE)).isEqualTo(Main.figuresString(board, Color.WHITE));
+    Assertions.assertThat(second.toBoard().getHash()).isEqualTo(second.getHash());
+  }
+
+  @Test
+  public void evictedVersionTest(@TempDir Path directory) throws IOException {
+    try (GameSessionStore store = new GameSessionStore(directory, 1)) {
+      long id = store.create(Boards.initialBoard());
+      Assertions.assertThat(store.snapshot(id).getVersion()).isEqualTo(1);
+      Assertions.assertThat(store.snapshot(id).getVersion()).isEqualTo(1);
+      MoveGenerator generator = new MoveGenerator();
+      MoveList moves = new MoveList();
+      for (int ply = 0; ply < 3; ++ply) {
+        store.withBoard(id, board -> {
+          generator.generate(board, board.getSideToMove(), moves);
+          board.makeMove(moves, 0);
+          return null;
+        });
+      }
+      Assertions.assertThat(store.getEvictions()).isGreaterThan(3);
+      PositionSnapshot snapshot = store.snapshot(id);
+      Assertions.assertThat(snapshot.getVersion()).isEqualTo(4);
+      Assertions.assertThat(snapshot.getHash()).isEqualTo(store.withBoard(id, GameBoard::getHash));
+    }
+  }
+
+  @Test
+  public void concurrentReadersTest() throws Exception {
+    GameSessionStore store = new GameSessionStore(null, Long.MAX_VALUE);
+    long id = store.create(Boards.initialBoard());
+    Assertions.assertThat(store.snapshot(id).getVersion()).isEqualTo(1);
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicLong inconsistent = new AtomicLong();
+    List<Thread> readers = new ArrayList<>();
+    for (int k = 0; k < 4; ++k) {
+      Thread reader = new Thread(() -> {
+        long version = 0;
+        try {
+          while (!done.get()) {
+            PositionSnapshot snapshot = store.snapshot(id);
+            if (snapshot.getVersion() < version || snapshot.toBoard().getHash() != snapshot.getHash()) {
+              inconsistent.incrementAndGet();
+            }
+            version = snapshot.getVersion();
+          }
+        } catch (IOException e) {
+          inconsistent.incrementAndGet();
+        }
+      });
+      reader.start();
+      readers.add(reader);
+    }
+    MoveGenerator generator = new MoveGenerator();
+    MoveList moves = new MoveList();
+    int played = 0;
+    while (played < 200 && store.withBoard(id, board -> {
+      int count = generator.generate(board, board.getSideToMove(), moves);
+      if (count > 0) {
+        board.makeMove(moves, 0);
+      }
+      return count > 0;
+    })) {
+      ++played;
+    }
+    done.set(true);
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    Assertions.assertThat(inconsistent.get()).isZero();
+    Assertions.assertThat(store.snapshot(id).getVersion()).isEqualTo(played + 1);
+    Assertions.assertThat(store.snapshot(id).getHash()).isEqualTo(store.withBoard(id, GameBoard::getHash));
+  }
+}
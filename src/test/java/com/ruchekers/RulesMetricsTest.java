@@ -0,0 +1,77 @@
+package com.ruchekers;
+
+import com.ruchekers.exceptions.BusyCellException;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.assertj.core.api.Assertions;
+import org.assertj.core.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class RulesMetricsTest {
+  private static final String CHAIN = "b4_w:d6_wb:f8_Wbb:h6_Wbbb:d2_Wbbbb";
+  private static final String CHAIN_WHITE = "b4_w h2_w";
+  private static final String CHAIN_BLACK = "c5_b e7_b g7_b e3_b";
+
+  @BeforeEach
+  public void reset() {
+    Assumptions.assumeThat(RulesMetrics.ENABLED).as("run with -Druchekers.metrics=true").isTrue();
+    RulesMetrics.reset();
+  }
+
+  @Test
+  public void countersTest() throws Exception {
+    GameBoard board = Boards.board(CHAIN_WHITE, CHAIN_BLACK);
+    Assertions.assertThat(Main.tryMove(board, "h2_w-g3_w", 0, 9)).isEqualTo(MoveVerdict.INVALID_MOVE);
+    Assertions.assertThatThrownBy(() -> Main.processMove(board, "h2_w-e3_w")).isInstanceOf(BusyCellException.class);
+    Assertions.assertThatThrownBy(() -> Main.processMove(board, "h2_w-")).hasMessageStartingWith("expected");
+    Main.processMove(board, CHAIN);
+    MoveList moves = new MoveList();
+    new MoveGenerator().generate(board, Color.WHITE, moves);
+    new GameState(board).play(moves, 0);
+    new MoveGenerator().generate(board, board.getSideToMove(), moves);
+    board.makeMove(moves, 0);
+
+    RulesMetrics.Snapshot snapshot = RulesMetrics.snapshot();
+    Assertions.assertThat(snapshot.getMoves()).isEqualTo(2);
+    Assertions.assertThat(snapshot.getCaptures()).isEqualTo(4);
+    Assertions.assertThat(snapshot.getChains(4)).isEqualTo(1);
+    Assertions.assertThat(snapshot.getPromotions()).isEqualTo(1);
+    Assertions.assertThat(snapshot.getHeights(5) + snapshot.getHeights(1)).isEqualTo(2);
+    Assertions.assertThat(snapshot.getRejections(MoveVerdict.INVALID_MOVE)).isEqualTo(1);
+    Assertions.assertThat(snapshot.getRejections(MoveVerdict.BUSY_CELL)).isEqualTo(1);
+    Assertions.assertThat(snapshot.getRejections(MoveVerdict.ERROR)).isEqualTo(1);
+    long timed = 0;
+    for (int bucket = 0; bucket < RulesMetrics.LATENCY_BUCKETS; ++bucket) {
+      timed += snapshot.getLatencies(bucket);
+    }
+    Assertions.assertThat(timed).isEqualTo(3);
+    Assertions.assertThat(snapshot.toString()).startsWith("moves 2\ncaptures 4\npromotions 1\n")
+            .contains("\nrejections.busy_cell 1\n", "\nchain.4 1\n", "\nheight.5 ");
+  }
+
+  @Test
+  public void flightRecorderTest(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("moves.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("com.ruchekers.Move").withoutThreshold();
+      recording.start();
+      GameBoard board = Boards.board(CHAIN_WHITE, CHAIN_BLACK);
+      Main.tryMove(board, "h2_w-g3_w", 0, 9);
+      Main.processMove(board, CHAIN);
+      recording.stop();
+      recording.dump(file);
+    }
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+            .filter(e -> "com.ruchekers.Move".equals(e.getEventType().getName())).collect(Collectors.toList());
+    Assertions.assertThat(events).extracting(e -> e.getString("verdict")).containsExactly("INVALID_MOVE", "LEGAL");
+    Assertions.assertThat(events.get(1).getInt("captures")).isEqualTo(4);
+    Assertions.assertThat(events.get(1).getInt("to")).isEqualTo(Bitboards.square(4, 2));
+  }
+}
@@ -0,0 +1,86 @@
+package com.ruchekers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TablebaseTest {
+  @TempDir
+  Path directory;
+
+  @Test
+  public void indexTest() {
+    TablebaseIndex index = new TablebaseIndex(2);
+    GameBoard board = new GameBoard();
+    for (long position = 0; position < index.size(); ++position) {
+      index.unrank(position, board);
+      Assertions.assertThat(TablebaseIndex.countPieces(board)).isEqualTo(2);
+      Assertions.assertThat(index.rank(board)).isEqualTo(position);
+    }
+    TablebaseIndex large = new TablebaseIndex(TablebaseIndex.MAX_PIECES);
+    Random random = new Random(1);
+    for (int k = 0; k < 10_000; ++k) {
+      long position = Math.floorMod(random.nextLong(), large.size());
+      large.unrank(position, board);
+      Assertions.assertThat(large.rank(board)).isEqualTo(position);
+    }
+  }
+
+  @Test
+  public void probeTest() throws IOException {
+    try (TablebaseGenerator generator = new TablebaseGenerator(directory, 2)) {
+      Assertions.assertThat(generator.generate(2)).isTrue();
+    }
+    try (Tablebase tablebase = Tablebase.open(directory)) {
+      Assertions.assertThat(tablebase.getMaxPieces()).isEqualTo(2);
+      Assertions.assertThat(tablebase.probe(Boards.board("a1_w", "", Color.BLACK))).isEqualTo(1);
+      int capture = tablebase.probe(Boards.board("c3_w", "d4_b", Color.WHITE));
+      Assertions.assertThat(Tablebase.isWin(capture)).isTrue();
+      Assertions.assertThat(Tablebase.distance(capture)).isEqualTo(1);
+      int king = tablebase.probe(Boards.board("g3_W", "b6_b", Color.WHITE));
+      Assertions.assertThat(Tablebase.isWin(king)).isTrue();
+      Assertions.assertThat(Tablebase.distance(king)).isEqualTo(5);
+      Assertions.assertThat(tablebase.probe(Boards.board("c3_w e3_w", "d4_b", Color.WHITE)))
+              .isEqualTo(Tablebase.NOT_FOUND);
+    }
+  }
+
+  @Test
+  public void resumeTest() throws IOException {
+    Path complete = Files.createDirectory(directory.resolve("complete"));
+    Path resumed = Files.createDirectory(directory.resolve("resumed"));
+    try (TablebaseGenerator generator = new TablebaseGenerator(complete, 1)) {
+      generator.generate(2);
+    }
+    try (TablebaseGenerator generator = new TablebaseGenerator(resumed, 1)) {
+      generator.setPassLimit(3);
+      Assertions.assertThat(generator.generate(2)).isFalse();
+    }
+    Assertions.assertThat(resumed.resolve("towers-2.part")).exists();
+    Assertions.assertThat(Tablebase.fileOf(resumed, 2)).doesNotExist();
+    try (TablebaseGenerator generator = new TablebaseGenerator(resumed, 2)) {
+      Assertions.assertThat(generator.generate(2)).isTrue();
+    }
+    Assertions.assertThat(resumed.resolve("towers-2.part")).doesNotExist();
+    Assertions.assertThat(Files.readAllBytes(Tablebase.fileOf(resumed, 2)))
+            .isEqualTo(Files.readAllBytes(Tablebase.fileOf(complete, 2)));
+  }
+
+  @Test
+  public void adjudicateTest() throws IOException {
+    try (TablebaseGenerator generator = new TablebaseGenerator(directory, 1)) {
+      generator.generate(2);
+    }
+    try (Tablebase tablebase = Tablebase.open(directory)) {
+      Assertions.assertThat(BatchAdjudicator.adjudicate(new GameBoard(), List.of("h6_w", "b6_b"), tablebase))
+              .isEqualTo("ok h6_w | b6_b | white wins in 9");
+      Assertions.assertThat(BatchAdjudicator.adjudicate(new GameBoard(), List.of("c3_w", "d4_b", "c3_w:e5_wb"),
+              tablebase)).isEqualTo("ok e5_wb |  | white wins in 0");
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.ruchekers.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class EngineProtocolTest {
+  private static List<String> run(String script) throws IOException {
+    StringWriter output = new StringWriter();
+    try (EngineProtocol engine = new EngineProtocol(new BufferedReader(new StringReader(script)),
+            new PrintWriter(output, true))) {
+      engine.run();
+    }
+    return List.of(output.toString().split("\\R"));
+  }
+
+  @Test
+  public void findsWinningCaptureTest() throws IOException {
+    List<String> lines = run("isready\nposition c3_w h2_w d4_b\ngo depth 4\n");
+    Assertions.assertThat(lines.get(0)).isEqualTo("readyok");
+    Assertions.assertThat(lines).anyMatch(line -> line.startsWith("info depth 1 score win 1 nodes "));
+    Assertions.assertThat(lines.get(lines.size() - 1)).isEqualTo("bestmove c3_w:e5_wb");
+  }
+
+  @Test
+  public void playsMovesTest() throws IOException {
+    List<String> lines = run("setoption threads 2\nposition startpos moves c3_w-d4_w f6_b-e5_b\ngo depth 3\n"
+            + "position a1_w b2_b c3_b\ngo movetime 100\n");
+    Assertions.assertThat(lines).filteredOn(line -> line.startsWith("info depth ")).isNotEmpty();
+    Assertions.assertThat(lines).contains("bestmove d4_w:f6_wb", "bestmove none");
+  }
+
+  @Test
+  public void errorsTest() throws IOException {
+    List<String> lines = run("position startpos moves c3_w-c4_w\nposition x9\nsetoption hash 0\nsetoption hash 20000\n"
+            + "go depth x\nfoo\nisready\nquit\nisready\n");
+    Assertions.assertThat(lines).containsExactly(
+            "info string rejected move c3_w-c4_w: white cell",
+            "info string bad tower x9",
+            "info string not positive: 0",
+            "info string hash out of range 1.." + EngineProtocol.maxHashMegabytes(),
+            "info string not a number: x",
+            "info string unknown command foo",
+            "readyok");
+  }
+
+  @Test
+  public void stopTest() throws IOException {
+    List<String> lines = run("position startpos\ngo infinite\nisready\nstop\nisready\n");
+    Assertions.assertThat(lines).contains("readyok");
+    Assertions.assertThat(lines.get(lines.size() - 1)).isEqualTo("readyok");
+    Assertions.assertThat(lines.get(lines.size() - 2)).startsWith("bestmove ");
+  }
+}
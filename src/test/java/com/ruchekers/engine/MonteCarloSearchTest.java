@@ -0,0 +1,58 @@
+package com.ruchekers.engine;
+
+import com.ruchekers.Bitboards;
+import com.ruchekers.Boards;
+import com.ruchekers.GameBoard;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MonteCarloSearchTest {
+  @Test
+  public void findsWinningCaptureTest() {
+    GameBoard board = Boards.board("c3_w h2_w", "d4_b");
+    long hash = board.getHash();
+    try (MonteCarloSearch search = new MonteCarloSearch(1, 1)) {
+      MonteCarloResult result = search.search(board, SearchLimits.NO_TIME_LIMIT, 2000);
+      Assertions.assertThat(board.getHash()).isEqualTo(hash);
+      Assertions.assertThat(result.getPlayouts()).isEqualTo(2000);
+      Assertions.assertThat(result.getBestPath()).containsExactly(Bitboards.square(3, 3), Bitboards.square(5, 5));
+      Assertions.assertThat(result.getWinRate()).isEqualTo(1.0);
+    }
+  }
+
+  @Test
+  public void noMovesTest() {
+    try (MonteCarloSearch search = new MonteCarloSearch(1, 2)) {
+      MonteCarloResult result = search.search(Boards.board("a1_w", "b2_b c3_b"), SearchLimits.NO_TIME_LIMIT, 100);
+      Assertions.assertThat(result.getBestPath()).isEmpty();
+      Assertions.assertThat(result.getVisits()).isZero();
+    }
+  }
+
+  @Test
+  public void recyclesNodesTest() {
+    GameBoard board = Boards.initialBoard();
+    long hash = board.getHash();
+    try (MonteCarloSearch search = new MonteCarloSearch(1, 4)) {
+      for (int round = 0; round < 2; ++round) {
+        MonteCarloResult result = search.search(board, SearchLimits.NO_TIME_LIMIT, 5_000);
+        Assertions.assertThat(board.getHash()).isEqualTo(hash);
+        Assertions.assertThat(result.getPlayouts()).isEqualTo(5_000);
+        Assertions.assertThat(result.getNodes()).isBetween(2, search.getCapacity());
+        Assertions.assertThat(result.getBestPath()).hasSize(2);
+        Assertions.assertThat(result.getVisits()).isPositive();
+        Assertions.assertThat(result.getPlayoutsPerSecond()).isPositive();
+      }
+    }
+  }
+
+  @Test
+  public void timeLimitTest() {
+    GameBoard board = Boards.board("c3_w h2_w", "d4_b");
+    try (MonteCarloSearch search = new MonteCarloSearch(1, 2)) {
+      MonteCarloResult result = search.search(board, 50, Long.MAX_VALUE);
+      Assertions.assertThat(result.getPlayouts()).isPositive();
+      Assertions.assertThat(result.getElapsedNanos()).isLessThan(5_000_000_000L);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.ruchekers.engine;
+
+import com.ruchekers.Bitboards;
+import com.ruchekers.Boards;
+import com.ruchekers.Color;
+import com.ruchekers.GameBoard;
+import com.ruchekers.Tablebase;
+import com.ruchekers.TablebaseGenerator;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SearchTest {
+  private final Search search = new Search(new TranspositionTable(1));
+
+  @Test
+  public void findsWinningCaptureTest() {
+    GameBoard board = Boards.board("c3_w h2_w", "d4_b");
+    SearchResult result = search.search(board, SearchLimits.depth(4));
+    Assertions.assertThat(result.getScore()).isGreaterThan(Search.WIN_THRESHOLD);
+    Assertions.assertThat(result.getBestPath()).containsExactly(Bitboards.square(3, 3), Bitboards.square(5, 5));
+  }
+
+  @Test
+  public void restoresBoardTest() {
+    GameBoard board = Boards.initialBoard();
+    long hash = board.getHash();
+    SearchResult result = search.search(board, SearchLimits.depth(6));
+    Assertions.assertThat(board.getHash()).isEqualTo(hash);
+    Assertions.assertThat(result.getDepth()).isEqualTo(6);
+    Assertions.assertThat(result.getBestPath()).hasSize(2);
+    Assertions.assertThat(result.getNodes()).isPositive();
+  }
+
+  @Test
+  public void towerKeepsPrisonersTest() {
+    int tower = Evaluator.evaluateTower(0, 1);
+    GameBoard board = Boards.board("c3_wbb", "");
+    board.setSideToMove(Color.BLACK);
+    Assertions.assertThat(tower).isEqualTo(Evaluator.MAN);
+    Assertions.assertThat(new Evaluator().evaluate(board)).isEqualTo(-(Evaluator.MAN + 2 * Evaluator.ADVANCE
+            + 2 * Evaluator.PRISONER));
+  }
+
+  @Test
+  public void helperDepthsTest() {
+    GameBoard board = Boards.initialBoard();
+    List<Integer> depths = new ArrayList<>();
+    Search helper = new Search(new TranspositionTable(1));
+    helper.setListener(result -> depths.add(result.getDepth()));
+    helper.run(board, SearchLimits.depth(6), 1);
+    Assertions.assertThat(depths).containsExactly(2, 4, 6);
+    depths.clear();
+    helper.run(board, SearchLimits.depth(6), 2);
+    Assertions.assertThat(depths).containsExactly(1, 3, 5);
+  }
+
+  @Test
+  public void tableSizeTest() {
+    Assertions.assertThat(TranspositionTable.buckets(1)).isEqualTo(1 << 15);
+    Assertions.assertThat(TranspositionTable.buckets(20000)).isEqualTo(1 << 28);
+    Assertions.assertThat(TranspositionTable.buckets(Integer.MAX_VALUE)).isEqualTo(1 << 28);
+    Assertions.assertThat(TranspositionTable.getMaxMegabytes()).isEqualTo(8192);
+  }
+
+  @Test
+  public void parallelSearchTest() {
+    GameBoard board = Boards.board("c3_w h2_w", "d4_b");
+    long hash = board.getHash();
+    try (ParallelSearch parallel = new ParallelSearch(new TranspositionTable(1), 3)) {
+      SearchResult result = parallel.search(board, SearchLimits.depth(6));
+      Assertions.assertThat(result.getScore()).isGreaterThan(Search.WIN_THRESHOLD);
+      Assertions.assertThat(result.getBestPath()).containsExactly(Bitboards.square(3, 3), Bitboards.square(5, 5));
+    }
+    Assertions.assertThat(board.getHash()).isEqualTo(hash);
+  }
+
+  @Test
+  public void tablebaseTest(@TempDir Path directory) throws IOException {
+    try (TablebaseGenerator generator = new TablebaseGenerator(directory, 1)) {
+      generator.generate(2);
+    }
+    GameBoard board = Boards.board("g3_W", "b6_b");
+    try (Tablebase tablebase = Tablebase.open(directory)) {
+      search.setTablebase(tablebase);
+      SearchResult result = search.search(board, SearchLimits.depth(8));
+      Assertions.assertThat(result.getScore()).isEqualTo(Search.WIN - 5);
+      Assertions.assertThat(result.getDepth()).isEqualTo(1);
+      Assertions.assertThat(result.getBestPath()).hasSize(2);
+    }
+  }
+}